@@ -55,15 +55,46 @@ export function exportCustomers(params) {
   })
 }
 
+export function submitCustomerExportJob(params) {
+  return request({
+    url: '/customers/export/jobs',
+    method: 'post',
+    params
+  })
+}
+
 export function searchCustomers(params = {}) {
-  const { keyword, page = 1, size = 10 } = params
+  const { keyword, limit = 20 } = params
   const trimmed = typeof keyword === 'string' ? keyword.trim() : ''
-  if (!trimmed || trimmed.length < 2 || /^\d+$/.test(trimmed)) {
-    return Promise.resolve({ data: { content: [] } })
+  if (!trimmed) {
+    return Promise.resolve({ data: [] })
   }
   return request({
-    url: '/customers',
+    url: '/customers/suggest',
+    method: 'get',
+    params: { keyword: trimmed, limit }
+  })
+}
+
+export function mergeCustomers(targetId, sourceIds) {
+  return request({
+    url: `/customers/${targetId}/merge`,
+    method: 'post',
+    data: sourceIds
+  })
+}
+
+export function getSuspectedDuplicates(params) {
+  return request({
+    url: '/customers/duplicates',
     method: 'get',
-    params: { keyword: trimmed, page, size }
+    params
+  })
+}
+
+export function ignoreDuplicate(id) {
+  return request({
+    url: `/customers/duplicates/${id}/ignore`,
+    method: 'put'
   })
 }
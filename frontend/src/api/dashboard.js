@@ -1,4 +1,5 @@
 import request from '@/utils/request'
+import { getToken } from '@/utils/auth'
 
 /**
  * 获取仪表盘数据
@@ -20,3 +21,12 @@ export function getStatistics(params) {
     params
   })
 }
+
+/**
+ * 订阅实时数据推送（SSE），返回 EventSource，调用方负责 close()
+ */
+export function subscribeRealtime(onData) {
+  const source = new EventSource(`/api/dashboard/realtime/stream?token=${encodeURIComponent(getToken())}`)
+  source.addEventListener('realtime', (event) => onData(JSON.parse(event.data)))
+  return source
+}
@@ -0,0 +1,43 @@
+// src/api/exportJobs.js
+import request from '@/utils/request'
+
+/**
+ * 获取当前用户的导出任务
+ */
+export function getExportJobs() {
+  return request({
+    url: '/export-jobs',
+    method: 'get'
+  })
+}
+
+/**
+ * 获取导出任务状态
+ */
+export function getExportJob(jobId) {
+  return request({
+    url: `/export-jobs/${jobId}`,
+    method: 'get'
+  })
+}
+
+/**
+ * 下载导出结果文件
+ */
+export function downloadExportJob(jobId) {
+  return request({
+    url: `/export-jobs/${jobId}/download`,
+    method: 'get',
+    responseType: 'blob'
+  })
+}
+
+/**
+ * 删除导出任务
+ */
+export function deleteExportJob(jobId) {
+  return request({
+    url: `/export-jobs/${jobId}`,
+    method: 'delete'
+  })
+}
@@ -83,3 +83,11 @@ export function exportSchools(params) {
     responseType: 'blob'
   })
 }
+
+export function submitSchoolExportJob(params) {
+  return request({
+    url: '/schools/export/jobs',
+    method: 'post',
+    params
+  })
+}
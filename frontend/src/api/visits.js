@@ -12,6 +12,17 @@ export function getVisitList(params) {
   })
 }
 
+/**
+ * 游标分页获取拜访记录（移动端无限滚动）
+ */
+export function scrollVisitList(params) {
+  return request({
+    url: '/visit-records/scroll',
+    method: 'get',
+    params
+  })
+}
+
 /**
  * 获取拜访记录详情
  */
@@ -77,6 +88,17 @@ export function exportVisits(params) {
   })
 }
 
+/**
+ * 提交拜访记录异步导出任务
+ */
+export function submitVisitExportJob(params) {
+  return request({
+    url: '/visit-records/export/jobs',
+    method: 'post',
+    params
+  })
+}
+
 /**
  * 根据客户获取拜访记录
  */
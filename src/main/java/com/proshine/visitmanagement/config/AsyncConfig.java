@@ -131,7 +131,8 @@ public class AsyncConfig implements AsyncConfigurer {
         executor.setQueueCapacity(30);
         executor.setKeepAliveSeconds(120);
         executor.setThreadNamePrefix("VisitMgmt-File-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 导出任务不能退回到请求线程执行，队列满时直接拒绝，由调用方提示稍后重试
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
@@ -141,6 +142,82 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
     
+    /**
+     * 配置仪表盘并发查询专用线程池
+     * 队列满时直接拒绝，对应的概览部分记为失败；不退回请求线程执行，否则各部分的超时时间无法生效
+     *
+     * @return 仪表盘查询线程池
+     */
+    @Bean(name = "dashboardTaskExecutor")
+    public Executor getDashboardTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // 仪表盘查询线程池配置（查询为IO等待型，线程数略大于CPU核数）
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(64);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("VisitMgmt-Dashboard-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        
+        log.info("仪表盘查询线程池配置完成: 核心线程数=4, 最大线程数=8, 队列容量=64");
+        
+        return executor;
+    }
+    
+    /**
+     * 配置密码哈希专用线程池
+     * BCrypt为CPU密集型计算，线程数与CPU核数一致；队列满时由调用线程直接计算，天然限流
+     *
+     * @return 密码哈希线程池
+     */
+    @Bean(name = "passwordHashExecutor")
+    public Executor getPasswordHashExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        executor.setCorePoolSize(processors);
+        executor.setMaxPoolSize(processors);
+        executor.setQueueCapacity(processors * 4);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("VisitMgmt-Hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("密码哈希线程池配置完成: 线程数={}, 队列容量={}", processors, processors * 4);
+
+        return executor;
+    }
+    
+    /**
+     * 配置登录密码校验专用线程池
+     * 与批量导入使用的密码哈希线程池分开；队列满时直接拒绝，由调用方快速返回429，
+     * 不退回到Tomcat请求线程计算，避免登录高峰占满请求线程
+     *
+     * @return 登录密码校验线程池
+     */
+    @Bean(name = "loginHashExecutor")
+    public Executor getLoginHashExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        executor.setCorePoolSize(processors);
+        executor.setMaxPoolSize(processors);
+        executor.setQueueCapacity(processors * 8);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("VisitMgmt-Login-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("登录密码校验线程池配置完成: 线程数={}, 队列容量={}", processors, processors * 8);
+
+        return executor;
+    }
+    
     /**
      * 异步任务异常处理器
      *
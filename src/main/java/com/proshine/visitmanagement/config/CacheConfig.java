@@ -0,0 +1,121 @@
+package com.proshine.visitmanagement.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proshine.visitmanagement.security.CustomUserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存配置类
+ * 缓存拦截器的顺序高于事务拦截器，保证写操作在事务提交后再清除缓存
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@Slf4j
+public class CacheConfig {
+
+    /**
+     * 仪表盘统计结果缓存
+     */
+    public static final String DASHBOARD_CACHE = "dashboard";
+
+    /**
+     * 仪表盘缓存键生成器Bean名称
+     */
+    public static final String DASHBOARD_KEY_GENERATOR = "dashboardKeyGenerator";
+
+    /**
+     * 全局数据范围（管理员、经理）
+     */
+    private static final String SCOPE_ALL = "ALL";
+
+    /**
+     * 个人数据范围（销售人员）
+     */
+    private static final String SCOPE_SELF = "SELF";
+
+    @Value("${app.cache.dashboard.maximum-size:2000}")
+    private long dashboardMaximumSize;
+
+    @Value("${app.cache.dashboard.ttl-seconds:120}")
+    private long dashboardTtlSeconds;
+
+    /**
+     * 配置缓存管理器
+     *
+     * @return 缓存管理器
+     */
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(DASHBOARD_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(dashboardMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(dashboardTtlSeconds))
+                .recordStats());
+        // 不缓存null结果
+        cacheManager.setAllowNullValues(false);
+
+        log.info("缓存配置完成: 缓存={}, 最大条目数={}, 过期时间={}秒",
+                DASHBOARD_CACHE, dashboardMaximumSize, dashboardTtlSeconds);
+
+        return cacheManager;
+    }
+
+    /**
+     * 仪表盘缓存键生成器
+     * 键由 (方法名, 数据范围, 用户ID, 业务参数) 组成；管理员和经理看到的是全局数据，
+     * 不区分用户以共享缓存，销售人员只能看到自己的数据，按用户ID隔离
+     *
+     * @return 缓存键生成器
+     */
+    @Bean(name = DASHBOARD_KEY_GENERATOR)
+    public KeyGenerator dashboardKeyGenerator() {
+        return (target, method, params) -> {
+            List<Object> parts = new ArrayList<>();
+            parts.add(method.getName());
+            for (Object param : params) {
+                if (param instanceof Authentication) {
+                    Authentication authentication = (Authentication) param;
+                    if (isSales(authentication)) {
+                        parts.add(SCOPE_SELF);
+                        parts.add(getUserKey(authentication));
+                    } else {
+                        parts.add(SCOPE_ALL);
+                    }
+                } else {
+                    parts.add(param);
+                }
+            }
+            return new SimpleKey(parts.toArray());
+        };
+    }
+
+    private boolean isSales(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_SALES".equals(authority.getAuthority()));
+    }
+
+    private Object getUserKey(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof CustomUserPrincipal && ((CustomUserPrincipal) principal).getId() != null) {
+            return ((CustomUserPrincipal) principal).getId();
+        }
+        return authentication.getName();
+    }
+}
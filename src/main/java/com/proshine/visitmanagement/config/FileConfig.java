@@ -39,6 +39,11 @@ public class FileConfig {
      * 临时文件目录
      */
     private String tempPath = "./uploads/temp";
+
+    /**
+     * 导出文件目录
+     */
+    private String exportPath = "./exports";
     
     /**
      * 最大文件大小（MB）
@@ -91,7 +96,7 @@ public class FileConfig {
     private String urlPrefix = "/files";
     
     /**
-     * 是否启用文件去重
+     * 是否启用文件去重（按内容寻址存储，相同内容只保存一份并记录引用次数）
      */
     private boolean enableDeduplication = true;
     
@@ -0,0 +1,22 @@
+package com.proshine.visitmanagement.config;
+
+import org.hibernate.dialect.MySQL8Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * MySQL 方言扩展
+ * 注册 match_against 函数，使 JPQL 可以使用 MySQL 全文索引：
+ * {@code match_against(vr.searchText, :query) > 0} 渲染为 {@code MATCH (search_text) AGAINST (? IN BOOLEAN MODE) > 0}
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+public class FullTextMySQLDialect extends MySQL8Dialect {
+
+    public FullTextMySQLDialect() {
+        super();
+        registerFunction("match_against",
+                new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "MATCH (?1) AGAINST (?2 IN BOOLEAN MODE)"));
+    }
+}
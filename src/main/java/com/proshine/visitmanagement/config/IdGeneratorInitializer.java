@@ -0,0 +1,79 @@
+package com.proshine.visitmanagement.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 表生成器主键初始化
+ * 自增主键会让Hibernate逐条执行INSERT以取回ID，无法使用JDBC批量插入；
+ * 批量写入较多的表改用 id_generators 表按段预分配主键。
+ * 启动时（建表之后、接收请求之前）把各段的号段下限抬到现有最大ID之上，
+ * 保证从自增主键切换过来的旧表不会产生主键冲突
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class IdGeneratorInitializer {
+
+    /**
+     * 主键号段表
+     */
+    public static final String TABLE = "id_generators";
+
+    /**
+     * 号段名列
+     */
+    public static final String SEGMENT_COLUMN = "sequence_name";
+
+    /**
+     * 号段值列
+     */
+    public static final String VALUE_COLUMN = "next_val";
+
+    /**
+     * 每次预分配的主键数量，与 hibernate.jdbc.batch_size 一致
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    /**
+     * 号段名与实体表的对应关系
+     */
+    private static final Map<String, String> SEGMENT_TABLES = new LinkedHashMap<>();
+
+    static {
+        SEGMENT_TABLES.put("users", "users");
+        SEGMENT_TABLES.put("customers", "customers");
+        SEGMENT_TABLES.put("visit_records", "visit_records");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void initialize() {
+        SEGMENT_TABLES.forEach((segment, table) -> {
+            // 号段值是下一段的上界，下一段从 next_val - ALLOCATION_SIZE + 1 开始
+            Long floor = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(id), 0) + ? + 1 FROM " + table, Long.class, ALLOCATION_SIZE);
+
+            int updated = jdbcTemplate.update(
+                    "UPDATE " + TABLE + " SET " + VALUE_COLUMN + " = GREATEST(" + VALUE_COLUMN + ", ?) WHERE "
+                            + SEGMENT_COLUMN + " = ?", floor, segment);
+            if (updated == 0) {
+                jdbcTemplate.update("INSERT INTO " + TABLE + " (" + SEGMENT_COLUMN + ", " + VALUE_COLUMN
+                        + ") VALUES (?, ?)", segment, floor);
+            }
+            log.info("主键号段初始化完成: segment={}, floor={}", segment, floor);
+        });
+    }
+}
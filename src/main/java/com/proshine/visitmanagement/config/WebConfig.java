@@ -33,9 +33,6 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class WebConfig implements WebMvcConfigurer {
 
-    @Value("${app.file.upload-path:./uploads}")
-    private String uploadPath;
-
     @Value("${app.file.export-path:./exports}")
     private String exportPath;
 
@@ -57,10 +54,7 @@ public class WebConfig implements WebMvcConfigurer {
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 上传文件访问
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath + "/")
-                .setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS));
+        // 上传文件访问由 UploadController 处理：去重存储的引用路径在磁盘上不存在，需按引用记录定位内容文件
 
         // 导出文件访问
         registry.addResourceHandler("/exports/**")
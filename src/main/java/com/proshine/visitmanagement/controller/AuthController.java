@@ -38,13 +38,16 @@ public class AuthController {
      * 用户登录
      *
      * @param request 登录请求参数
+     * @param httpRequest HTTP请求，用于获取客户端IP
      * @return 登录响应，包含Token和用户信息
      */
     @PostMapping("/login")
-    public ApiResponse<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
+    public ApiResponse<LoginResponse> login(@Valid @RequestBody LoginRequest request,
+                                            HttpServletRequest httpRequest) {
         log.info("用户登录: username={}", request.getUsername());
 
-        LoginResponse loginResponse = authService.login(request);
+        // 按连接对端地址限流，不信任客户端可伪造的 X-Forwarded-For 等请求头（代理转发见 server.forward-headers-strategy）
+        LoginResponse loginResponse = authService.login(request, httpRequest.getRemoteAddr());
 
         log.info("用户登录成功: username={}, userId={}", request.getUsername(), loginResponse.getUserId());
 
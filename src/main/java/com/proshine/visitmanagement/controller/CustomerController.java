@@ -2,10 +2,17 @@ package com.proshine.visitmanagement.controller;
 
 import com.proshine.visitmanagement.dto.request.CustomerRequest;
 import com.proshine.visitmanagement.dto.response.ApiResponse;
+import com.proshine.visitmanagement.dto.response.CustomerDuplicateResponse;
 import com.proshine.visitmanagement.dto.response.CustomerResponse;
+import com.proshine.visitmanagement.dto.response.CustomerSuggestionResponse;
+import com.proshine.visitmanagement.dto.response.ExportJobResponse;
 import com.proshine.visitmanagement.dto.response.PageResponse;
 import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.service.CustomerDuplicateService;
+import com.proshine.visitmanagement.service.CustomerSearchService;
 import com.proshine.visitmanagement.service.CustomerService;
+import com.proshine.visitmanagement.service.ExportJobService;
+import com.proshine.visitmanagement.service.ExportService;
 import com.proshine.visitmanagement.util.DateUtils;
 import com.proshine.visitmanagement.util.ExcelUtils;
 import com.proshine.visitmanagement.util.ValidationUtils;
@@ -24,7 +31,10 @@ import org.springframework.web.multipart.MultipartFile;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -43,6 +53,9 @@ import java.util.List;
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final CustomerDuplicateService customerDuplicateService;
+    private final ExportJobService exportJobService;
+    private final ExportService exportService;
 
     /**
      * 分页查询客户
@@ -80,6 +93,25 @@ public class CustomerController {
         return ApiResponse.success(customers);
     }
 
+    /**
+     * 客户联想搜索（表单输入时实时调用），匹配姓名、职位、院系、学校及拼音首字母
+     *
+     * @param keyword 关键词
+     * @param limit 返回条数
+     * @param authentication 认证信息
+     * @return 匹配的客户列表
+     */
+    @GetMapping("/suggest")
+    public ApiResponse<List<CustomerSuggestionResponse>> suggestCustomers(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "" + CustomerSearchService.DEFAULT_LIMIT) Integer limit,
+            Authentication authentication) {
+
+        ValidationUtils.range(limit, 1, CustomerSearchService.MAX_LIMIT, "返回条数");
+
+        return ApiResponse.success(customerService.searchCustomers(keyword, limit, authentication));
+    }
+
     /**
      * 根据ID获取客户详情
      *
@@ -215,23 +247,68 @@ public class CustomerController {
             @RequestParam(required = false) String influenceLevel,
             @RequestParam(required = false) String decisionPower,
             @RequestParam(required = false) Boolean hasWechat,
+            @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
             HttpServletResponse response,
-            Authentication authentication) {
+            Authentication authentication) throws IOException {
+
+        log.info("导出客户列表: keyword={}, departmentId={}, schoolId={}, format={}",
+                keyword, departmentId, schoolId, format);
+
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
+
+        String baseName = String.format("客户列表_%s", DateUtils.format(LocalDate.now(), "yyyyMMdd"));
+        exportService.setDownloadHeaders(baseName, format, gzip, response);
+
+        long exportedCount = customerService.exportCustomers(keyword, departmentId, schoolId, schoolCity,
+                influenceLevel, decisionPower, hasWechat, format, gzip, response.getOutputStream(), null,
+                authentication);
 
-        log.info("导出客户列表: keyword={}, departmentId={}, schoolId={}", keyword, departmentId, schoolId);
+        log.info("客户列表导出成功: 客户数量={}", exportedCount);
+    }
+
+    /**
+     * 提交客户列表异步导出任务
+     *
+     * @param keyword 关键词
+     * @param departmentId 院系ID
+     * @param schoolId 学校ID
+     * @param schoolCity 学校城市
+     * @param influenceLevel 影响力等级
+     * @param decisionPower 决策权力
+     * @param hasWechat 是否有微信号
+     * @param authentication 认证信息
+     * @return 导出任务
+     */
+    @PostMapping("/export/jobs")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'SALES')")
+    public ApiResponse<ExportJobResponse> submitExportJob(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long departmentId,
+            @RequestParam(required = false) Long schoolId,
+            @RequestParam(required = false) String schoolCity,
+            @RequestParam(required = false) String influenceLevel,
+            @RequestParam(required = false) String decisionPower,
+            @RequestParam(required = false) Boolean hasWechat,
+            @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Authentication authentication) {
 
-        List<CustomerResponse> customers = customerService.getCustomersForExport(
-                keyword, departmentId, schoolId, schoolCity,
-                influenceLevel, decisionPower, hasWechat, authentication);
+        log.info("提交客户列表导出任务: keyword={}, departmentId={}, schoolId={}, format={}",
+                keyword, departmentId, schoolId, format);
 
-        // 定义导出表头
-        LinkedHashMap<String, String> headers = createExportHeaders();
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
 
-        String fileName = String.format("客户列表_%s.xlsx", DateUtils.format(LocalDate.now(), "yyyyMMdd"));
+        String fileName = exportService.getFileName(
+                String.format("客户列表_%s", DateUtils.format(LocalDate.now(), "yyyyMMdd")), format, gzip);
 
-        ExcelUtils.exportToExcel(customers, headers, fileName, response);
+        ExportJobResponse job = exportJobService.submit("CUSTOMER", fileName,
+                (outputStream, progress) -> customerService.exportCustomers(keyword, departmentId, schoolId,
+                        schoolCity, influenceLevel, decisionPower, hasWechat, format, gzip, outputStream,
+                        progress, authentication),
+                authentication);
 
-        log.info("客户列表导出成功: 客户数量={}", customers.size());
+        return ApiResponse.success(job, "导出任务已提交");
     }
 
     /**
@@ -312,7 +389,7 @@ public class CustomerController {
 
         log.info("合并客户: sourceId={}, targetId={}", sourceId, targetId);
 
-        customerService.mergeCustomers(sourceId, targetId, authentication);
+        customerService.mergeCustomers(Collections.singletonList(sourceId), targetId, authentication);
 
         log.info("客户合并成功: sourceId={}, targetId={}", sourceId, targetId);
 
@@ -320,33 +397,74 @@ public class CustomerController {
     }
 
     /**
-     * 创建导出表头映射
+     * 批量客户合并：把多个重复客户一次并入目标客户
      *
-     * @return 表头映射
+     * @param targetId 目标客户ID
+     * @param sourceIds 源客户ID列表
+     * @param authentication 认证信息
+     * @return 合并结果
      */
-    private LinkedHashMap<String, String> createExportHeaders() {
-        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
-        headers.put("id", "客户ID");
-        headers.put("name", "客户姓名");
-        headers.put("position", "职位");
-        headers.put("title", "职称");
-        headers.put("departmentName", "院系名称");
-        headers.put("schoolName", "学校名称");
-        headers.put("schoolCity", "学校城市");
-        headers.put("schoolTypeDescription", "学校类型");
-        headers.put("phone", "手机号");
-        headers.put("wechat", "微信号");
-        headers.put("email", "邮箱");
-        headers.put("officeLocation", "办公地点");
-        headers.put("floorRoom", "楼层房间");
-        headers.put("researchDirection", "研究方向");
-        headers.put("influenceLevelDescription", "影响力等级");
-        headers.put("decisionPowerDescription", "决策权力");
-        headers.put("birthday", "生日");
-        headers.put("visitCount", "拜访次数");
-        headers.put("lastVisitDate", "最后拜访日期");
-        headers.put("createdAt", "创建时间");
-        return headers;
+    @PostMapping("/{targetId}/merge")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ApiResponse<Void> batchMergeCustomers(
+            @PathVariable @NotNull Long targetId,
+            @RequestBody List<Long> sourceIds,
+            Authentication authentication) {
+
+        log.info("批量合并客户: sourceIds={}, targetId={}", sourceIds, targetId);
+
+        ValidationUtils.notEmpty(sourceIds, "sourceIds");
+        ValidationUtils.collectionSize(sourceIds, 1, 50, "sourceIds");
+
+        int movedCount = customerService.mergeCustomers(sourceIds, targetId, authentication);
+
+        log.info("批量合并客户成功: 源客户数={}, 转移拜访记录数={}", sourceIds.size(), movedCount);
+
+        return ApiResponse.success(String.format("成功合并%d个客户，转移%d条拜访记录", sourceIds.size(), movedCount));
+    }
+
+    /**
+     * 分页查询疑似重复客户，供合并客户时参考
+     *
+     * @param status 处理状态（PENDING / IGNORED，默认待处理）
+     * @param pageable 分页参数
+     * @return 疑似重复客户分页列表
+     */
+    @GetMapping("/duplicates")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ApiResponse<PageResponse<CustomerDuplicateResponse>> getSuspectedDuplicates(
+            @RequestParam(required = false) String status,
+            @PageableDefault(size = 20) Pageable pageable) {
+
+        log.debug("查询疑似重复客户: status={}, page={}, size={}",
+                status, pageable.getPageNumber(), pageable.getPageSize());
+
+        return ApiResponse.success(customerDuplicateService.getSuspectedDuplicates(status, pageable));
+    }
+
+    /**
+     * 忽略疑似重复客户（确认不是同一人）
+     *
+     * @param id 疑似重复记录ID
+     * @return 处理结果
+     */
+    @PutMapping("/duplicates/{id}/ignore")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ApiResponse<Void> ignoreDuplicate(@PathVariable @NotNull Long id) {
+        customerDuplicateService.ignoreDuplicate(id);
+        return ApiResponse.success("已忽略");
+    }
+
+    /**
+     * 立即执行一次疑似重复客户增量检测
+     *
+     * @return 检测结果
+     */
+    @PostMapping("/duplicates/scan")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Void> scanDuplicates() {
+        int found = customerDuplicateService.scan();
+        return ApiResponse.success(String.format("检测完成，发现%d对疑似重复客户", found));
     }
 
     /**
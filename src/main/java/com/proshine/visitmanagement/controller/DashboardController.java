@@ -6,9 +6,11 @@ import com.proshine.visitmanagement.util.ValidationUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.Arrays;
@@ -327,6 +329,20 @@ public class DashboardController {
         return ApiResponse.success(realtimeData, "获取实时数据成功");
     }
 
+    /**
+     * 订阅实时数据推送（SSE）
+     * 连接建立后立即推送一次当前数据，之后仅在计数变化时合并推送
+     *
+     * @param authentication 认证信息
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/realtime/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRealtimeData(Authentication authentication) {
+        log.debug("订阅实时数据推送");
+
+        return dashboardService.subscribeRealtimeData(authentication);
+    }
+
     /**
      * 获取个性化推荐
      *
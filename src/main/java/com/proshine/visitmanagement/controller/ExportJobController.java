@@ -0,0 +1,76 @@
+package com.proshine.visitmanagement.controller;
+
+import com.proshine.visitmanagement.dto.response.ApiResponse;
+import com.proshine.visitmanagement.dto.response.ExportJobResponse;
+import com.proshine.visitmanagement.service.ExportJobService;
+import com.proshine.visitmanagement.util.FileUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 导出任务控制器
+ * 查询异步导出任务状态并下载结果文件，任务由各业务模块的 /export/jobs 接口提交
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@RestController
+@RequestMapping("/api/export-jobs")
+@RequiredArgsConstructor
+@Slf4j
+@PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'SALES')")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    /**
+     * 获取当前用户的导出任务
+     */
+    @GetMapping
+    public ApiResponse<List<ExportJobResponse>> getExportJobs(Authentication authentication) {
+        return ApiResponse.success(exportJobService.getJobs(authentication));
+    }
+
+    /**
+     * 获取导出任务状态
+     */
+    @GetMapping("/{jobId}")
+    public ApiResponse<ExportJobResponse> getExportJob(@PathVariable String jobId,
+                                                       Authentication authentication) {
+        return ApiResponse.success(exportJobService.getJob(jobId, authentication));
+    }
+
+    /**
+     * 下载导出结果文件
+     */
+    @GetMapping("/{jobId}/download")
+    public void downloadExportFile(@PathVariable String jobId,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response,
+                                   Authentication authentication) {
+        Path filePath = exportJobService.getJobFile(jobId, authentication);
+        String fileName = exportJobService.getJobFileName(jobId, authentication);
+
+        log.info("下载导出文件: jobId={}, fileName={}", jobId, fileName);
+
+        FileUtils.downloadFile(filePath.toString(), fileName, request, response);
+    }
+
+    /**
+     * 删除导出任务
+     */
+    @DeleteMapping("/{jobId}")
+    public ApiResponse<Void> deleteExportJob(@PathVariable String jobId,
+                                             Authentication authentication) {
+        exportJobService.deleteJob(jobId, authentication);
+        return ApiResponse.success("导出任务删除成功");
+    }
+}
@@ -6,11 +6,13 @@ import com.proshine.visitmanagement.service.FileService;
 import com.proshine.visitmanagement.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.HashMap;
@@ -153,18 +155,20 @@ public class FileController {
     }
 
     /**
-     * 文件下载
+     * 文件下载，支持断点续传（Range）和条件请求（ETag / Last-Modified）
      *
      * @param filePath 文件路径
+     * @param request HTTP请求对象
      * @param response HTTP响应对象
      */
     @GetMapping("/download")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'SALES')")
-    public void downloadFile(@RequestParam("path") String filePath, HttpServletResponse response) {
-        log.info("开始下载文件: filePath={}", filePath);
+    public void downloadFile(@RequestParam("path") String filePath, HttpServletRequest request,
+                             HttpServletResponse response) {
+        log.info("开始下载文件: filePath={}, range={}", filePath, request.getHeader(HttpHeaders.RANGE));
 
         try {
-            FileUtils.downloadFile(filePath, response);
+            fileService.downloadFile(filePath, null, request, response);
 
         } catch (BusinessException e) {
             log.error("文件下载失败: {}", e.getMessage());
@@ -180,17 +184,20 @@ public class FileController {
      *
      * @param filePath 文件路径
      * @param fileName 下载时的文件名
+     * @param request HTTP请求对象
      * @param response HTTP响应对象
      */
     @GetMapping("/download/custom")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'SALES')")
     public void downloadFileWithCustomName(@RequestParam("path") String filePath,
                                            @RequestParam("name") String fileName,
+                                           HttpServletRequest request,
                                            HttpServletResponse response) {
-        log.info("开始下载文件（自定义名称）: filePath={}, fileName={}", filePath, fileName);
+        log.info("开始下载文件（自定义名称）: filePath={}, fileName={}, range={}",
+                filePath, fileName, request.getHeader(HttpHeaders.RANGE));
 
         try {
-            FileUtils.downloadFile(filePath, fileName, response);
+            fileService.downloadFile(filePath, fileName, request, response);
 
         } catch (BusinessException e) {
             log.error("文件下载失败: {}", e.getMessage());
@@ -309,7 +316,7 @@ public class FileController {
         log.info("开始复制文件: sourcePath={}, targetPath={}", sourcePath, targetPath);
 
         try {
-            boolean copied = FileUtils.copyFile(sourcePath, targetPath);
+            boolean copied = fileService.copyFile(sourcePath, targetPath);
 
             if (copied) {
                 return ApiResponse.success(true, "文件复制成功");
@@ -340,7 +347,7 @@ public class FileController {
         log.info("开始移动文件: sourcePath={}, targetPath={}", sourcePath, targetPath);
 
         try {
-            boolean moved = FileUtils.moveFile(sourcePath, targetPath);
+            boolean moved = fileService.moveFile(sourcePath, targetPath);
 
             if (moved) {
                 return ApiResponse.success(true, "文件移动成功");
@@ -457,7 +464,7 @@ public class FileController {
         log.debug("检查文件是否存在: filePath={}", filePath);
 
         try {
-            boolean exists = FileUtils.exists(filePath);
+            boolean exists = fileService.exists(filePath);
             return ApiResponse.success(exists, exists ? "文件存在" : "文件不存在");
 
         } catch (Exception e) {
@@ -2,9 +2,12 @@ package com.proshine.visitmanagement.controller;
 
 import com.proshine.visitmanagement.dto.request.SchoolRequest;
 import com.proshine.visitmanagement.dto.response.ApiResponse;
+import com.proshine.visitmanagement.dto.response.ExportJobResponse;
 import com.proshine.visitmanagement.dto.response.PageResponse;
 import com.proshine.visitmanagement.dto.response.SchoolResponse;
 import com.proshine.visitmanagement.dto.response.SchoolDepartmentTreeResponse;
+import com.proshine.visitmanagement.service.ExportJobService;
+import com.proshine.visitmanagement.service.ExportService;
 import com.proshine.visitmanagement.service.SchoolService;
 import com.proshine.visitmanagement.util.ExcelUtils;
 import com.proshine.visitmanagement.util.ValidationUtils;
@@ -22,7 +25,9 @@ import org.springframework.web.multipart.MultipartFile;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +47,8 @@ import java.util.Map;
 public class SchoolController {
 
     private final SchoolService schoolService;
+    private final ExportJobService exportJobService;
+    private final ExportService exportService;
 
     /**
      * 分页查询学校
@@ -165,22 +172,54 @@ public class SchoolController {
             @RequestParam(required = false) String province,
             @RequestParam(required = false) String city,
             @RequestParam(required = false) String schoolType,
+            @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
             HttpServletResponse response,
-            Authentication authentication) {
+            Authentication authentication) throws IOException {
 
-        log.info("导出学校列表: keyword={}, province={}, city={}, schoolType={}",
-                keyword, province, city, schoolType);
+        log.info("导出学校列表: keyword={}, province={}, city={}, schoolType={}, format={}",
+                keyword, province, city, schoolType, format);
 
-        List<SchoolResponse> schools = schoolService.getSchoolsForExport(
-                keyword, province, city, schoolType, authentication);
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
 
-        LinkedHashMap<String, String> headers = createExportHeaders();
-        String fileName = String.format("学校列表_%s.xlsx",
+        String baseName = String.format("学校列表_%s",
                 LocalDate.now().toString().replace("-", ""));
+        exportService.setDownloadHeaders(baseName, format, gzip, response);
 
-        ExcelUtils.exportToExcel(schools, headers, fileName, response);
+        long exportedCount = schoolService.exportSchools(keyword, province, city, schoolType,
+                format, gzip, response.getOutputStream(), null, authentication);
 
-        log.info("学校列表导出成功: 学校数量={}", schools.size());
+        log.info("学校列表导出成功: 学校数量={}", exportedCount);
+    }
+
+    /**
+     * 提交学校列表异步导出任务
+     */
+    @PostMapping("/export/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<ExportJobResponse> submitExportJob(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String province,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String schoolType,
+            @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Authentication authentication) {
+
+        log.info("提交学校列表导出任务: keyword={}, province={}, city={}, schoolType={}, format={}",
+                keyword, province, city, schoolType, format);
+
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
+
+        String fileName = exportService.getFileName(String.format("学校列表_%s",
+                LocalDate.now().toString().replace("-", "")), format, gzip);
+
+        ExportJobResponse job = exportJobService.submit("SCHOOL", fileName,
+                (outputStream, progress) -> schoolService.exportSchools(keyword, province, city, schoolType,
+                        format, gzip, outputStream, progress, authentication),
+                authentication);
+
+        return ApiResponse.success(job, "导出任务已提交");
     }
 
     /**
@@ -258,26 +297,6 @@ public class SchoolController {
         return ApiResponse.success(tree, "获取学校院系树成功");
     }
 
-    /**
-     * 创建导出表头映射
-     */
-    private LinkedHashMap<String, String> createExportHeaders() {
-        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
-        headers.put("id", "学校ID");
-        headers.put("name", "学校名称");
-        headers.put("address", "学校地址");
-        headers.put("province", "省份");
-        headers.put("city", "城市");
-        headers.put("schoolTypeDescription", "学校类型");
-        headers.put("contactPhone", "联系电话");
-        headers.put("website", "学校网站");
-        headers.put("departmentCount", "院系数量");
-        headers.put("customerCount", "客户数量");
-        headers.put("createdAt", "创建时间");
-        headers.put("updatedAt", "更新时间");
-        return headers;
-    }
-
     /**
      * 创建导入模板表头映射
      */
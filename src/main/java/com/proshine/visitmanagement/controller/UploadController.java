@@ -0,0 +1,66 @@
+package com.proshine.visitmanagement.controller;
+
+import com.proshine.visitmanagement.exception.BusinessException;
+import com.proshine.visitmanagement.service.FileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 上传文件访问控制器
+ * 替代 /uploads/** 静态资源映射：启用去重后上传返回的路径只是引用，需经文件服务定位内容文件
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class UploadController {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final FileService fileService;
+
+    /**
+     * 按上传路径访问文件，图片等可直接在浏览器中展示
+     *
+     * @param request HTTP请求对象
+     * @param response HTTP响应对象
+     */
+    @GetMapping("/uploads/**")
+    public void serveUpload(HttpServletRequest request, HttpServletResponse response) {
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String relativePath = PATH_MATCHER.extractPathWithinPattern(pattern, path);
+
+        try {
+            fileService.serveUpload(relativePath, request, response);
+
+        } catch (BusinessException e) {
+            log.warn("访问上传文件失败: {}, {}", relativePath, e.getMessage());
+            sendError(response, HttpServletResponse.SC_NOT_FOUND);
+        } catch (Exception e) {
+            log.error("访问上传文件异常: {}", relativePath, e);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void sendError(HttpServletResponse response, int status) {
+        if (response.isCommitted()) {
+            return;
+        }
+        try {
+            response.sendError(status);
+        } catch (IOException e) {
+            log.error("写入错误响应失败", e);
+        }
+    }
+}
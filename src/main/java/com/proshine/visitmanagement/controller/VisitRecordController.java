@@ -2,8 +2,12 @@ package com.proshine.visitmanagement.controller;
 
 import com.proshine.visitmanagement.dto.request.VisitRecordRequest;
 import com.proshine.visitmanagement.dto.response.ApiResponse;
+import com.proshine.visitmanagement.dto.response.CursorPageResponse;
+import com.proshine.visitmanagement.dto.response.ExportJobResponse;
 import com.proshine.visitmanagement.dto.response.PageResponse;
 import com.proshine.visitmanagement.dto.response.VisitRecordResponse;
+import com.proshine.visitmanagement.service.ExportJobService;
+import com.proshine.visitmanagement.service.ExportService;
 import com.proshine.visitmanagement.service.VisitRecordService;
 import com.proshine.visitmanagement.util.ValidationUtils;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +48,8 @@ import java.util.Map;
 public class VisitRecordController {
 
     private final VisitRecordService visitRecordService;
+    private final ExportJobService exportJobService;
+    private final ExportService exportService;
 
     /**
      * 分页查询拜访记录
@@ -71,6 +78,37 @@ public class VisitRecordController {
         return ApiResponse.success(visitRecords);
     }
 
+    /**
+     * 游标分页查询拜访记录（移动端无限滚动）
+     */
+    @GetMapping("/scroll")
+    public ApiResponse<CursorPageResponse<VisitRecordResponse>> getVisitRecordsByCursor(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long salesId,
+            @RequestParam(required = false) Long customerId,
+            @RequestParam(required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String intentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(defaultValue = "false") Boolean withTotal,
+            Authentication authentication) {
+
+        log.debug("游标查询拜访记录: keyword={}, salesId={}, customerId={}, cursor={}, size={}",
+                keyword, salesId, customerId, cursor, size);
+
+        ValidationUtils.range(size, 1, 100, "每页数量");
+
+        CursorPageResponse<VisitRecordResponse> visitRecords = visitRecordService.getVisitRecordsByCursor(
+                keyword, salesId, customerId, startDate, endDate, status, intentLevel,
+                cursor, size, withTotal, authentication);
+
+        return ApiResponse.success(visitRecords);
+    }
+
     /**
      * 根据ID获取拜访记录详情
      */
@@ -179,20 +217,57 @@ public class VisitRecordController {
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String intentLevel,
             @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
             HttpServletResponse response,
             Authentication authentication) {
 
         log.info("导出拜访记录: keyword={}, salesId={}, customerId={}, format={}",
                 keyword, salesId, customerId, format);
 
-        ValidationUtils.exportFormat(format, Arrays.asList("excel", "pdf"));
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
 
         visitRecordService.exportVisitRecords(keyword, salesId, customerId, startDate,
-                endDate, status, intentLevel, format, response, authentication);
+                endDate, status, intentLevel, format, gzip, response, authentication);
 
         log.info("拜访记录导出完成");
     }
 
+    /**
+     * 提交拜访记录异步导出任务
+     */
+    @PostMapping("/export/jobs")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'SALES')")
+    public ApiResponse<ExportJobResponse> submitExportJob(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long salesId,
+            @RequestParam(required = false) Long customerId,
+            @RequestParam(required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String intentLevel,
+            @RequestParam(defaultValue = "excel") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Authentication authentication) {
+
+        log.info("提交拜访记录导出任务: keyword={}, salesId={}, customerId={}, format={}",
+                keyword, salesId, customerId, format);
+
+        ValidationUtils.exportFormat(format, Arrays.asList("excel", "csv"));
+
+        String fileName = exportService.getFileName(String.format("拜访记录_%s",
+                LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"))), format, gzip);
+
+        ExportJobResponse job = exportJobService.submit("VISIT_RECORD", fileName,
+                (outputStream, progress) -> visitRecordService.exportVisitRecords(keyword, salesId, customerId,
+                        startDate, endDate, status, intentLevel, format, gzip, outputStream,
+                        progress, authentication),
+                authentication);
+
+        return ApiResponse.success(job, "导出任务已提交");
+    }
+
     /**
      * 获取拜访记录统计
      */
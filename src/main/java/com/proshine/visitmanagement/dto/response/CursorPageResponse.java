@@ -0,0 +1,32 @@
+package com.proshine.visitmanagement.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页响应格式
+ * 客户端将 nextCursor 原样回传以获取下一批数据，无需页码
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+
+    private Integer size;
+
+    private Boolean hasNext;
+
+    private String nextCursor; // 没有更多数据时为空
+
+    private Long totalElements; // 未请求总数时为空
+}
@@ -0,0 +1,32 @@
+package com.proshine.visitmanagement.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 疑似重复客户响应类
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerDuplicateResponse {
+
+    private Long id;
+    private Double score;
+    private List<String> reasons;
+    private List<String> reasonDescriptions;
+    private String status;
+    private CustomerSuggestionResponse customer;
+    private CustomerSuggestionResponse duplicateCustomer;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,9 @@
 package com.proshine.visitmanagement.dto.response;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.School;
+import com.proshine.visitmanagement.entity.VisitRecord;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,6 +11,7 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 /**
  * 客户响应DTO
@@ -87,4 +91,72 @@ public class CustomerResponse {
     private String lastIntentLevel;
 
     private Boolean wechatAdded;
+
+    /**
+     * 投影构造方法
+     * 供 CustomerRepository 的导出流式查询使用，一条SQL查出客户、院系、学校、创建人及拜访统计，
+     * 逐行读取结果集时不再对每个客户单独查询；学校优先取客户直接关联的学校，其次取院系所属学校
+     */
+    public CustomerResponse(Long id, String name, String position, String title,
+                            Long departmentId, String departmentName,
+                            Long customerSchoolId, String customerSchoolName, String customerSchoolCity,
+                            String customerSchoolTypes,
+                            Long departmentSchoolId, String departmentSchoolName, String departmentSchoolCity,
+                            String departmentSchoolTypes,
+                            String phone, String wechat, String email, String officeLocation, String floorRoom,
+                            String researchDirection,
+                            Customer.InfluenceLevel influenceLevel, Customer.DecisionPower decisionPower,
+                            LocalDate birthday, String notes,
+                            Long visitCount, LocalDate lastVisitDate, VisitRecord.IntentLevel lastIntentLevel,
+                            Long createdById, String createdByName, Long updatedById, String updatedByName,
+                            LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.position = position;
+        this.title = title;
+
+        // 院系和学校信息
+        this.departmentId = departmentId;
+        this.departmentName = departmentName;
+        boolean ownSchool = customerSchoolId != null;
+        this.schoolId = ownSchool ? customerSchoolId : departmentSchoolId;
+        this.schoolName = ownSchool ? customerSchoolName : departmentSchoolName;
+        this.schoolCity = ownSchool ? customerSchoolCity : departmentSchoolCity;
+        if (this.schoolId != null) {
+            Set<School.SchoolType> schoolTypes =
+                    School.parseSchoolTypes(ownSchool ? customerSchoolTypes : departmentSchoolTypes);
+            School.SchoolType firstType = schoolTypes.isEmpty() ?
+                    School.SchoolType.REGULAR : schoolTypes.iterator().next();
+            this.schoolType = firstType.name();
+            this.schoolTypeDescription = firstType.getDescription();
+        }
+
+        // 联系方式及其他信息
+        this.phone = phone;
+        this.wechat = wechat;
+        this.email = email;
+        this.officeLocation = officeLocation;
+        this.floorRoom = floorRoom;
+        this.researchDirection = researchDirection;
+        this.influenceLevel = influenceLevel != null ? influenceLevel.name() : null;
+        this.influenceLevelDescription = influenceLevel != null ? influenceLevel.getDescription() : null;
+        this.decisionPower = decisionPower != null ? decisionPower.name() : null;
+        this.decisionPowerDescription = decisionPower != null ? decisionPower.getDescription() : null;
+        this.birthday = birthday;
+        this.notes = notes;
+        this.wechatAdded = wechat != null && !wechat.trim().isEmpty();
+
+        // 拜访统计
+        this.visitCount = visitCount != null ? visitCount.intValue() : 0;
+        this.lastVisitDate = lastVisitDate;
+        this.lastIntentLevel = lastIntentLevel != null ? lastIntentLevel.name() : null;
+
+        // 审计信息
+        this.createdById = createdById;
+        this.createdByName = createdByName;
+        this.updatedById = updatedById;
+        this.updatedByName = updatedByName;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.proshine.visitmanagement.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 客户联想搜索响应类
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSuggestionResponse {
+
+    private Long id;
+    private String name;
+    private String position;
+    private Long departmentId;
+    private String departmentName;
+    private Long schoolId;
+    private String schoolName;
+}
@@ -1,13 +1,17 @@
 package com.proshine.visitmanagement.dto.response;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.proshine.visitmanagement.entity.School;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 学校响应类
@@ -44,4 +48,40 @@ public class SchoolResponse {
 
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime updatedAt;
+
+    /**
+     * 投影构造方法
+     * 供 SchoolRepository 的导出流式查询使用，院系、客户、拜访统计由同一条SQL的子查询给出
+     */
+    public SchoolResponse(Long id, String name, String address, String province, String city,
+                          String schoolTypesString, String contactPhone, String website,
+                          Long departmentCount, Long customerCount, Long visitCount, LocalDate lastVisitDate,
+                          LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        this.province = province;
+        this.city = city;
+
+        // 学校类型，单值字段取第一个类型以向后兼容
+        Set<School.SchoolType> types = School.parseSchoolTypes(schoolTypesString);
+        School.SchoolType firstType = types.isEmpty() ? School.SchoolType.REGULAR : types.iterator().next();
+        this.schoolType = firstType.name();
+        this.schoolTypeDescription = firstType.getDescription();
+        this.schoolTypes = types.stream().map(School.SchoolType::name).collect(Collectors.toList());
+        this.schoolTypeDescriptions = types.stream().map(School.SchoolType::getDescription)
+                .collect(Collectors.toList());
+
+        this.contactPhone = contactPhone;
+        this.website = website;
+
+        // 统计信息
+        this.departmentCount = departmentCount != null ? departmentCount.intValue() : 0;
+        this.customerCount = customerCount != null ? customerCount.intValue() : 0;
+        this.visitCount = visitCount != null ? visitCount.intValue() : 0;
+        this.lastVisitDate = lastVisitDate != null ? lastVisitDate.atStartOfDay() : null;
+
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.proshine.visitmanagement.dto.response;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.VisitRecord;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -135,4 +137,87 @@ public class VisitRecordResponse {
 
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime updatedAt;
+
+    /**
+     * 投影构造方法
+     * 供 VisitRecordRepository 的 JPQL 构造器表达式一次查出列表所需的全部列，
+     * 实体转换也复用此方法，保证两条路径字段映射一致；枚举名称、描述等派生字段在此计算
+     */
+    public VisitRecordResponse(Long id,
+                               Long customerId, String customerName, String customerPosition,
+                               String customerPhone, String customerEmail,
+                               Customer.InfluenceLevel customerInfluenceLevel,
+                               Customer.DecisionPower customerDecisionPower,
+                               Long departmentId, String departmentName,
+                               Long schoolId, String schoolName, String schoolCity,
+                               Long salesId, String salesName, String salesDepartment,
+                               LocalDate visitDate, LocalTime visitTime, Integer durationMinutes,
+                               VisitRecord.VisitType visitType, VisitRecord.VisitStatus status,
+                               VisitRecord.IntentLevel intentLevel,
+                               String businessItems, String painPoints, String competitors,
+                               String budgetRange, String decisionTimeline, String nextStep,
+                               LocalDate followUpDate, String notes,
+                               Boolean materialsLeft, Boolean wechatAdded, Integer rating,
+                               String location, String weather,
+                               LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+
+        // 客户信息
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.customerPosition = customerPosition;
+        this.customerPhone = customerPhone;
+        this.customerEmail = customerEmail;
+        this.customerInfluenceLevel = customerInfluenceLevel != null ? customerInfluenceLevel.name() : null;
+        this.customerDecisionPower = customerDecisionPower != null ? customerDecisionPower.name() : null;
+
+        // 院系和学校信息
+        this.departmentId = departmentId;
+        this.departmentName = departmentName;
+        this.schoolId = schoolId;
+        this.schoolName = schoolName;
+        this.schoolCity = schoolCity;
+
+        // 销售人员信息
+        this.salesId = salesId;
+        this.salesName = salesName;
+        this.salesDepartment = salesDepartment;
+
+        // 拜访基础信息
+        this.visitDate = visitDate;
+        this.visitTime = visitTime;
+        this.durationMinutes = durationMinutes;
+        this.visitType = visitType != null ? visitType.name() : null;
+        this.visitTypeDescription = visitType != null ? visitType.getDescription() : null;
+        this.status = status != null ? status.name() : null;
+        this.statusDescription = status != null ? status.getDescription() : null;
+        this.intentLevel = intentLevel != null ? intentLevel.name() : null;
+        this.intentLevelDescription = intentLevel != null ? intentLevel.getDescription() : null;
+
+        // 拜访详细内容 - 映射VisitRecord字段到VisitRecordResponse字段
+        this.availableMatters = businessItems; // businessItems -> availableMatters
+        this.demandAnalysis = painPoints; // painPoints -> demandAnalysis
+        this.competitorAnalysis = competitors; // competitors -> competitorAnalysis
+        this.nextSteps = nextStep; // nextStep -> nextSteps
+        this.visitSummary = notes; // notes -> visitSummary (暂时映射)
+        this.notes = notes;
+
+        // 直接映射字段供前端使用
+        this.businessItems = businessItems;
+        this.painPoints = painPoints;
+        this.competitors = competitors;
+        this.budgetRange = budgetRange;
+        this.decisionTimeline = decisionTimeline;
+        this.nextStep = nextStep;
+        this.followUpDate = followUpDate;
+        this.materialsLeft = materialsLeft;
+        this.wechatAdded = wechatAdded;
+        this.rating = rating;
+        this.location = location;
+        this.weather = weather;
+
+        // 时间戳
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
 }
@@ -1,6 +1,7 @@
 package com.proshine.visitmanagement.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.proshine.visitmanagement.config.IdGeneratorInitializer;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -42,10 +43,13 @@ import java.util.List;
 public class Customer {
 
     /**
-     * 主键ID
+     * 主键ID（号段表分配，支持JDBC批量插入）
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "customers_id")
+    @TableGenerator(name = "customers_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.SEGMENT_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "customers", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     @Column(name = "id")
     private Long id;
 
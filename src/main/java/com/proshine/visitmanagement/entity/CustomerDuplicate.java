@@ -0,0 +1,113 @@
+package com.proshine.visitmanagement.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 疑似重复客户实体类
+ * 每行是一对疑似重复的客户，customer_id 总是小于 duplicate_customer_id，保证同一对客户只有一行
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Entity
+@Table(name = "customer_duplicates",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_customer_duplicate", columnNames = {"customer_id", "duplicate_customer_id"})
+        },
+        indexes = {
+                @Index(name = "idx_duplicate_customer_id", columnList = "duplicate_customer_id"),
+                @Index(name = "idx_status_score", columnList = "status,score")
+        })
+public class CustomerDuplicate {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * 客户ID（较小的一方）
+     */
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;
+
+    /**
+     * 疑似重复的客户ID（较大的一方）
+     */
+    @Column(name = "duplicate_customer_id", nullable = false)
+    private Long duplicateCustomerId;
+
+    /**
+     * 相似度得分（0 ~ 1）
+     */
+    @Column(name = "score", nullable = false)
+    private Double score;
+
+    /**
+     * 命中的匹配项，逗号分隔，取值见 {@link MatchReason}
+     */
+    @Column(name = "reasons", nullable = false, length = 100)
+    private String reasons;
+
+    /**
+     * 处理状态
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private DuplicateStatus status = DuplicateStatus.PENDING;
+
+    /**
+     * 发现时间
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 最近一次计算时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 处理状态枚举
+     */
+    @Getter
+    public enum DuplicateStatus {
+        PENDING("待处理"),
+        IGNORED("已忽略");
+
+        private final String description;
+
+        DuplicateStatus(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * 匹配项枚举
+     */
+    @Getter
+    public enum MatchReason {
+        PHONE("电话相同"),
+        EMAIL("邮箱相同"),
+        WECHAT("微信号相同"),
+        NAME("同院系同名"),
+        SIMILAR_NAME("姓名相似");
+
+        private final String description;
+
+        MatchReason(String description) {
+            this.description = description;
+        }
+    }
+}
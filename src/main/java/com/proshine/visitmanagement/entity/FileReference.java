@@ -0,0 +1,78 @@
+package com.proshine.visitmanagement.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文件引用实体类
+ * 每次上传对应一条引用，记录返回给调用方的文件路径及原始文件名、扩展名和内容类型；
+ * 实际内容按SHA-256存放在 stored_files 指向的无扩展名文件中，多条引用可以共享同一份内容
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Entity
+@Table(name = "file_references",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_file_reference_path", columnNames = {"file_path"})
+        },
+        indexes = {
+                @Index(name = "idx_file_reference_sha256", columnList = "sha256")
+        })
+public class FileReference {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * 引用路径（返回给调用方，带扩展名）
+     */
+    @Column(name = "file_path", nullable = false, length = 255)
+    private String filePath;
+
+    /**
+     * 文件内容的SHA-256（十六进制）
+     */
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    /**
+     * 原始文件名
+     */
+    @Column(name = "original_name", length = 255)
+    private String originalName;
+
+    /**
+     * 扩展名（含点号）
+     */
+    @Column(name = "extension", length = 20)
+    private String extension;
+
+    /**
+     * 内容类型
+     */
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    /**
+     * 文件类型（avatar / document / image / other）
+     */
+    @Column(name = "file_type", length = 20)
+    private String fileType;
+
+    /**
+     * 上传时间
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,50 @@
+package com.proshine.visitmanagement.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 已吊销令牌实体类
+ * 以令牌的 JTI 为主键，多个节点共享；令牌过期后记录即无意义，会被定期清理
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Entity
+@Table(name = "revoked_tokens",
+        indexes = {
+                @Index(name = "idx_revoked_at", columnList = "revoked_at"),
+                @Index(name = "idx_expires_at", columnList = "expires_at")
+        })
+public class RevokedToken {
+
+    /**
+     * 令牌JTI
+     */
+    @Id
+    @Column(name = "jti", length = 64)
+    private String jti;
+
+    /**
+     * 令牌所属用户名
+     */
+    @Column(name = "username", length = 50)
+    private String username;
+
+    /**
+     * 令牌原本的过期时间，之后记录可以删除
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * 吊销时间，其他节点按此增量同步
+     */
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+}
@@ -85,6 +85,13 @@ public class School {
      */
     @Transient
     public Set<SchoolType> getSchoolTypes() {
+        return parseSchoolTypes(schoolTypesString);
+    }
+
+    /**
+     * 解析逗号分隔的学校类型字符串（供实体和投影查询共用），无法识别的类型忽略
+     */
+    public static Set<SchoolType> parseSchoolTypes(String schoolTypesString) {
         if (schoolTypesString == null || schoolTypesString.trim().isEmpty()) {
             return new HashSet<>();
         }
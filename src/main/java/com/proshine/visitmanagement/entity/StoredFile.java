@@ -0,0 +1,71 @@
+package com.proshine.visitmanagement.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 按内容寻址存储的文件实体类
+ * 内容相同（SHA-256相同）的上传只保存一份，ref_count 记录引用次数，归零时才删除磁盘文件
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Entity
+@Table(name = "stored_files",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_stored_file_sha256", columnNames = {"sha256"})
+        },
+        indexes = {
+                @Index(name = "idx_stored_file_path", columnList = "file_path")
+        })
+public class StoredFile {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * 文件内容的SHA-256（十六进制）
+     */
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    /**
+     * 文件存储路径
+     */
+    @Column(name = "file_path", nullable = false, length = 255)
+    private String filePath;
+
+    /**
+     * 文件大小（字节）
+     */
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    /**
+     * 引用次数
+     */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    /**
+     * 首次上传时间
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 最近一次引用变化时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,7 @@
 package com.proshine.visitmanagement.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.proshine.visitmanagement.config.IdGeneratorInitializer;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.hibernate.annotations.SQLDelete;
@@ -36,10 +37,13 @@ import java.time.LocalDateTime;
 public class User {
 
     /**
-     * 主键ID
+     * 主键ID（号段表分配，支持JDBC批量插入）
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+    @TableGenerator(name = "users_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.SEGMENT_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "users", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     @Column(name = "id")
     private Long id;
 
@@ -0,0 +1,92 @@
+package com.proshine.visitmanagement.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 拜访日汇总实体类
+ * 按 (日期, 销售人员, 客户, 状态, 意向等级, 拜访类型) 预聚合拜访数量，供仪表盘统计使用
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Entity
+@Table(name = "visit_daily_stats",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_visit_daily_stat",
+                        columnNames = {"stat_date", "sales_id", "customer_id", "status", "intent_level", "visit_type"})
+        },
+        indexes = {
+                @Index(name = "idx_stat_date", columnList = "stat_date"),
+                @Index(name = "idx_sales_stat_date", columnList = "sales_id,stat_date"),
+                @Index(name = "idx_customer_stat_date", columnList = "customer_id,stat_date")
+        })
+public class VisitDailyStat {
+
+    /**
+     * 空维度取值（意向等级、拜访类型为空时使用，保证唯一键生效）
+     */
+    public static final String NONE = "";
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * 统计日期（即拜访日期）
+     */
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    /**
+     * 销售人员ID
+     */
+    @Column(name = "sales_id", nullable = false)
+    private Long salesId;
+
+    /**
+     * 客户ID
+     */
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;
+
+    /**
+     * 拜访状态
+     */
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    /**
+     * 意向等级（为空时存储空字符串）
+     */
+    @Column(name = "intent_level", nullable = false, length = 20)
+    private String intentLevel;
+
+    /**
+     * 拜访类型（为空时存储空字符串）
+     */
+    @Column(name = "visit_type", nullable = false, length = 20)
+    private String visitType;
+
+    /**
+     * 拜访数量
+     */
+    @Column(name = "visit_count", nullable = false)
+    private Long visitCount;
+
+    /**
+     * 修改时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,7 @@
 package com.proshine.visitmanagement.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.proshine.visitmanagement.config.IdGeneratorInitializer;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -15,6 +16,7 @@ import javax.validation.constraints.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.StringJoiner;
 
 /**
  * 拜访记录实体类
@@ -32,7 +34,9 @@ import java.time.LocalTime;
         @Index(name = "idx_status", columnList = "status"),
         @Index(name = "idx_intent_level", columnList = "intent_level"),
         @Index(name = "idx_created_by", columnList = "created_by"),
-        @Index(name = "idx_composite", columnList = "sales_id,visit_date,status")
+        @Index(name = "idx_composite", columnList = "sales_id,visit_date,status"),
+        @Index(name = "idx_visit_seek", columnList = "visit_date,created_at,id"),
+        @Index(name = "idx_sales_visit_seek", columnList = "sales_id,visit_date,created_at,id")
 })
 @EntityListeners(AuditingEntityListener.class)
 @SQLDelete(sql = "UPDATE visit_records SET deleted_at = NOW() WHERE id = ?")
@@ -40,10 +44,13 @@ import java.time.LocalTime;
 public class VisitRecord {
 
     /**
-     * 主键ID
+     * 主键ID（号段表分配，支持JDBC批量插入）
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "visit_records_id")
+    @TableGenerator(name = "visit_records_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.SEGMENT_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "visit_records", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     @Column(name = "id")
     private Long id;
 
@@ -185,6 +192,14 @@ public class VisitRecord {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
+    /**
+     * 检索文本（客户姓名、业务事项、痛点、竞争对手、备注），保存时自动生成，
+     * 由 ft_visit_search 全文索引（ngram 分词）支持关键词搜索
+     */
+    @Column(name = "search_text", columnDefinition = "MEDIUMTEXT")
+    @JsonIgnore
+    private String searchText;
+
     /**
      * 是否留下资料
      */
@@ -241,6 +256,24 @@ public class VisitRecord {
     @Column(name = "deleted_at")
     private LocalDateTime deletedAt;
 
+    // ==================== 生命周期回调 ====================
+
+    /**
+     * 保存前重新生成检索文本，字段顺序与 VisitRecordRepository 中的回填 SQL 保持一致
+     */
+    @PrePersist
+    @PreUpdate
+    public void refreshSearchText() {
+        StringJoiner joiner = new StringJoiner("\n");
+        for (String text : new String[]{customer != null ? customer.getName() : null,
+                businessItems, painPoints, competitors, notes}) {
+            if (text != null && !text.trim().isEmpty()) {
+                joiner.add(text);
+            }
+        }
+        searchText = joiner.toString();
+    }
+
     // ==================== 枚举定义 ====================
 
     /**
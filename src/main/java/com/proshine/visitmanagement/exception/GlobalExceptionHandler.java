@@ -3,6 +3,7 @@ package com.proshine.visitmanagement.exception;
 import com.proshine.visitmanagement.dto.response.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.access.AccessDeniedException;
@@ -22,6 +23,7 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import java.sql.SQLIntegrityConstraintViolationException;
@@ -50,6 +52,19 @@ public class GlobalExceptionHandler {
         return createErrorResponse(400, e.getMessage(), request.getRequestURI());
     }
 
+    /**
+     * 处理请求过于频繁异常
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ApiResponse<Void> handleTooManyRequestsException(TooManyRequestsException e, HttpServletRequest request,
+                                                            HttpServletResponse response) {
+        log.warn("请求过于频繁 - 路径: {}, 消息: {}, 重试等待: {}秒",
+                request.getRequestURI(), e.getMessage(), e.getRetryAfterSeconds());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return createErrorResponse(429, e.getMessage(), request.getRequestURI());
+    }
+
     /**
      * 处理资源未找到异常
      */
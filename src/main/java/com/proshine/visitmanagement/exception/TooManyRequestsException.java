@@ -0,0 +1,30 @@
+package com.proshine.visitmanagement.exception;
+
+import lombok.Getter;
+
+/**
+ * 请求过于频繁异常类
+ * 对应HTTP 429状态码，并通过 Retry-After 响应头告知客户端多久后可以重试
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Getter
+public class TooManyRequestsException extends BusinessException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * 构造函数
+     *
+     * @param message 错误消息
+     * @param retryAfterSeconds 建议的重试等待时间（秒）
+     */
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(429, message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,60 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.entity.CustomerDuplicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * 疑似重复客户数据访问层接口
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Repository
+public interface CustomerDuplicateRepository extends JpaRepository<CustomerDuplicate, Long> {
+
+    // ==================== 增量维护方法 ====================
+
+    /**
+     * 写入或刷新一对疑似重复客户，已有记录保留原处理状态
+     */
+    @Modifying
+    @Query(value = "INSERT INTO customer_duplicates " +
+            "(customer_id, duplicate_customer_id, score, reasons, status, created_at, updated_at) " +
+            "VALUES (:customerId, :duplicateCustomerId, :score, :reasons, 'PENDING', NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE score = VALUES(score), reasons = VALUES(reasons), updated_at = NOW()",
+            nativeQuery = true)
+    int upsert(@Param("customerId") Long customerId,
+               @Param("duplicateCustomerId") Long duplicateCustomerId,
+               @Param("score") double score,
+               @Param("reasons") String reasons);
+
+    /**
+     * 删除涉及指定客户的待处理记录（客户资料变化后重新计算）
+     */
+    @Modifying
+    @Query(value = "DELETE FROM customer_duplicates WHERE status = 'PENDING' " +
+            "AND (customer_id IN (:customerIds) OR duplicate_customer_id IN (:customerIds))",
+            nativeQuery = true)
+    int deletePendingByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
+
+    // ==================== 查询方法 ====================
+
+    /**
+     * 分页查询指定状态的疑似重复客户，按得分降序；任一方已删除（含被合并）的记录不返回
+     */
+    @Query(value = "SELECT d FROM CustomerDuplicate d, Customer a, Customer b " +
+            "WHERE a.id = d.customerId AND b.id = d.duplicateCustomerId AND d.status = :status " +
+            "ORDER BY d.score DESC, d.id DESC",
+            countQuery = "SELECT COUNT(d) FROM CustomerDuplicate d, Customer a, Customer b " +
+                    "WHERE a.id = d.customerId AND b.id = d.duplicateCustomerId AND d.status = :status")
+    Page<CustomerDuplicate> findLiveByStatus(@Param("status") CustomerDuplicate.DuplicateStatus status,
+                                             Pageable pageable);
+}
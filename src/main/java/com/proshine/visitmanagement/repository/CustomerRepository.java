@@ -1,16 +1,22 @@
 package com.proshine.visitmanagement.repository;
 
+import com.proshine.visitmanagement.dto.response.CustomerResponse;
 import com.proshine.visitmanagement.entity.Customer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * 客户数据访问层接口 - 清理后的版本，仅保留项目中实际使用的方法
@@ -28,11 +34,45 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
      */
     Optional<Customer> findByEmail(String email);
 
+    /**
+     * 查询已被占用的邮箱 - 用于批量导入时按批校验邮箱重复
+     */
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
     /**
      * 根据姓名模糊查询客户 - 用于客户搜索
      */
     List<Customer> findByNameContaining(String name);
 
+    /**
+     * 查询全部客户及其院系、学校 - 用于构建客户联想索引
+     */
+    @Query("SELECT c FROM Customer c " +
+            "LEFT JOIN FETCH c.school " +
+            "LEFT JOIN FETCH c.department d " +
+            "LEFT JOIN FETCH d.school")
+    List<Customer> findAllForSearchIndex();
+
+    /**
+     * 查询重复检测所需的字段，since 为空时查询全部 - 用于疑似重复客户检测
+     *
+     * @return [ID, 姓名, 电话, 邮箱, 微信号, 院系ID]
+     */
+    @Query("SELECT c.id, c.name, c.phone, c.email, c.wechat, c.departmentId FROM Customer c " +
+            "WHERE (:since IS NULL OR c.updatedAt >= :since)")
+    List<Object[]> findDuplicateScanRows(@Param("since") LocalDateTime since);
+
+    /**
+     * 按ID查询客户并带出学校、院系 - 用于疑似重复客户列表
+     */
+    @Query("SELECT c FROM Customer c " +
+            "LEFT JOIN FETCH c.school " +
+            "LEFT JOIN FETCH c.department d " +
+            "LEFT JOIN FETCH d.school " +
+            "WHERE c.id IN :ids")
+    List<Customer> findAllWithSchoolAndDepartmentByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * 根据院系ID查询客户 - 用于院系管理和客户服务
      */
@@ -113,6 +153,19 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
      */
     long countByDepartmentId(Long id);
 
+    /**
+     * 按院系分组统计客户数量 - 用于批量删除院系前的关联检查
+     */
+    @Query("SELECT c.departmentId, COUNT(c) FROM Customer c WHERE c.departmentId IN :departmentIds GROUP BY c.departmentId")
+    List<Object[]> countGroupByDepartmentIdIn(@Param("departmentIds") Collection<Long> departmentIds);
+
+    /**
+     * 按ID批量软删除，一条语句处理一个分块
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Customer c SET c.deletedAt = CURRENT_TIMESTAMP WHERE c.id IN :ids AND c.deletedAt IS NULL")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * 根据创建人ID和影响力等级统计客户数量 - 用于客户服务
      */
@@ -181,40 +234,32 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     // ==================== 导出查询方法 ====================
 
     /**
-     * 多条件查询客户用于导出（管理员使用）- 用于客户服务
+     * 客户导出投影：连接院系、学校和创建/更新人，拜访次数、最近拜访日期和最近意向等级用关联子查询给出，
+     * 一条 SELECT 直接构造 CustomerResponse。院系所属学校使用别名 s，与列表查询的筛选条件保持一致
      */
-    @Query("SELECT c FROM Customer c " +
+    String CUSTOMER_EXPORT_SELECT = "SELECT new com.proshine.visitmanagement.dto.response.CustomerResponse(" +
+            "c.id, c.name, c.position, c.title, d.id, d.name, " +
+            "cs.id, cs.name, cs.city, cs.schoolTypesString, " +
+            "s.id, s.name, s.city, s.schoolTypesString, " +
+            "c.phone, c.wechat, c.email, c.officeLocation, c.floorRoom, c.researchDirection, " +
+            "c.influenceLevel, c.decisionPower, c.birthday, c.notes, " +
+            "(SELECT COUNT(v) FROM VisitRecord v WHERE v.customer = c), " +
+            "(SELECT MAX(v.visitDate) FROM VisitRecord v WHERE v.customer = c), " +
+            "(SELECT lv.intentLevel FROM VisitRecord lv WHERE lv.id = " +
+            "    (SELECT MAX(v.id) FROM VisitRecord v WHERE v.customer = c AND v.visitDate = " +
+            "        (SELECT MAX(mv.visitDate) FROM VisitRecord mv WHERE mv.customer = c))), " +
+            "cb.id, cb.realName, ub.id, ub.realName, c.createdAt, c.updatedAt) " +
+            "FROM Customer c " +
+            "LEFT JOIN c.school cs " +
             "LEFT JOIN c.department d " +
             "LEFT JOIN d.school s " +
-            "WHERE (:keyword IS NULL OR :keyword = '' OR " +
-            "       LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "       LOWER(c.position) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "       LOWER(d.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "       LOWER(s.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
-            "AND (:departmentId IS NULL OR c.department.id = :departmentId) " +
-            "AND (:schoolId IS NULL OR d.school.id = :schoolId) " +
-            "AND (:schoolCity IS NULL OR :schoolCity = '' OR s.city = :schoolCity) " +
-            "AND (:influenceLevel IS NULL OR c.influenceLevel = :influenceLevel) " +
-            "AND (:decisionPower IS NULL OR c.decisionPower = :decisionPower) " +
-            "AND (:hasWechat IS NULL OR (:hasWechat = TRUE AND c.wechat IS NOT NULL AND c.wechat <> '') OR " +
-            "     (:hasWechat = FALSE AND (c.wechat IS NULL OR c.wechat = ''))) " +
-            "ORDER BY c.createdAt DESC")
-    List<Customer> findCustomersForExport(@Param("keyword") String keyword,
-                                          @Param("departmentId") Long departmentId,
-                                          @Param("schoolId") Long schoolId,
-                                          @Param("schoolCity") String schoolCity,
-                                          @Param("influenceLevel") Customer.InfluenceLevel influenceLevelEnum,
-                                          @Param("decisionPower") Customer.DecisionPower decisionPowerEnum,
-                                          @Param("hasWechat") Boolean hasWechat);
+            "LEFT JOIN c.createdBy cb " +
+            "LEFT JOIN c.updatedBy ub ";
 
     /**
-     * 多条件查询客户用于导出（销售人员使用）- 用于客户服务
+     * 客户导出的多条件过滤（接在 WHERE 条件之后，与列表查询条件一致）
      */
-    @Query("SELECT c FROM Customer c " +
-            "LEFT JOIN c.department d " +
-            "LEFT JOIN d.school s " +
-            "WHERE c.createdBy.id = :createdById " +
-            "AND (:keyword IS NULL OR :keyword = '' OR " +
+    String CUSTOMER_EXPORT_FILTERS = "AND (:keyword IS NULL OR :keyword = '' OR " +
             "     LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
             "     LOWER(c.position) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
             "     LOWER(d.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -225,16 +270,67 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
             "AND (:influenceLevel IS NULL OR c.influenceLevel = :influenceLevel) " +
             "AND (:decisionPower IS NULL OR c.decisionPower = :decisionPower) " +
             "AND (:hasWechat IS NULL OR (:hasWechat = TRUE AND c.wechat IS NOT NULL AND c.wechat <> '') OR " +
-            "     (:hasWechat = FALSE AND (c.wechat IS NULL OR c.wechat = ''))) " +
+            "     (:hasWechat = FALSE AND (c.wechat IS NULL OR c.wechat = ''))) ";
+
+    /**
+     * 多条件统计导出客户数（与导出查询条件一致，createdById 为空时不限创建人）- 用于导出任务进度
+     */
+    @Query("SELECT COUNT(c) FROM Customer c " +
+            "LEFT JOIN c.department d " +
+            "LEFT JOIN d.school s " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            CUSTOMER_EXPORT_FILTERS)
+    long countCustomersForExport(@Param("keyword") String keyword,
+                                 @Param("departmentId") Long departmentId,
+                                 @Param("schoolId") Long schoolId,
+                                 @Param("schoolCity") String schoolCity,
+                                 @Param("influenceLevel") Customer.InfluenceLevel influenceLevelEnum,
+                                 @Param("decisionPower") Customer.DecisionPower decisionPowerEnum,
+                                 @Param("hasWechat") Boolean hasWechat,
+                                 @Param("createdById") Long createdById);
+
+    /**
+     * 多条件流式查询客户用于导出（管理员使用）- 用于客户服务
+     * 连接开启 useCursorFetch 后 MySQL 驱动按抓取大小分批读取服务端游标，不在内存中缓存整个结果集。
+     * 调用方需在事务内使用并关闭流
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(CUSTOMER_EXPORT_SELECT +
+            "WHERE 1 = 1 " +
+            CUSTOMER_EXPORT_FILTERS +
+            "ORDER BY c.createdAt DESC")
+    Stream<CustomerResponse> streamCustomersForExport(@Param("keyword") String keyword,
+                                                      @Param("departmentId") Long departmentId,
+                                                      @Param("schoolId") Long schoolId,
+                                                      @Param("schoolCity") String schoolCity,
+                                                      @Param("influenceLevel") Customer.InfluenceLevel influenceLevelEnum,
+                                                      @Param("decisionPower") Customer.DecisionPower decisionPowerEnum,
+                                                      @Param("hasWechat") Boolean hasWechat);
+
+    /**
+     * 多条件流式查询客户用于导出（销售人员使用）- 用于客户服务
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(CUSTOMER_EXPORT_SELECT +
+            "WHERE c.createdBy.id = :createdById " +
+            CUSTOMER_EXPORT_FILTERS +
             "ORDER BY c.createdAt DESC")
-    List<Customer> findCustomersForExportByCreatedBy(@Param("keyword") String keyword,
-                                                     @Param("departmentId") Long departmentId,
-                                                     @Param("schoolId") Long schoolId,
-                                                     @Param("schoolCity") String schoolCity,
-                                                     @Param("influenceLevel") Customer.InfluenceLevel influenceLevelEnum,
-                                                     @Param("decisionPower") Customer.DecisionPower decisionPowerEnum,
-                                                     @Param("hasWechat") Boolean hasWechat,
-                                                     @Param("createdById") Long id);
+    Stream<CustomerResponse> streamCustomersForExportByCreatedBy(@Param("keyword") String keyword,
+                                                                 @Param("departmentId") Long departmentId,
+                                                                 @Param("schoolId") Long schoolId,
+                                                                 @Param("schoolCity") String schoolCity,
+                                                                 @Param("influenceLevel") Customer.InfluenceLevel influenceLevelEnum,
+                                                                 @Param("decisionPower") Customer.DecisionPower decisionPowerEnum,
+                                                                 @Param("hasWechat") Boolean hasWechat,
+                                                                 @Param("createdById") Long id);
 
     // ==================== 其他查询方法 ====================
 
@@ -271,4 +367,71 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
             "GROUP BY d.id, d.name " +
             "ORDER BY COUNT(c) DESC")
     List<Object[]> findDepartmentCustomerDistribution();
+
+    // ==================== 仪表板聚合查询 ====================
+
+    /**
+     * 按学校名称统计客户数量（createdById 为空时统计全部）- 用于仪表板服务
+     */
+    @Query("SELECT s.name, COUNT(c) " +
+            "FROM Customer c " +
+            "LEFT JOIN c.department d " +
+            "LEFT JOIN d.school s " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "GROUP BY s.name " +
+            "ORDER BY COUNT(c) DESC")
+    List<Object[]> countGroupBySchoolName(@Param("createdById") Long createdById);
+
+    /**
+     * 按院系名称统计客户数量（createdById 为空时统计全部）- 用于仪表板服务
+     */
+    @Query("SELECT d.name, COUNT(c) " +
+            "FROM Customer c " +
+            "LEFT JOIN c.department d " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "GROUP BY d.name " +
+            "ORDER BY COUNT(c) DESC")
+    List<Object[]> countGroupByDepartmentName(@Param("createdById") Long createdById);
+
+    /**
+     * 按学校城市统计客户数量（createdById 为空时统计全部）- 用于仪表板服务
+     */
+    @Query("SELECT s.city, COUNT(c) " +
+            "FROM Customer c " +
+            "LEFT JOIN c.department d " +
+            "LEFT JOIN d.school s " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "GROUP BY s.city " +
+            "ORDER BY COUNT(c) DESC")
+    List<Object[]> countGroupBySchoolCity(@Param("createdById") Long createdById);
+
+    /**
+     * 按学校省份统计客户数量（createdById 为空时统计全部）- 用于仪表板服务
+     */
+    @Query("SELECT s.province, COUNT(c) " +
+            "FROM Customer c " +
+            "LEFT JOIN c.department d " +
+            "LEFT JOIN d.school s " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "GROUP BY s.province " +
+            "ORDER BY COUNT(c) DESC")
+    List<Object[]> countGroupBySchoolProvince(@Param("createdById") Long createdById);
+
+    /**
+     * 按客户状态统计客户数量（createdById 为空时统计全部）- 用于仪表板服务
+     */
+    @Query("SELECT c.status, COUNT(c) " +
+            "FROM Customer c " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "GROUP BY c.status " +
+            "ORDER BY COUNT(c) DESC")
+    List<Object[]> countGroupByStatus(@Param("createdById") Long createdById);
+
+    /**
+     * 查询最近创建的客户（createdById 为空时查询全部）- 用于仪表板服务
+     */
+    @Query("SELECT c FROM Customer c " +
+            "WHERE (:createdById IS NULL OR c.createdBy.id = :createdById) " +
+            "ORDER BY c.createdAt DESC")
+    List<Customer> findRecentCustomers(@Param("createdById") Long createdById, Pageable pageable);
 }
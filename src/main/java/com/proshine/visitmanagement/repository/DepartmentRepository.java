@@ -4,10 +4,12 @@ import com.proshine.visitmanagement.entity.Department;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +32,25 @@ public interface DepartmentRepository extends JpaRepository<Department, Long> {
      */
     List<Department> findBySchoolId(Long schoolId);
 
+    /**
+     * 按学校分组统计院系数量 - 用于批量删除学校前的关联检查
+     *
+     * @param schoolIds 学校ID集合
+     * @return [学校ID, 院系数量]
+     */
+    @Query("SELECT d.schoolId, COUNT(d) FROM Department d WHERE d.schoolId IN :schoolIds GROUP BY d.schoolId")
+    List<Object[]> countGroupBySchoolIdIn(@Param("schoolIds") Collection<Long> schoolIds);
+
+    /**
+     * 按ID批量软删除，一条语句处理一个分块
+     *
+     * @param ids 院系ID集合
+     * @return 删除行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Department d SET d.deletedAt = CURRENT_TIMESTAMP WHERE d.id IN :ids AND d.deletedAt IS NULL")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * 根据联系电话查找院系
      *
@@ -0,0 +1,48 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.entity.FileReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 文件引用数据访问层接口
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Repository
+public interface FileReferenceRepository extends JpaRepository<FileReference, Long> {
+
+    /**
+     * 根据引用路径查找
+     */
+    Optional<FileReference> findByFilePath(String filePath);
+
+    /**
+     * 查询目录下的引用（含子目录，调用方按父目录过滤）。
+     * 上传时记录的路径带 ./ 前缀，目录参数不带，两种写法都匹配
+     */
+    @Query("SELECT r FROM FileReference r WHERE r.filePath LIKE CONCAT(:directory, '/%') " +
+            "OR r.filePath LIKE CONCAT('./', :directory, '/%')")
+    List<FileReference> findUnderDirectory(@Param("directory") String directory);
+
+    /**
+     * 修改引用路径，返回0表示源路径没有引用记录
+     */
+    @Modifying
+    @Query("UPDATE FileReference r SET r.filePath = :targetPath WHERE r.filePath = :sourcePath")
+    int updateFilePath(@Param("sourcePath") String sourcePath, @Param("targetPath") String targetPath);
+
+    /**
+     * 删除引用，返回0表示引用已被删除（调用方不应再释放内容引用）
+     */
+    @Modifying
+    @Query("DELETE FROM FileReference r WHERE r.filePath = :filePath")
+    int deleteByFilePath(@Param("filePath") String filePath);
+}
@@ -0,0 +1,46 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 已吊销令牌数据访问层接口
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * 写入吊销记录，吊销时间取数据库时间，保证各节点增量同步的游标一致；重复吊销忽略
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO revoked_tokens (jti, username, expires_at, revoked_at) " +
+            "VALUES (:jti, :username, :expiresAt, NOW())",
+            nativeQuery = true)
+    int insertIgnore(@Param("jti") String jti,
+                     @Param("username") String username,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 查询指定时间之后吊销、且尚未过期的记录
+     */
+    @Query("SELECT t FROM RevokedToken t WHERE t.revokedAt > :since AND t.expiresAt > :now ORDER BY t.revokedAt")
+    List<RevokedToken> findActiveRevokedSince(@Param("since") LocalDateTime since,
+                                              @Param("now") LocalDateTime now);
+
+    /**
+     * 删除已过期的吊销记录
+     */
+    @Modifying
+    @Query("DELETE FROM RevokedToken t WHERE t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,14 +1,20 @@
 package com.proshine.visitmanagement.repository;
 
+import com.proshine.visitmanagement.dto.response.SchoolResponse;
 import com.proshine.visitmanagement.entity.School;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 学校数据访问层
@@ -29,6 +35,16 @@ public interface SchoolRepository extends JpaRepository<School, Long> {
      */
     boolean existsByName(String name);
 
+    /**
+     * 按ID批量软删除，一条语句处理一个分块
+     *
+     * @param ids 学校ID集合
+     * @return 删除行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE School s SET s.deletedAt = CURRENT_TIMESTAMP WHERE s.id IN :ids AND s.deletedAt IS NULL")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * 根据省份查询学校列表
      *
@@ -100,25 +116,58 @@ public interface SchoolRepository extends JpaRepository<School, Long> {
                                         Pageable pageable);
 
     /**
-     * 多条件查询学校列表（用于导出）
-     *
-     * @param keyword 关键词
-     * @param province 省份
-     * @param city 城市
-     * @param schoolTypes 学校类型列表
-     * @return 学校列表
+     * 学校导出的多条件过滤（与分页查询条件一致）
      */
-    @Query("SELECT s FROM School s WHERE " +
-            "(:keyword IS NULL OR :keyword = '' OR " +
+    String SCHOOL_EXPORT_FILTERS = "(:keyword IS NULL OR :keyword = '' OR " +
             " s.name LIKE CONCAT('%', :keyword, '%') OR " +
             " s.address LIKE CONCAT('%', :keyword, '%')) AND " +
             "(:province IS NULL OR :province = '' OR s.province = :province) AND " +
             "(:city IS NULL OR :city = '' OR s.city = :city) AND " +
             "(:schoolTypesStr IS NULL OR :schoolTypesStr = '' OR " +
-            " s.schoolTypesString LIKE CONCAT('%', :schoolTypesStr, '%')) " +
+            " s.schoolTypesString LIKE CONCAT('%', :schoolTypesStr, '%')) ";
+
+    /**
+     * 多条件统计导出学校数（与导出查询条件一致）- 用于导出任务进度
+     */
+    @Query("SELECT COUNT(s) FROM School s WHERE " + SCHOOL_EXPORT_FILTERS)
+    long countSchoolsForExport(@Param("keyword") String keyword,
+                               @Param("province") String province,
+                               @Param("city") String city,
+                               @Param("schoolTypesStr") String schoolTypesStr);
+
+    /**
+     * 多条件流式查询学校列表（用于导出）
+     * 院系数、客户数、拜访数和最近拜访日期由关联子查询给出，一条 SELECT 直接构造 SchoolResponse；
+     * 连接开启 useCursorFetch 后 MySQL 驱动按抓取大小分批读取服务端游标。调用方需在事务内使用并关闭流
+     *
+     * @param keyword 关键词
+     * @param province 省份
+     * @param city 城市
+     * @param schoolTypesStr 学校类型
+     * @return 学校导出行
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.proshine.visitmanagement.dto.response.SchoolResponse(" +
+            "s.id, s.name, s.address, s.province, s.city, s.schoolTypesString, s.contactPhone, s.website, " +
+            "(SELECT COUNT(d) FROM Department d WHERE d.school = s), " +
+            "(SELECT COUNT(c) FROM Customer c WHERE c.department.id IN " +
+            "    (SELECT d.id FROM Department d WHERE d.school = s)), " +
+            "(SELECT COUNT(v) FROM VisitRecord v WHERE v.customer.id IN " +
+            "    (SELECT c.id FROM Customer c WHERE c.department.id IN " +
+            "        (SELECT d.id FROM Department d WHERE d.school = s))), " +
+            "(SELECT MAX(v.visitDate) FROM VisitRecord v WHERE v.customer.id IN " +
+            "    (SELECT c.id FROM Customer c WHERE c.department.id IN " +
+            "        (SELECT d.id FROM Department d WHERE d.school = s))), " +
+            "s.createdAt, s.updatedAt) " +
+            "FROM School s WHERE " +
+            SCHOOL_EXPORT_FILTERS +
             "ORDER BY s.province ASC, s.city ASC, s.name ASC")
-    List<School> findSchoolsForExport(@Param("keyword") String keyword,
-                                      @Param("province") String province,
-                                      @Param("city") String city,
-                                      @Param("schoolTypesStr") String schoolTypesStr);
+    Stream<SchoolResponse> streamSchoolsForExport(@Param("keyword") String keyword,
+                                                  @Param("province") String province,
+                                                  @Param("city") String city,
+                                                  @Param("schoolTypesStr") String schoolTypesStr);
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.entity.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 内容寻址文件数据访问层接口
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    /**
+     * 根据内容哈希查找
+     */
+    Optional<StoredFile> findBySha256(String sha256);
+
+    /**
+     * 根据存储路径查找
+     */
+    Optional<StoredFile> findFirstByFilePath(String filePath);
+
+    /**
+     * 增加一次引用；记录不存在时新建，引用次数为1。
+     * 已有记录的路径一并刷新，用于磁盘文件丢失后重新写入的情况
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stored_files (sha256, file_path, file_size, ref_count, created_at, updated_at) " +
+            "VALUES (:sha256, :filePath, :fileSize, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, file_path = VALUES(file_path), updated_at = NOW()",
+            nativeQuery = true)
+    int acquire(@Param("sha256") String sha256,
+                @Param("filePath") String filePath,
+                @Param("fileSize") long fileSize);
+
+    /**
+     * 已有内容再增加一次引用（复制引用时使用），返回0表示内容已被释放
+     */
+    @Modifying
+    @Query(value = "UPDATE stored_files SET ref_count = ref_count + 1, updated_at = NOW() " +
+            "WHERE sha256 = :sha256 AND ref_count > 0",
+            nativeQuery = true)
+    int retain(@Param("sha256") String sha256);
+
+    /**
+     * 减少一次引用
+     */
+    @Modifying
+    @Query(value = "UPDATE stored_files SET ref_count = ref_count - 1, updated_at = NOW() " +
+            "WHERE sha256 = :sha256 AND ref_count > 0",
+            nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    /**
+     * 删除已无引用的记录，返回1时调用方负责删除磁盘文件
+     */
+    @Modifying
+    @Query(value = "DELETE FROM stored_files WHERE sha256 = :sha256 AND ref_count <= 0", nativeQuery = true)
+    int deleteUnreferenced(@Param("sha256") String sha256);
+}
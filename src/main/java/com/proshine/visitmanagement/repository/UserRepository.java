@@ -4,11 +4,13 @@ import com.proshine.visitmanagement.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,6 +48,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return 是否存在
      */
     boolean existsByEmail(String email);
+
+    /**
+     * 查询已被占用的用户名（含已软删除的用户，与唯一约束一致）
+     *
+     * @param usernames 候选用户名
+     * @return 已存在的用户名
+     */
+    @Query(value = "SELECT username FROM users WHERE username IN (:usernames)", nativeQuery = true)
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * 查询已被占用的邮箱（含已软删除的用户，与唯一约束一致）
+     *
+     * @param emails 候选邮箱
+     * @return 已存在的邮箱
+     */
+    @Query(value = "SELECT email FROM users WHERE email IN (:emails)", nativeQuery = true)
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
     
     /**
      * 根据角色查询用户 - 用于 UserService
@@ -143,4 +163,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.email = :email AND u.id != :excludeId")
     boolean existsByEmailAndIdNot(@Param("email") String email, @Param("excludeId") Long excludeId);
-}
\ No newline at end of file
+
+    /**
+     * 按ID批量软删除，一条语句处理一个分块
+     *
+     * @param ids 用户ID集合
+     * @return 删除行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.deletedAt = CURRENT_TIMESTAMP WHERE u.id IN :ids AND u.deletedAt IS NULL")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids);
+}
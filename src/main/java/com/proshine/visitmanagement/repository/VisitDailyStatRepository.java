@@ -0,0 +1,147 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.entity.VisitDailyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 拜访日汇总数据访问层接口
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Repository
+public interface VisitDailyStatRepository extends JpaRepository<VisitDailyStat, Long> {
+
+    // ==================== 增量维护方法 ====================
+
+    /**
+     * 累加指定维度的拜访数量（不存在则插入）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO visit_daily_stats " +
+            "(stat_date, sales_id, customer_id, status, intent_level, visit_type, visit_count, updated_at) " +
+            "VALUES (:statDate, :salesId, :customerId, :status, :intentLevel, :visitType, :delta, NOW()) " +
+            "ON DUPLICATE KEY UPDATE visit_count = visit_count + :delta, updated_at = NOW()",
+            nativeQuery = true)
+    int upsertCount(@Param("statDate") LocalDate statDate,
+                    @Param("salesId") Long salesId,
+                    @Param("customerId") Long customerId,
+                    @Param("status") String status,
+                    @Param("intentLevel") String intentLevel,
+                    @Param("visitType") String visitType,
+                    @Param("delta") long delta);
+
+    /**
+     * 删除日期范围内的汇总数据
+     */
+    @Modifying
+    @Query(value = "DELETE FROM visit_daily_stats WHERE stat_date BETWEEN :startDate AND :endDate", nativeQuery = true)
+    int deleteByStatDateBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 根据拜访记录重建日期范围内的汇总数据
+     */
+    @Modifying
+    @Query(value = "INSERT INTO visit_daily_stats " +
+            "(stat_date, sales_id, customer_id, status, intent_level, visit_type, visit_count, updated_at) " +
+            "SELECT vr.visit_date, vr.sales_id, vr.customer_id, vr.status, " +
+            "COALESCE(vr.intent_level, ''), COALESCE(vr.visit_type, ''), COUNT(*), NOW() " +
+            "FROM visit_records vr " +
+            "WHERE vr.deleted_at IS NULL AND vr.visit_date BETWEEN :startDate AND :endDate " +
+            "GROUP BY vr.visit_date, vr.sales_id, vr.customer_id, vr.status, " +
+            "COALESCE(vr.intent_level, ''), COALESCE(vr.visit_type, '')",
+            nativeQuery = true)
+    int rebuildByStatDateBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 客户合并时把源客户的汇总数量累加到目标客户
+     */
+    @Modifying
+    @Query(value = "INSERT INTO visit_daily_stats " +
+            "(stat_date, sales_id, customer_id, status, intent_level, visit_type, visit_count, updated_at) " +
+            "SELECT s.stat_date, s.sales_id, :targetId, s.status, s.intent_level, s.visit_type, SUM(s.visit_count), NOW() " +
+            "FROM visit_daily_stats s " +
+            "WHERE s.customer_id IN (:sourceIds) " +
+            "GROUP BY s.stat_date, s.sales_id, s.status, s.intent_level, s.visit_type " +
+            "ON DUPLICATE KEY UPDATE visit_count = visit_count + VALUES(visit_count), updated_at = NOW()",
+            nativeQuery = true)
+    int mergeCustomerCounts(@Param("sourceIds") Collection<Long> sourceIds, @Param("targetId") Long targetId);
+
+    /**
+     * 删除指定客户的汇总数据
+     */
+    @Modifying
+    @Query(value = "DELETE FROM visit_daily_stats WHERE customer_id IN (:customerIds)", nativeQuery = true)
+    int deleteByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * 清理数量已归零的汇总行
+     */
+    @Modifying
+    @Query(value = "DELETE FROM visit_daily_stats WHERE visit_count <= 0", nativeQuery = true)
+    int deleteEmptyRows();
+
+    // ==================== 统计查询方法 ====================
+
+    /**
+     * 统计日期范围内的拜访总数
+     */
+    @Query("SELECT COALESCE(SUM(s.visitCount), 0) FROM VisitDailyStat s " +
+            "WHERE (:salesId IS NULL OR s.salesId = :salesId) " +
+            "AND s.statDate BETWEEN :startDate AND :endDate")
+    long sumVisitCount(@Param("salesId") Long salesId,
+                       @Param("startDate") LocalDate startDate,
+                       @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按日期汇总拜访数量
+     */
+    @Query("SELECT s.statDate, SUM(s.visitCount) FROM VisitDailyStat s " +
+            "WHERE (:salesId IS NULL OR s.salesId = :salesId) " +
+            "AND s.statDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.statDate")
+    List<Object[]> sumGroupByDate(@Param("salesId") Long salesId,
+                                  @Param("startDate") LocalDate startDate,
+                                  @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按状态和意向等级汇总拜访数量（一次扫描得到交叉计数）
+     */
+    @Query("SELECT s.status, s.intentLevel, SUM(s.visitCount) FROM VisitDailyStat s " +
+            "WHERE (:salesId IS NULL OR s.salesId = :salesId) " +
+            "AND s.statDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.status, s.intentLevel")
+    List<Object[]> sumGroupByStatusAndIntentLevel(@Param("salesId") Long salesId,
+                                                  @Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按销售人员汇总拜访数量（降序）
+     */
+    @Query("SELECT s.salesId, SUM(s.visitCount) FROM VisitDailyStat s " +
+            "WHERE s.statDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.salesId " +
+            "HAVING SUM(s.visitCount) > 0 " +
+            "ORDER BY SUM(s.visitCount) DESC")
+    List<Object[]> sumGroupBySales(@Param("startDate") LocalDate startDate,
+                                   @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按客户汇总拜访数量（降序）
+     */
+    @Query("SELECT s.customerId, SUM(s.visitCount) FROM VisitDailyStat s " +
+            "WHERE s.statDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.customerId " +
+            "HAVING SUM(s.visitCount) > 0 " +
+            "ORDER BY SUM(s.visitCount) DESC")
+    List<Object[]> sumGroupByCustomer(@Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
+}
@@ -1,15 +1,23 @@
 package com.proshine.visitmanagement.repository;
 
+import com.proshine.visitmanagement.dto.response.VisitRecordResponse;
 import com.proshine.visitmanagement.entity.VisitRecord;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 拜访记录数据访问层接口
@@ -20,6 +28,28 @@ import java.util.List;
 @Repository
 public interface VisitRecordRepository extends JpaRepository<VisitRecord, Long> {
 
+    /**
+     * 拜访记录响应投影：一条 SELECT 连接客户、院系、学校和销售人员，直接构造 VisitRecordResponse，
+     * 避免逐行懒加载关联对象。学校优先取客户直接关联的学校，其次取院系所属学校
+     */
+    String VISIT_RECORD_RESPONSE_SELECT = "SELECT new com.proshine.visitmanagement.dto.response.VisitRecordResponse(" +
+            "vr.id, c.id, c.name, c.position, c.phone, c.email, c.influenceLevel, c.decisionPower, " +
+            "d.id, d.name, " +
+            "CASE WHEN cs.id IS NOT NULL THEN cs.id ELSE ds.id END, " +
+            "CASE WHEN cs.id IS NOT NULL THEN cs.name ELSE ds.name END, " +
+            "CASE WHEN cs.id IS NOT NULL THEN cs.city ELSE ds.city END, " +
+            "s.id, s.realName, s.department, " +
+            "vr.visitDate, vr.visitTime, vr.durationMinutes, vr.visitType, vr.status, vr.intentLevel, " +
+            "vr.businessItems, vr.painPoints, vr.competitors, vr.budgetRange, vr.decisionTimeline, vr.nextStep, " +
+            "vr.followUpDate, vr.notes, vr.materialsLeft, vr.wechatAdded, vr.rating, vr.location, vr.weather, " +
+            "vr.createdAt, vr.updatedAt) " +
+            "FROM VisitRecord vr " +
+            "LEFT JOIN vr.customer c " +
+            "LEFT JOIN c.school cs " +
+            "LEFT JOIN c.department d " +
+            "LEFT JOIN d.school ds " +
+            "LEFT JOIN vr.sales s ";
+
     // ==================== 基础查询方法 ====================
 
     /**
@@ -32,6 +62,16 @@ public interface VisitRecordRepository extends JpaRepository<VisitRecord, Long>
      */
     List<VisitRecord> findByCustomerIdAndSalesIdOrderByVisitDateDesc(Long customerId, Long salesId);
 
+    /**
+     * 根据客户ID（及销售人员ID）查询拜访记录响应投影
+     */
+    @Query(VISIT_RECORD_RESPONSE_SELECT +
+            "WHERE vr.customer.id = :customerId " +
+            "AND (:salesId IS NULL OR vr.sales.id = :salesId) " +
+            "ORDER BY vr.visitDate DESC")
+    List<VisitRecordResponse> findResponsesByCustomerId(@Param("customerId") Long customerId,
+                                                        @Param("salesId") Long salesId);
+
     /**
      * 根据拜访日期查找记录
      */
@@ -59,28 +99,144 @@ public interface VisitRecordRepository extends JpaRepository<VisitRecord, Long>
     // ==================== 分页查询方法 ====================
 
     /**
-     * 多条件分页查询拜访记录
+     * 列表、统计和导出共用的多条件过滤
+     * 关键词条件二选一：fullTextQuery 走 ft_visit_search 全文索引，keyword 为全文索引不可用
+     * 或关键词过短时的 LIKE 回退，由 VisitSearchService 决定
      */
-    @Query("SELECT vr FROM VisitRecord vr " +
-            "LEFT JOIN vr.customer c " +
-            "LEFT JOIN vr.sales s " +
-            "WHERE (:keyword IS NULL OR :keyword = '' OR " +
-            "c.name LIKE %:keyword% OR vr.notes LIKE %:keyword% OR vr.businessItems LIKE %:keyword%) " +
+    String VISIT_RECORD_FILTERS = "WHERE (:fullTextQuery IS NULL OR match_against(vr.searchText, :fullTextQuery) > 0) " +
+            "AND (:keyword IS NULL OR vr.searchText LIKE %:keyword%) " +
             "AND (:salesId IS NULL OR vr.sales.id = :salesId) " +
             "AND (:customerId IS NULL OR vr.customer.id = :customerId) " +
             "AND (:startDate IS NULL OR vr.visitDate >= :startDate) " +
             "AND (:endDate IS NULL OR vr.visitDate <= :endDate) " +
             "AND (:status IS NULL OR vr.status = :status) " +
-            "AND (:intentLevel IS NULL OR vr.intentLevel = :intentLevel) " +
+            "AND (:intentLevel IS NULL OR vr.intentLevel = :intentLevel) ";
+
+    /**
+     * 多条件分页查询拜访记录响应投影
+     */
+    @Query(value = VISIT_RECORD_RESPONSE_SELECT + VISIT_RECORD_FILTERS +
+            "ORDER BY vr.visitDate DESC, vr.createdAt DESC",
+            countQuery = "SELECT COUNT(vr) FROM VisitRecord vr " + VISIT_RECORD_FILTERS)
+    Page<VisitRecordResponse> findVisitRecordsWithFilters(@Param("fullTextQuery") String fullTextQuery,
+                                                          @Param("keyword") String keyword,
+                                                          @Param("salesId") Long salesId,
+                                                          @Param("customerId") Long customerId,
+                                                          @Param("startDate") LocalDate startDate,
+                                                          @Param("endDate") LocalDate endDate,
+                                                          @Param("status") VisitRecord.VisitStatus status,
+                                                          @Param("intentLevel") VisitRecord.IntentLevel intentLevel,
+                                                          Pageable pageable);
+
+    /**
+     * 多条件游标查询拜访记录响应投影
+     * 按 (visitDate, createdAt, id) 倒序定位到游标之后的记录，不使用 OFFSET，也不执行 COUNT 查询；
+     * 游标参数为空时返回第一批数据。依赖 idx_visit_seek / idx_sales_visit_seek 索引
+     */
+    @Query(VISIT_RECORD_RESPONSE_SELECT + VISIT_RECORD_FILTERS +
+            "AND (:cursorDate IS NULL OR (vr.visitDate <= :cursorDate AND (vr.visitDate < :cursorDate " +
+            "OR vr.createdAt < :cursorCreatedAt " +
+            "OR (vr.createdAt = :cursorCreatedAt AND vr.id < :cursorId)))) " +
+            "ORDER BY vr.visitDate DESC, vr.createdAt DESC, vr.id DESC")
+    Slice<VisitRecordResponse> findVisitRecordsAfterCursor(@Param("fullTextQuery") String fullTextQuery,
+                                                           @Param("keyword") String keyword,
+                                                           @Param("salesId") Long salesId,
+                                                           @Param("customerId") Long customerId,
+                                                           @Param("startDate") LocalDate startDate,
+                                                           @Param("endDate") LocalDate endDate,
+                                                           @Param("status") VisitRecord.VisitStatus status,
+                                                           @Param("intentLevel") VisitRecord.IntentLevel intentLevel,
+                                                           @Param("cursorDate") LocalDate cursorDate,
+                                                           @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                                           @Param("cursorId") Long cursorId,
+                                                           Pageable pageable);
+
+    /**
+     * 多条件统计拜访记录数（与分页查询条件一致）
+     */
+    @Query("SELECT COUNT(vr) FROM VisitRecord vr " + VISIT_RECORD_FILTERS)
+    long countVisitRecordsWithFilters(@Param("fullTextQuery") String fullTextQuery,
+                                      @Param("keyword") String keyword,
+                                      @Param("salesId") Long salesId,
+                                      @Param("customerId") Long customerId,
+                                      @Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate,
+                                      @Param("status") VisitRecord.VisitStatus status,
+                                      @Param("intentLevel") VisitRecord.IntentLevel intentLevel);
+
+    // ==================== 导出查询方法 ====================
+
+    /**
+     * 多条件流式查询拜访记录响应投影（用于导出）
+     * 投影结果不进入持久化上下文；连接开启 useCursorFetch 后 MySQL 驱动按抓取大小分批读取服务端游标，
+     * 不在内存中缓存整个结果集。调用方需在事务内使用并关闭流
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(VISIT_RECORD_RESPONSE_SELECT + VISIT_RECORD_FILTERS +
             "ORDER BY vr.visitDate DESC, vr.createdAt DESC")
-    Page<VisitRecord> findVisitRecordsWithFilters(@Param("keyword") String keyword,
-                                                  @Param("salesId") Long salesId,
-                                                  @Param("customerId") Long customerId,
-                                                  @Param("startDate") LocalDate startDate,
-                                                  @Param("endDate") LocalDate endDate,
-                                                  @Param("status") VisitRecord.VisitStatus status,
-                                                  @Param("intentLevel") VisitRecord.IntentLevel intentLevel,
-                                                  Pageable pageable);
+    Stream<VisitRecordResponse> streamVisitRecordsWithFilters(@Param("fullTextQuery") String fullTextQuery,
+                                                              @Param("keyword") String keyword,
+                                                              @Param("salesId") Long salesId,
+                                                              @Param("customerId") Long customerId,
+                                                              @Param("startDate") LocalDate startDate,
+                                                              @Param("endDate") LocalDate endDate,
+                                                              @Param("status") VisitRecord.VisitStatus status,
+                                                              @Param("intentLevel") VisitRecord.IntentLevel intentLevel);
+
+    // ==================== 检索文本维护方法 ====================
+
+    /**
+     * 客户姓名变更后重新生成其拜访记录的检索文本
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE visit_records vr JOIN customers c ON c.id = vr.customer_id " +
+            "SET vr.search_text = CONCAT_WS(CHAR(10), c.name, vr.business_items, vr.pain_points, vr.competitors, vr.notes) " +
+            "WHERE vr.customer_id = :customerId",
+            nativeQuery = true)
+    int refreshSearchTextByCustomerId(@Param("customerId") Long customerId);
+
+    /**
+     * 客户合并时把源客户的拜访记录（含已软删除记录）一次转移到目标客户，并按目标客户姓名重建检索文本
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE visit_records vr JOIN customers c ON c.id = :targetId " +
+            "SET vr.customer_id = :targetId, vr.updated_at = NOW(), " +
+            "vr.search_text = CONCAT_WS(CHAR(10), c.name, vr.business_items, vr.pain_points, vr.competitors, vr.notes) " +
+            "WHERE vr.customer_id IN (:sourceIds)",
+            nativeQuery = true)
+    int reassignCustomer(@Param("sourceIds") Collection<Long> sourceIds, @Param("targetId") Long targetId);
+
+    /**
+     * 分批回填缺失的检索文本（含已软删除记录）
+     */
+    @Modifying
+    @Query(value = "UPDATE visit_records vr " +
+            "SET vr.search_text = CONCAT_WS(CHAR(10), " +
+            "(SELECT c.name FROM customers c WHERE c.id = vr.customer_id), " +
+            "vr.business_items, vr.pain_points, vr.competitors, vr.notes) " +
+            "WHERE vr.search_text IS NULL LIMIT :batchSize",
+            nativeQuery = true)
+    int backfillSearchText(@Param("batchSize") int batchSize);
+
+    /**
+     * 统计 visit_records 上指定名称的索引数（用于判断全文索引是否已建立）
+     */
+    @Query(value = "SELECT COUNT(*) FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = 'visit_records' AND index_name = :indexName",
+            nativeQuery = true)
+    long countIndexByName(@Param("indexName") String indexName);
+
+    /**
+     * 建立检索文本的全文索引，使用 ngram 分词器以支持中文（分词长度由 ngram_token_size 决定，默认 2）
+     */
+    @Modifying
+    @Query(value = "ALTER TABLE visit_records ADD FULLTEXT INDEX ft_visit_search (search_text) WITH PARSER ngram",
+            nativeQuery = true)
+    void createSearchTextFullTextIndex();
 
     // ==================== 统计查询方法 ====================
 
@@ -101,32 +257,37 @@ public interface VisitRecordRepository extends JpaRepository<VisitRecord, Long>
     long countByVisitDateBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
     /**
-     * 根据销售人员ID、状态和拜访日期范围统计记录数
+     * 根据客户ID统计拜访记录数
      */
-    long countBySalesIdAndStatusAndVisitDateBetween(Long salesId, VisitRecord.VisitStatus status, LocalDate startDate, LocalDate endDate);
+    long countByCustomerId(Long id);
 
     /**
-     * 根据状态和拜访日期范围统计记录数
+     * 按客户分组统计拜访记录数 - 用于批量删除客户前的关联检查
      */
-    long countByStatusAndVisitDateBetween(VisitRecord.VisitStatus status, LocalDate startDate, LocalDate endDate);
+    @Query("SELECT vr.customer.id, COUNT(vr) FROM VisitRecord vr WHERE vr.customer.id IN :customerIds GROUP BY vr.customer.id")
+    List<Object[]> countGroupByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
 
     /**
-     * 根据销售人员ID、意向等级和拜访日期范围统计记录数
+     * 按ID批量软删除，一条语句处理一个分块
      */
-    long countBySalesIdAndIntentLevelAndVisitDateBetween(Long salesId, VisitRecord.IntentLevel intentLevel, LocalDate startDate, LocalDate endDate);
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE VisitRecord vr SET vr.deletedAt = CURRENT_TIMESTAMP WHERE vr.id IN :ids AND vr.deletedAt IS NULL")
+    int softDeleteByIdIn(@Param("ids") Collection<Long> ids);
 
     /**
-     * 根据意向等级和拜访日期范围统计记录数
+     * 根据销售人员ID和拜访日期之后统计记录数
      */
-    long countByIntentLevelAndVisitDateBetween(VisitRecord.IntentLevel intentLevel, LocalDate startDate, LocalDate endDate);
+    long countBySalesIdAndVisitDateAfter(Long salesId, LocalDate weekAgo);
 
     /**
-     * 根据客户ID统计拜访记录数
+     * 查询最早的拜访日期
      */
-    long countByCustomerId(Long id);
+    @Query("SELECT MIN(vr.visitDate) FROM VisitRecord vr")
+    LocalDate findMinVisitDate();
 
     /**
-     * 根据销售人员ID和拜访日期之后统计记录数
+     * 查询最晚的拜访日期
      */
-    long countBySalesIdAndVisitDateAfter(Long salesId, LocalDate weekAgo);
+    @Query("SELECT MAX(vr.visitDate) FROM VisitRecord vr")
+    LocalDate findMaxVisitDate();
 }
\ No newline at end of file
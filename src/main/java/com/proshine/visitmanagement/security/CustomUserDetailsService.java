@@ -1,9 +1,14 @@
 package com.proshine.visitmanagement.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.proshine.visitmanagement.entity.User;
+import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,7 +16,12 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -19,6 +29,8 @@ import java.util.stream.Collectors;
 
 /**
  * 自定义用户详情服务
+ * 用户主体按用户名和用户ID缓存（有上限、按写入时间过期），认证过滤器和各业务服务共用，
+ * 用户信息变更时由 UserService / AuthService 主动清除
  *
  * @author System
  * @since 2024-01-01
@@ -30,8 +42,41 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
+    @Value("${app.security.principal-cache.maximum-size:5000}")
+    private long principalCacheMaximumSize;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long principalCacheTtlSeconds;
+
+    /**
+     * 用户名 -> 用户主体
+     */
+    private Cache<String, CustomUserPrincipal> principalsByUsername;
+
+    /**
+     * 用户ID -> 用户主体
+     */
+    private Cache<Long, CustomUserPrincipal> principalsById;
+
     /**
-     * 根据用户名加载用户详情
+     * 初始化用户主体缓存
+     */
+    @PostConstruct
+    public void init() {
+        principalsByUsername = Caffeine.newBuilder()
+                .maximumSize(principalCacheMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(principalCacheTtlSeconds))
+                .build();
+        principalsById = Caffeine.newBuilder()
+                .maximumSize(principalCacheMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(principalCacheTtlSeconds))
+                .build();
+        log.info("用户主体缓存初始化完成: 最大条目数={}, 过期时间={}秒",
+                principalCacheMaximumSize, principalCacheTtlSeconds);
+    }
+
+    /**
+     * 根据用户名加载用户详情（优先读取缓存）
      *
      * @param username 用户名
      * @return UserDetails 用户详情
@@ -40,6 +85,11 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        CustomUserPrincipal cached = principalsByUsername.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+
         log.debug("正在加载用户详情: {}", username);
 
         User user = userRepository.findByUsername(username)
@@ -51,11 +101,11 @@ public class CustomUserDetailsService implements UserDetailsService {
         log.debug("成功加载用户: {}, 角色: {}, 状态: {}",
                 user.getUsername(), user.getRole(), user.getStatus());
 
-        return createUserDetails(user);
+        return cachePrincipal(createUserDetails(user));
     }
 
     /**
-     * 根据用户ID加载用户详情
+     * 根据用户ID加载用户详情（优先读取缓存）
      *
      * @param userId 用户ID
      * @return UserDetails 用户详情
@@ -63,6 +113,11 @@ public class CustomUserDetailsService implements UserDetailsService {
      */
     @Transactional(readOnly = true)
     public UserDetails loadUserById(Long userId) throws UsernameNotFoundException {
+        CustomUserPrincipal cached = principalsById.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
         log.debug("正在根据ID加载用户详情: {}", userId);
 
         User user = userRepository.findById(userId)
@@ -74,7 +129,80 @@ public class CustomUserDetailsService implements UserDetailsService {
         log.debug("成功根据ID加载用户: {}, 角色: {}, 状态: {}",
                 user.getUsername(), user.getRole(), user.getStatus());
 
-        return createUserDetails(user);
+        return cachePrincipal(createUserDetails(user));
+    }
+
+    /**
+     * 获取认证信息对应的用户主体
+     * 认证过滤器已把用户主体放进认证信息，直接复用；其他来源的认证信息按用户名从缓存加载
+     *
+     * @param authentication 认证信息
+     * @return 用户主体
+     * @throws UsernameNotFoundException 用户未找到异常
+     */
+    public CustomUserPrincipal getPrincipal(Authentication authentication) throws UsernameNotFoundException {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof CustomUserPrincipal) {
+            return (CustomUserPrincipal) principal;
+        }
+        return (CustomUserPrincipal) loadUserByUsername(authentication.getName());
+    }
+
+    /**
+     * 获取当前用户的实体快照，不访问数据库
+     * 快照是游离状态的 User，只包含用户主体中的字段，可用于权限判断和作为关联引用（如 createdBy），不能用来修改用户
+     *
+     * @param authentication 认证信息
+     * @return 用户快照
+     */
+    public User getCurrentUser(Authentication authentication) {
+        try {
+            return getPrincipal(authentication).toUser();
+        } catch (UsernameNotFoundException e) {
+            throw new ResourceNotFoundException("当前用户不存在");
+        }
+    }
+
+    /**
+     * 用户信息变更后清除缓存
+     * 立即清除一次，事务提交后再清除一次，避免并发请求在提交前把旧数据重新放回缓存
+     *
+     * @param userId 用户ID
+     * @param usernames 用户名（改名时同时传入新旧用户名）
+     */
+    public void evictUser(Long userId, String... usernames) {
+        Runnable evict = () -> {
+            CustomUserPrincipal cached = principalsById.getIfPresent(userId);
+            if (cached != null) {
+                principalsByUsername.invalidate(cached.getUsername());
+            }
+            principalsById.invalidate(userId);
+            principalsByUsername.invalidateAll(Arrays.asList(usernames));
+        };
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * 批量删除用户后清除缓存（按ID无法得知全部用户名，直接清空）
+     */
+    public void evictAll() {
+        principalsByUsername.invalidateAll();
+        principalsById.invalidateAll();
+    }
+
+    private CustomUserPrincipal cachePrincipal(UserDetails userDetails) {
+        CustomUserPrincipal principal = (CustomUserPrincipal) userDetails;
+        principalsByUsername.put(principal.getUsername(), principal);
+        principalsById.put(principal.getId(), principal);
+        return principal;
     }
 
     /**
@@ -253,6 +381,7 @@ public class CustomUserDetailsService implements UserDetailsService {
      */
     public UserDetails refreshUserDetails(String username) {
         log.debug("刷新用户详情: {}", username);
+        principalsByUsername.invalidate(username);
         return loadUserByUsername(username);
     }
 
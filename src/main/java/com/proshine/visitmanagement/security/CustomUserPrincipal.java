@@ -295,4 +295,24 @@ public class CustomUserPrincipal implements UserDetails {
                 ", enabled=" + enabled +
                 '}';
     }
-}
\ No newline at end of file
+
+    /**
+     * 转换为游离状态的用户实体快照
+     * 
+     * @return 用户实体（未被持久化上下文管理）
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setRealName(realName);
+        user.setEmail(email);
+        user.setPhone(phone);
+        user.setRole(role);
+        user.setDepartment(department);
+        user.setAvatarUrl(avatarUrl);
+        user.setStatus(status);
+        user.setLastLoginAt(lastLoginAt);
+        return user;
+    }
+}
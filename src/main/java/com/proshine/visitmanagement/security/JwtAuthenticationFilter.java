@@ -31,6 +31,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
     
     /**
      * 执行过滤逻辑
@@ -44,18 +45,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
             
             if (StringUtils.hasText(jwt)) {
-                // 验证令牌有效性
-                if (jwtTokenProvider.validateToken(jwt)) {
+                // 解析并验证令牌（同一令牌只验签一次）
+                JwtClaims claims = jwtTokenProvider.parseToken(jwt);
+                if (claims != null) {
                     
                     // 检查是否为访问令牌（不是刷新令牌）
-                    if (!jwtTokenProvider.isAccessToken(jwt)) {
+                    if (!claims.isAccessToken()) {
                         log.warn("尝试使用刷新令牌进行API访问: {}", request.getRequestURI());
                         filterChain.doFilter(request, response);
                         return;
                     }
                     
+                    // 检查令牌是否已被吊销（内存查询，不访问数据库）
+                    if (tokenRevocationService.isRevoked(claims)) {
+                        log.debug("令牌已被吊销，路径: {}", request.getRequestURI());
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
+                    
                     // 从令牌中获取用户名
-                    String username = jwtTokenProvider.getUsernameFromToken(jwt);
+                    String username = claims.getUsername();
                     
                     if (StringUtils.hasText(username) && SecurityContextHolder.getContext().getAuthentication() == null) {
                         
@@ -63,14 +72,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                         UserDetails userDetails = userDetailsService.loadUserByUsername(username);
                         
                         // 验证用户状态和令牌信息
-                        if (isValidUserAndToken(userDetails, jwt, request)) {
-                            
-                            // 从令牌中获取权限信息
-                            Collection<? extends GrantedAuthority> authorities = jwtTokenProvider.getAuthorities(jwt);
+                        if (isValidUserAndToken(userDetails, claims)) {
                             
-                            // 创建认证对象
+                            // 创建认证对象，权限取自令牌
                             UsernamePasswordAuthenticationToken authentication = 
-                                    new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
+                                    new UsernamePasswordAuthenticationToken(userDetails, null, claims.getAuthorities());
                             
                             // 设置认证详情
                             authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -82,7 +88,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                             log.debug("用户 '{}' 认证成功，访问路径: {}", username, request.getRequestURI());
                             
                             // 检查令牌是否即将过期（可选：添加响应头提醒前端刷新）
-                            checkTokenExpiration(jwt, response);
+                            checkTokenExpiration(claims, response);
                         }
                     }
                 } else {
@@ -137,11 +143,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * 验证用户和令牌的有效性
      * 
      * @param userDetails 用户详情
-     * @param jwt JWT令牌
-     * @param request HTTP请求
+     * @param claims 已验证的令牌声明
      * @return 是否有效
      */
-    private boolean isValidUserAndToken(UserDetails userDetails, String jwt, HttpServletRequest request) {
+    private boolean isValidUserAndToken(UserDetails userDetails, JwtClaims claims) {
         try {
             // 1. 检查用户是否启用
             if (!userDetails.isEnabled()) {
@@ -168,18 +173,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             }
             
             // 5. 验证令牌中的用户名与用户详情一致
-            String tokenUsername = jwtTokenProvider.getUsernameFromToken(jwt);
+            String tokenUsername = claims.getUsername();
             if (!userDetails.getUsername().equals(tokenUsername)) {
                 log.warn("令牌中的用户名与用户详情不匹配: {} vs {}", tokenUsername, userDetails.getUsername());
                 return false;
             }
             
-            // 6. 检查令牌是否在黑名单中（可选，需要注入AuthService）
-            // if (authService.isTokenBlacklisted(jwt)) {
-            //     log.warn("令牌已被列入黑名单: {}", userDetails.getUsername());
-            //     return false;
-            // }
-            
             return true;
             
         } catch (Exception e) {
@@ -191,25 +190,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     /**
      * 检查令牌过期情况并添加响应头
      * 
-     * @param jwt JWT令牌
+     * @param claims 已验证的令牌声明
      * @param response HTTP响应
      */
-    private void checkTokenExpiration(String jwt, HttpServletResponse response) {
-        try {
-            // 检查令牌是否即将过期（30分钟内）
-            long threshold = 30 * 60 * 1000; // 30分钟
-            if (jwtTokenProvider.isTokenExpiringSoon(jwt, threshold)) {
-                // 添加响应头提示前端刷新令牌
-                response.setHeader("X-Token-Expiring", "true");
-                
-                // 获取剩余有效时间
-                long remainingTime = jwtTokenProvider.getRemainingValidityTime(jwt);
-                response.setHeader("X-Token-Remaining", String.valueOf(remainingTime));
-                
-                log.debug("令牌即将过期，剩余时间: {} ms", remainingTime);
-            }
-        } catch (Exception e) {
-            log.debug("检查令牌过期时间失败: {}", e.getMessage());
+    private void checkTokenExpiration(JwtClaims claims, HttpServletResponse response) {
+        // 检查令牌是否即将过期（30分钟内）
+        long threshold = 30 * 60 * 1000; // 30分钟
+        long remainingTime = claims.getRemainingValidityTime();
+        if (remainingTime <= threshold) {
+            // 添加响应头提示前端刷新令牌
+            response.setHeader("X-Token-Expiring", "true");
+            response.setHeader("X-Token-Remaining", String.valueOf(remainingTime));
+            
+            log.debug("令牌即将过期，剩余时间: {} ms", remainingTime);
         }
     }
     
@@ -0,0 +1,110 @@
+package com.proshine.visitmanagement.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 已验证签名的JWT声明（不可变）
+ * 令牌只解析、验签一次，之后的用户名、权限、类型、过期时间都从这里读取
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Value
+public class JwtClaims {
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    /**
+     * 用户名
+     */
+    String username;
+
+    /**
+     * JWT ID
+     */
+    String jwtId;
+
+    /**
+     * 令牌类型（access / refresh，旧令牌可能为空）
+     */
+    String type;
+
+    /**
+     * 权限集合
+     */
+    List<GrantedAuthority> authorities;
+
+    /**
+     * 签发时间（毫秒）
+     */
+    long issuedAt;
+
+    /**
+     * 过期时间（毫秒）
+     */
+    long expiration;
+
+    /**
+     * 从已验签的声明构建
+     *
+     * @param claims JWT声明
+     * @return 不可变声明
+     */
+    static JwtClaims of(Claims claims) {
+        @SuppressWarnings("unchecked")
+        List<String> roles = claims.get("roles", List.class);
+        List<GrantedAuthority> authorities = roles == null ? Collections.emptyList() :
+                Collections.unmodifiableList(roles.stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList()));
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+        return new JwtClaims(claims.getSubject(), claims.getId(), claims.get("type", String.class), authorities,
+                issuedAt != null ? issuedAt.getTime() : 0L,
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+    }
+
+    /**
+     * 是否为访问令牌（未标注类型的旧令牌按访问令牌处理）
+     */
+    public boolean isAccessToken() {
+        return TYPE_ACCESS.equals(type) || type == null;
+    }
+
+    /**
+     * 是否为刷新令牌
+     */
+    public boolean isRefreshToken() {
+        return TYPE_REFRESH.equals(type);
+    }
+
+    /**
+     * 是否已过期
+     */
+    public boolean isExpired() {
+        return expiration <= System.currentTimeMillis();
+    }
+
+    /**
+     * 剩余有效时间（毫秒）
+     */
+    public long getRemainingValidityTime() {
+        return Math.max(0, expiration - System.currentTimeMillis());
+    }
+
+    /**
+     * 过期时间
+     */
+    public Date getExpirationDate() {
+        return new Date(expiration);
+    }
+}
@@ -1,18 +1,24 @@
 package com.proshine.visitmanagement.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -37,8 +43,24 @@ public class JwtTokenProvider {
     @Value("${app.jwt.prefix:Bearer }")
     private String jwtPrefix;
 
+    /**
+     * 已验签声明缓存的最大条目数
+     */
+    @Value("${app.jwt.claims-cache.maximum-size:10000}")
+    private long claimsCacheMaximumSize;
+
     private SecretKey secretKey;
 
+    /**
+     * 线程安全，初始化后复用
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * 令牌哈希 -> 已验签声明，条目在令牌过期时失效
+     */
+    private Cache<String, JwtClaims> claimsCache;
+
     /**
      * 初始化密钥
      */
@@ -59,7 +81,30 @@ public class JwtTokenProvider {
         }
 
         this.secretKey = Keys.hmacShaKeyFor(keyString.getBytes(StandardCharsets.UTF_8));
-        log.info("JWT TokenProvider initialized with expiration: {} ms", jwtExpiration);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaximumSize)
+                .expireAfter(new Expiry<String, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtClaims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(claims.getRemainingValidityTime());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtClaims claims, long currentTime, long currentDuration) {
+                        return TimeUnit.MILLISECONDS.toNanos(claims.getRemainingValidityTime());
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        log.info("JWT TokenProvider initialized with expiration: {} ms, claims cache size: {}",
+                jwtExpiration, claimsCacheMaximumSize);
     }
 
     /**
@@ -79,9 +124,10 @@ public class JwtTokenProvider {
                 .collect(Collectors.toList());
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("roles", roles)
-                .claim("type", "access")
+                .claim("type", JwtClaims.TYPE_ACCESS)
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(secretKey, SignatureAlgorithm.HS512)
@@ -99,14 +145,37 @@ public class JwtTokenProvider {
         Date expiryDate = new Date(System.currentTimeMillis() + jwtExpiration * 7); // 刷新令牌有效期7倍
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
-                .claim("type", "refresh")
+                .claim("type", JwtClaims.TYPE_REFRESH)
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(secretKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
+    /**
+     * 解析并验证令牌，结果按令牌哈希缓存到令牌过期为止，同一令牌的后续请求不再验签
+     *
+     * @param token JWT令牌
+     * @return 已验证的声明，令牌无效或已过期时返回 null
+     */
+    public JwtClaims parseToken(String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        String key = hashToken(token);
+        JwtClaims claims = claimsCache.getIfPresent(key);
+        if (claims != null && !claims.isExpired()) {
+            return claims;
+        }
+        claims = verifyToken(token);
+        if (claims != null) {
+            claimsCache.put(key, claims);
+        }
+        return claims;
+    }
+
     /**
      * 从令牌中获取用户名
      *
@@ -114,18 +183,8 @@ public class JwtTokenProvider {
      * @return 用户名
      */
     public String getUsernameFromToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            return claims.getSubject();
-        } catch (JwtException e) {
-            log.error("无法从令牌中获取用户名: {}", e.getMessage());
-            return null;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null ? claims.getUsername() : null;
     }
 
     /**
@@ -135,30 +194,8 @@ public class JwtTokenProvider {
      * @return 权限集合
      */
     public Collection<? extends GrantedAuthority> getAuthorities(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            @SuppressWarnings("unchecked")
-            List<String> roles = claims.get("roles", List.class);
-
-            if (roles == null || roles.isEmpty()) {
-                // Java 8兼容：使用Arrays.asList代替List.of()
-                return Arrays.asList();
-            }
-
-            return roles.stream()
-                    .map(SimpleGrantedAuthority::new)
-                    .collect(Collectors.toList());
-
-        } catch (JwtException e) {
-            log.error("无法从令牌中获取权限信息: {}", e.getMessage());
-            // Java 8兼容：使用Arrays.asList代替List.of()
-            return Arrays.asList();
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null ? claims.getAuthorities() : Collections.emptyList();
     }
 
     /**
@@ -168,26 +205,7 @@ public class JwtTokenProvider {
      * @return 是否有效
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (SecurityException e) {
-            log.error("JWT签名无效: {}", e.getMessage());
-        } catch (MalformedJwtException e) {
-            log.error("JWT令牌格式错误: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            log.error("JWT令牌已过期: {}", e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            log.error("不支持的JWT令牌: {}", e.getMessage());
-        } catch (IllegalArgumentException e) {
-            log.error("JWT令牌为空: {}", e.getMessage());
-        } catch (Exception e) {
-            log.error("JWT令牌验证失败: {}", e.getMessage());
-        }
-        return false;
+        return parseToken(token) != null;
     }
 
     /**
@@ -197,32 +215,8 @@ public class JwtTokenProvider {
      * @return 过期时间
      */
     public Date getExpirationDateFromToken(String token) {
-        try {
-            Claims claims = getAllClaimsFromToken(token);
-            return claims != null ? claims.getExpiration() : null;
-        } catch (Exception e) {
-            log.error("获取令牌过期时间失败: {}", e.getMessage());
-            return null;
-        }
-    }
-
-    /**
-     * 获取令牌中的所有声明
-     *
-     * @param token JWT令牌
-     * @return 声明
-     */
-    private Claims getAllClaimsFromToken(String token) {
-        try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-        } catch (JwtException e) {
-            log.error("无法从令牌中获取声明: {}", e.getMessage());
-            return null;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null ? claims.getExpirationDate() : null;
     }
 
     /**
@@ -232,11 +226,8 @@ public class JwtTokenProvider {
      * @return 是否过期
      */
     public boolean isTokenExpired(String token) {
-        Date expirationDate = getExpirationDateFromToken(token);
-        if (expirationDate == null) {
-            return true;
-        }
-        return expirationDate.before(new Date());
+        JwtClaims claims = parseToken(token);
+        return claims == null || claims.isExpired();
     }
 
     /**
@@ -246,18 +237,8 @@ public class JwtTokenProvider {
      * @return 是否为刷新令牌
      */
     public boolean isRefreshToken(String token) {
-        try {
-            Claims claims = getAllClaimsFromToken(token);
-            if (claims == null) {
-                return false;
-            }
-
-            String type = claims.get("type", String.class);
-            return "refresh".equals(type);
-        } catch (Exception e) {
-            log.error("无法检查令牌类型: {}", e.getMessage());
-            return false;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null && claims.isRefreshToken();
     }
 
     /**
@@ -267,18 +248,8 @@ public class JwtTokenProvider {
      * @return 是否为访问令牌
      */
     public boolean isAccessToken(String token) {
-        try {
-            Claims claims = getAllClaimsFromToken(token);
-            if (claims == null) {
-                return false;
-            }
-
-            String type = claims.get("type", String.class);
-            return "access".equals(type) || type == null; // 默认为访问令牌
-        } catch (Exception e) {
-            log.error("无法检查令牌类型: {}", e.getMessage());
-            return false;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null && claims.isAccessToken();
     }
 
     /**
@@ -301,22 +272,8 @@ public class JwtTokenProvider {
      * @return 是否可以刷新
      */
     public boolean canTokenBeRefreshed(String token) {
-        try {
-            if (!validateToken(token)) {
-                return false;
-            }
-
-            // 检查是否为刷新令牌
-            if (!isRefreshToken(token)) {
-                return false;
-            }
-
-            // 检查是否已过期
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            log.error("检查令牌是否可以刷新时出错: {}", e.getMessage());
-            return false;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null && claims.isRefreshToken() && !claims.isExpired();
     }
 
     /**
@@ -327,11 +284,12 @@ public class JwtTokenProvider {
      */
     public String generateTokenFromRefreshToken(String refreshToken) {
         try {
-            if (!canTokenBeRefreshed(refreshToken)) {
+            JwtClaims claims = parseToken(refreshToken);
+            if (claims == null || !claims.isRefreshToken() || claims.isExpired()) {
                 throw new IllegalArgumentException("刷新令牌无效或已过期");
             }
 
-            String username = getUsernameFromToken(refreshToken);
+            String username = claims.getUsername();
             if (username == null) {
                 throw new IllegalArgumentException("无法从刷新令牌中获取用户名");
             }
@@ -339,8 +297,9 @@ public class JwtTokenProvider {
             Date expiryDate = new Date(System.currentTimeMillis() + jwtExpiration);
 
             return Jwts.builder()
+                    .setId(UUID.randomUUID().toString())
                     .setSubject(username)
-                    .claim("type", "access")
+                    .claim("type", JwtClaims.TYPE_ACCESS)
                     .setIssuedAt(new Date())
                     .setExpiration(expiryDate)
                     .signWith(secretKey, SignatureAlgorithm.HS512)
@@ -359,13 +318,8 @@ public class JwtTokenProvider {
      * @return JTI
      */
     public String getJwtId(String token) {
-        try {
-            Claims claims = getAllClaimsFromToken(token);
-            return claims != null ? claims.getId() : null;
-        } catch (Exception e) {
-            log.error("获取JWT ID失败: {}", e.getMessage());
-            return null;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims != null ? claims.getJwtId() : null;
     }
 
     /**
@@ -376,20 +330,8 @@ public class JwtTokenProvider {
      * @return 是否即将过期
      */
     public boolean isTokenExpiringSoon(String token, long threshold) {
-        try {
-            Date expirationDate = getExpirationDateFromToken(token);
-            if (expirationDate == null) {
-                return true;
-            }
-
-            long currentTime = System.currentTimeMillis();
-            long expirationTime = expirationDate.getTime();
-
-            return (expirationTime - currentTime) <= threshold;
-        } catch (Exception e) {
-            log.error("检查令牌是否即将过期失败: {}", e.getMessage());
-            return true;
-        }
+        JwtClaims claims = parseToken(token);
+        return claims == null || claims.getRemainingValidityTime() <= threshold;
     }
 
     /**
@@ -399,19 +341,45 @@ public class JwtTokenProvider {
      * @return 剩余时间（毫秒）
      */
     public long getRemainingValidityTime(String token) {
-        try {
-            Date expirationDate = getExpirationDateFromToken(token);
-            if (expirationDate == null) {
-                return 0;
-            }
-
-            long currentTime = System.currentTimeMillis();
-            long expirationTime = expirationDate.getTime();
+        JwtClaims claims = parseToken(token);
+        return claims != null ? claims.getRemainingValidityTime() : 0;
+    }
 
-            return Math.max(0, expirationTime - currentTime);
+    /**
+     * 解析令牌并验证签名和有效期
+     *
+     * @param token JWT令牌
+     * @return 已验证的声明，无效时返回 null
+     */
+    private JwtClaims verifyToken(String token) {
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            return JwtClaims.of(claims);
+        } catch (SecurityException e) {
+            log.error("JWT签名无效: {}", e.getMessage());
+        } catch (MalformedJwtException e) {
+            log.error("JWT令牌格式错误: {}", e.getMessage());
+        } catch (ExpiredJwtException e) {
+            log.error("JWT令牌已过期: {}", e.getMessage());
+        } catch (UnsupportedJwtException e) {
+            log.error("不支持的JWT令牌: {}", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.error("JWT令牌为空: {}", e.getMessage());
         } catch (Exception e) {
-            log.error("获取令牌剩余有效时间失败: {}", e.getMessage());
-            return 0;
+            log.error("JWT令牌验证失败: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 令牌的SHA-256摘要，作为声明缓存的键，避免在内存中保存完整令牌
+     */
+    private static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
         }
     }
 
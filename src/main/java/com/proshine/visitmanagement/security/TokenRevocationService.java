@@ -0,0 +1,285 @@
+package com.proshine.visitmanagement.security;
+
+import com.proshine.visitmanagement.entity.RevokedToken;
+import com.proshine.visitmanagement.repository.RevokedTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌吊销服务
+ * 吊销记录以 JTI 为键保存在内存中，前置布隆过滤器，绝大多数未吊销的令牌无需查表即可放行；
+ * 记录同时写入 revoked_tokens 表，其他节点定时增量同步，令牌过期后自动清理
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+
+    /**
+     * 增量同步时向前重叠的时间，覆盖提交延迟和节点间的时钟误差
+     */
+    private static final long SYNC_OVERLAP_SECONDS = 60;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    /**
+     * 布隆过滤器预期容纳的吊销记录数
+     */
+    @Value("${app.jwt.revocation.expected-entries:100000}")
+    private int expectedEntries;
+
+    /**
+     * 布隆过滤器误判率
+     */
+    @Value("${app.jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    /**
+     * JTI -> 令牌过期时间（毫秒）
+     */
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    /**
+     * 快速否定路径，只增不减，清理过期记录时整体重建
+     */
+    private volatile BloomFilter bloomFilter;
+
+    /**
+     * 已同步到的数据库吊销时间
+     */
+    private volatile LocalDateTime syncCursor = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * 启动时加载所有未过期的吊销记录
+     */
+    @PostConstruct
+    public void init() {
+        bloomFilter = new BloomFilter(expectedEntries, falsePositiveRate);
+        sync();
+        log.info("令牌吊销列表初始化完成，当前记录数: {}", revokedTokens.size());
+    }
+
+    /**
+     * 判断令牌是否已被吊销，不访问数据库
+     *
+     * @param claims 已验证的令牌声明
+     * @return 是否已吊销
+     */
+    public boolean isRevoked(JwtClaims claims) {
+        return claims != null && isRevoked(claims.getJwtId());
+    }
+
+    /**
+     * 判断 JTI 是否已被吊销，不访问数据库
+     *
+     * @param jti 令牌JTI
+     * @return 是否已吊销
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !bloomFilter.mightContain(jti)) {
+            return false;
+        }
+        return revokedTokens.containsKey(jti);
+    }
+
+    /**
+     * 吊销令牌，写库的事务提交后立即在本节点生效，其他节点在下一次同步后生效；
+     * 事务回滚时本节点的内存表不受影响，与数据库保持一致
+     *
+     * @param claims 已验证的令牌声明
+     * @return 是否已吊销；未携带 JTI 的旧令牌无法吊销，只能等待其自然过期
+     */
+    @Transactional
+    public boolean revoke(JwtClaims claims) {
+        if (claims == null || claims.isExpired()) {
+            return false;
+        }
+        if (claims.getJwtId() == null) {
+            log.warn("令牌未携带JTI，无法吊销: {}", claims.getUsername());
+            return false;
+        }
+
+        String jti = claims.getJwtId();
+        long expiration = claims.getExpiration();
+        revokedTokenRepository.insertIgnore(jti, claims.getUsername(), toLocalDateTime(expiration));
+        runAfterCommit(() -> remember(jti, expiration));
+        log.debug("令牌已吊销: user={}, jti={}", claims.getUsername(), claims.getJwtId());
+        return true;
+    }
+
+    /**
+     * 从数据库增量同步其他节点写入的吊销记录
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.sync-interval-ms:5000}",
+            initialDelayString = "${app.jwt.revocation.sync-interval-ms:5000}")
+    public void sync() {
+        try {
+            LocalDateTime cursor = syncCursor;
+            List<RevokedToken> tokens = revokedTokenRepository.findActiveRevokedSince(
+                    cursor.minusSeconds(SYNC_OVERLAP_SECONDS), LocalDateTime.now());
+            for (RevokedToken token : tokens) {
+                remember(token.getJti(), toEpochMilli(token.getExpiresAt()));
+                if (token.getRevokedAt().isAfter(cursor)) {
+                    cursor = token.getRevokedAt();
+                }
+            }
+            syncCursor = cursor;
+        } catch (Exception e) {
+            log.error("同步令牌吊销列表失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理已过期的吊销记录，并按剩余记录重建布隆过滤器
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L, initialDelay = 60 * 1000L)
+    @Transactional
+    public void pruneExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map.Entry<String, Long> entry : revokedTokens.entrySet()) {
+            if (entry.getValue() <= now && revokedTokens.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        rebuildBloomFilter();
+
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0 || deleted > 0) {
+            log.info("清理过期的令牌吊销记录: 内存{}条, 数据库{}条", removed, deleted);
+        }
+    }
+
+    /**
+     * 当前内存中的吊销记录数
+     */
+    public int size() {
+        return revokedTokens.size();
+    }
+
+    /**
+     * 有事务时在提交后执行，否则立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 记录到内存，与重建互斥，保证重建期间的新记录不会从过滤器中丢失
+     */
+    private synchronized void remember(String jti, long expiration) {
+        if (expiration <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokens.put(jti, expiration);
+        bloomFilter.put(jti);
+    }
+
+    private synchronized void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revokedTokens.size() * 2), falsePositiveRate);
+        revokedTokens.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 线程安全的布隆过滤器，使用双重哈希生成各个位下标
+     */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitSize;
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions, double fpp) {
+            int n = Math.max(expectedInsertions, 1);
+            long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min((m + 63) / 64, Integer.MAX_VALUE);
+            this.bits = new AtomicLongArray(words);
+            this.bitSize = (long) words * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        }
+
+        void put(String value) {
+            long hash1 = fnv1a64(value);
+            long hash2 = mix64(hash1);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash1 = fnv1a64(value);
+            long hash2 = mix64(hash1);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long fnv1a64(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        private static long mix64(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3f25a5d2ac3L;
+            hash ^= hash >>> 33;
+            return hash | 1L;
+        }
+    }
+}
@@ -8,14 +8,16 @@ import com.proshine.visitmanagement.entity.User;
 import com.proshine.visitmanagement.exception.BusinessException;
 import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.UserRepository;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.security.JwtClaims;
 import com.proshine.visitmanagement.security.JwtTokenProvider;
+import com.proshine.visitmanagement.security.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,23 +37,30 @@ public class AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
     private final UserService userService;
+    private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    private final LoginThrottleService loginThrottleService;
+    private final PasswordHashingService passwordHashingService;
 
     /**
      * 用户登录
+     * 不开启事务：限流拒绝和等待密码校验期间不占用数据库连接
      *
      * @param request 登录请求
+     * @param clientIp 客户端IP
      * @return 登录响应
      */
-    @Transactional
-    public LoginResponse login(LoginRequest request) {
+    public LoginResponse login(LoginRequest request, String clientIp) {
+        // 按IP和用户名限流，超出频率直接拒绝，不查库也不计算哈希
+        loginThrottleService.acquire(request.getUsername(), clientIp);
+
         try {
-            // 认证用户
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-            );
+            // 认证用户，BCrypt校验在专用线程池中执行
+            Authentication authentication = passwordHashingService.execute("verify", () ->
+                    authenticationManager.authenticate(
+                            new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())));
 
             // 获取用户信息
             User user = userRepository.findByUsername(request.getUsername())
@@ -67,6 +76,7 @@ public class AuthService {
 
             // 更新最后登录时间
             userService.updateLastLoginTime(user.getId());
+            loginThrottleService.onLoginSucceeded(user.getUsername());
 
             log.info("用户登录成功: {}", user.getUsername());
 
@@ -113,7 +123,7 @@ public class AuthService {
         // 创建新用户
         User user = new User();
         user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(request.getPassword()));
         user.setRealName(request.getRealName());
         user.setEmail(request.getEmail());
         user.setPhone(request.getPhone());
@@ -133,11 +143,14 @@ public class AuthService {
      */
     public void logout(HttpServletRequest request, Authentication authentication) {
         String username = authentication.getName();
-        log.info("用户登出: {}", username);
 
-        // 由于移除了Redis，这里只记录日志
-        // 实际的Token失效由JWT的过期时间控制
-        // 如果需要立即失效，可以考虑使用内存黑名单或数据库记录
+        // 吊销当前令牌，立即失效而不是等到过期
+        String token = jwtTokenProvider.resolveToken(request.getHeader(jwtTokenProvider.getJwtHeader()));
+        JwtClaims claims = jwtTokenProvider.parseToken(token);
+        boolean revoked = claims != null && username.equals(claims.getUsername())
+                && tokenRevocationService.revoke(claims);
+
+        log.info("用户登出: {}, 令牌已吊销: {}", username, revoked);
     }
 
     /**
@@ -150,12 +163,13 @@ public class AuthService {
     public LoginResponse refresh(String refreshToken) {
         try {
             // 验证刷新Token
-            if (!jwtTokenProvider.validateToken(refreshToken)) {
+            JwtClaims claims = jwtTokenProvider.parseToken(refreshToken);
+            if (claims == null || tokenRevocationService.isRevoked(claims)) {
                 throw new BusinessException("刷新Token无效或已过期");
             }
 
             // 获取用户信息
-            String username = jwtTokenProvider.getUsernameFromToken(refreshToken);
+            String username = claims.getUsername();
             User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
 
@@ -166,9 +180,12 @@ public class AuthService {
 
             // 生成新Token
             Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    username, null, jwtTokenProvider.getAuthorities(refreshToken));
+                    username, null, claims.getAuthorities());
             String newToken = jwtTokenProvider.generateToken(authentication);
 
+            // 旧令牌换出后即吊销，防止被重复使用
+            tokenRevocationService.revoke(claims);
+
             log.info("Token刷新成功: {}", username);
 
             // 计算过期时间
@@ -222,13 +239,14 @@ public class AuthService {
                 .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
 
         // 验证旧密码
-        if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
+        if (!passwordHashingService.matches(oldPassword, user.getPassword())) {
             throw new BusinessException("旧密码错误");
         }
 
         // 更新密码
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
         userRepository.save(user);
+        userDetailsService.evictUser(user.getId(), username);
 
         log.info("用户修改密码成功: {}", username);
     }
@@ -244,8 +262,9 @@ public class AuthService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
 
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
         userRepository.save(user);
+        userDetailsService.evictUser(user.getId(), username);
 
         log.info("重置用户密码成功: {}", username);
     }
@@ -262,7 +281,7 @@ public class AuthService {
         if (user == null) {
             return false;
         }
-        return passwordEncoder.matches(password, user.getPassword());
+        return passwordHashingService.matches(password, user.getPassword());
     }
 
     /**
@@ -276,7 +295,8 @@ public class AuthService {
             token = token.substring(7);
         }
 
-        return jwtTokenProvider.validateToken(token);
+        JwtClaims claims = jwtTokenProvider.parseToken(token);
+        return claims != null && !tokenRevocationService.isRevoked(claims);
     }
 
     /**
@@ -0,0 +1,502 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.dto.response.CustomerDuplicateResponse;
+import com.proshine.visitmanagement.dto.response.CustomerSuggestionResponse;
+import com.proshine.visitmanagement.dto.response.PageResponse;
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.CustomerDuplicate;
+import com.proshine.visitmanagement.entity.Department;
+import com.proshine.visitmanagement.entity.School;
+import com.proshine.visitmanagement.exception.BusinessException;
+import com.proshine.visitmanagement.exception.ResourceNotFoundException;
+import com.proshine.visitmanagement.repository.CustomerDuplicateRepository;
+import com.proshine.visitmanagement.repository.CustomerRepository;
+import com.proshine.visitmanagement.util.BatchUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 疑似重复客户检测服务
+ * 在内存中按规范化后的电话、邮箱以及 (院系, 姓名) 三种分块键维护客户分块，只对落在同一分块的客户两两打分，
+ * 避免全表两两比较。定时任务只处理上次检测以来新增或修改的客户，结果写入 customer_duplicates 供合并客户时参考，
+ * 删除和合并在事务提交后移出分块，每日凌晨全量重建一次兜底直接改库等增量检测覆盖不到的变化
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerDuplicateService {
+
+    /**
+     * 增量检测的回溯时间（分钟），覆盖检测开始时尚未提交的修改
+     */
+    private static final int SCAN_OVERLAP_MINUTES = 1;
+
+    private static final double PHONE_WEIGHT = 0.5;
+    private static final double EMAIL_WEIGHT = 0.5;
+    private static final double WECHAT_WEIGHT = 0.3;
+
+    /**
+     * 姓名相似度权重：同院系时姓名相同即可判定为疑似重复，不同院系时只作为辅助
+     */
+    private static final double SAME_DEPARTMENT_NAME_WEIGHT = 0.6;
+    private static final double OTHER_DEPARTMENT_NAME_WEIGHT = 0.3;
+
+    /**
+     * 记为"姓名相似"的最低相似度
+     */
+    private static final double SIMILAR_NAME_THRESHOLD = 0.75;
+
+    /**
+     * 最短有效电话位数，过短的号码（分机号、占位号码）不参与分块
+     */
+    private static final int MIN_PHONE_DIGITS = 7;
+
+    private final CustomerRepository customerRepository;
+    private final CustomerDuplicateRepository customerDuplicateRepository;
+
+    @Value("${app.duplicate.score-threshold:0.6}")
+    private double scoreThreshold;
+
+    @Value("${app.duplicate.max-block-size:50}")
+    private int maxBlockSize;
+
+    /**
+     * 分块键 -> 客户ID
+     */
+    private final Map<String, Set<Long>> blocks = new HashMap<>();
+
+    /**
+     * 客户ID -> 检测条目
+     */
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+
+    /**
+     * 上次检测开始时间，为空表示下次做全量检测
+     */
+    private LocalDateTime lastScanAt;
+
+    // ==================== 检测任务 ====================
+
+    /**
+     * 启动时全量检测
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        scan();
+    }
+
+    /**
+     * 定时增量检测
+     */
+    @Scheduled(fixedDelayString = "${app.duplicate.scan-interval-ms:300000}",
+            initialDelayString = "${app.duplicate.scan-interval-ms:300000}")
+    @Transactional
+    public void scheduledScan() {
+        scan();
+    }
+
+    /**
+     * 每日凌晨全量重建分块并重新检测
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    @Transactional
+    public synchronized void rescanAll() {
+        lastScanAt = null;
+        scan();
+    }
+
+    /**
+     * 检测上次检测以来新增或修改的客户
+     *
+     * @return 本次写入的疑似重复对数
+     */
+    @Transactional
+    public synchronized int scan() {
+        long start = System.currentTimeMillis();
+        LocalDateTime scanStartedAt = LocalDateTime.now();
+        boolean full = lastScanAt == null;
+        if (full) {
+            blocks.clear();
+            candidates.clear();
+        }
+
+        List<Candidate> changed = customerRepository
+                .findDuplicateScanRows(full ? null : lastScanAt.minusMinutes(SCAN_OVERLAP_MINUTES))
+                .stream()
+                .map(Candidate::of)
+                .collect(Collectors.toList());
+
+        // 先更新分块，本批客户之间也能互相匹配
+        for (Candidate candidate : changed) {
+            Candidate previous = candidates.put(candidate.id, candidate);
+            if (previous != null) {
+                previous.blockKeys().forEach(key -> removeFromBlock(key, previous.id));
+            }
+            candidate.blockKeys().forEach(key -> blocks.computeIfAbsent(key, k -> new HashSet<>()).add(candidate.id));
+        }
+
+        Map<String, Match> matches = new LinkedHashMap<>();
+        for (Candidate candidate : changed) {
+            for (Long otherId : blockMates(candidate)) {
+                Candidate other = candidates.get(otherId);
+                Match match = match(candidate, other);
+                if (match != null) {
+                    matches.putIfAbsent(match.customerId + ":" + match.duplicateCustomerId, match);
+                }
+            }
+        }
+
+        // 本批客户的待处理记录重新计算；已忽略的记录由 upsert 保留原状态
+        List<Long> changedIds = changed.stream().map(candidate -> candidate.id).collect(Collectors.toList());
+        for (List<Long> chunk : BatchUtils.chunkIds(changedIds)) {
+            customerDuplicateRepository.deletePendingByCustomerIdIn(chunk);
+        }
+        for (Match match : matches.values()) {
+            customerDuplicateRepository.upsert(match.customerId, match.duplicateCustomerId, match.score, match.reasons);
+        }
+
+        lastScanAt = scanStartedAt;
+        log.info("疑似重复客户检测完成: 全量={}, 检测客户数={}, 分块数={}, 疑似重复对数={}, 耗时={}ms",
+                full, changed.size(), blocks.size(), matches.size(), System.currentTimeMillis() - start);
+        return matches.size();
+    }
+
+    /**
+     * 客户删除（含合并后删除源客户）后，事务提交时移出分块，
+     * 避免在下次全量重建前继续产生指向已删除客户的疑似重复
+     *
+     * @param customerIds 已删除的客户ID
+     */
+    public void onCustomersDeleted(Collection<Long> customerIds) {
+        List<Long> ids = new ArrayList<>(customerIds);
+        runAfterCommit(() -> removeCandidates(ids));
+    }
+
+    // ==================== 查询与处理 ====================
+
+    /**
+     * 分页查询疑似重复客户，按得分降序；任一方已删除或已被合并的记录不返回
+     *
+     * @param status 处理状态（为空表示待处理）
+     * @param pageable 分页参数
+     * @return 疑似重复客户分页列表
+     */
+    @Transactional(readOnly = true)
+    public PageResponse<CustomerDuplicateResponse> getSuspectedDuplicates(String status, Pageable pageable) {
+        CustomerDuplicate.DuplicateStatus duplicateStatus = parseStatus(status);
+        Page<CustomerDuplicate> duplicatePage = customerDuplicateRepository.findLiveByStatus(duplicateStatus, pageable);
+
+        Set<Long> customerIds = new HashSet<>();
+        for (CustomerDuplicate duplicate : duplicatePage.getContent()) {
+            customerIds.add(duplicate.getCustomerId());
+            customerIds.add(duplicate.getDuplicateCustomerId());
+        }
+        Map<Long, Customer> customers = customerIds.isEmpty() ? Collections.emptyMap() :
+                customerRepository.findAllWithSchoolAndDepartmentByIdIn(customerIds).stream()
+                        .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        List<CustomerDuplicateResponse> content = duplicatePage.getContent().stream()
+                .map(duplicate -> convertToResponse(duplicate, customers))
+                .collect(Collectors.toList());
+
+        return PageResponse.<CustomerDuplicateResponse>builder()
+                .content(content)
+                .page(duplicatePage.getNumber())
+                .size(duplicatePage.getSize())
+                .totalElements(duplicatePage.getTotalElements())
+                .totalPages(duplicatePage.getTotalPages())
+                .first(duplicatePage.isFirst())
+                .last(duplicatePage.isLast())
+                .empty(duplicatePage.isEmpty())
+                .build();
+    }
+
+    /**
+     * 忽略一对疑似重复客户（确认不是同一人），之后的检测不会再把它标为待处理
+     *
+     * @param id 疑似重复记录ID
+     */
+    @Transactional
+    public void ignoreDuplicate(Long id) {
+        CustomerDuplicate duplicate = customerDuplicateRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("疑似重复记录不存在"));
+        duplicate.setStatus(CustomerDuplicate.DuplicateStatus.IGNORED);
+        duplicate.setUpdatedAt(LocalDateTime.now());
+        customerDuplicateRepository.save(duplicate);
+        log.info("忽略疑似重复客户: id={}, customerId={}, duplicateCustomerId={}",
+                id, duplicate.getCustomerId(), duplicate.getDuplicateCustomerId());
+    }
+
+    // ==================== 私有方法 ====================
+
+    private synchronized void removeCandidates(List<Long> customerIds) {
+        for (Long customerId : customerIds) {
+            Candidate previous = candidates.remove(customerId);
+            if (previous != null) {
+                previous.blockKeys().forEach(key -> removeFromBlock(key, customerId));
+            }
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void removeFromBlock(String key, Long customerId) {
+        Set<Long> members = blocks.get(key);
+        if (members != null) {
+            members.remove(customerId);
+            if (members.isEmpty()) {
+                blocks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 与客户落在同一分块的其他客户；超大的分块（如共用的办公室电话）不参与比较
+     */
+    private Set<Long> blockMates(Candidate candidate) {
+        Set<Long> mates = new HashSet<>();
+        for (String key : candidate.blockKeys()) {
+            Set<Long> members = blocks.get(key);
+            if (members != null && members.size() <= maxBlockSize) {
+                mates.addAll(members);
+            }
+        }
+        mates.remove(candidate.id);
+        return mates;
+    }
+
+    /**
+     * 计算两位客户的相似度，低于阈值返回 null
+     */
+    private Match match(Candidate a, Candidate b) {
+        double score = 0;
+        List<String> reasons = new ArrayList<>();
+        if (a.phone != null && a.phone.equals(b.phone)) {
+            score += PHONE_WEIGHT;
+            reasons.add(CustomerDuplicate.MatchReason.PHONE.name());
+        }
+        if (a.email != null && a.email.equals(b.email)) {
+            score += EMAIL_WEIGHT;
+            reasons.add(CustomerDuplicate.MatchReason.EMAIL.name());
+        }
+        if (a.wechat != null && a.wechat.equals(b.wechat)) {
+            score += WECHAT_WEIGHT;
+            reasons.add(CustomerDuplicate.MatchReason.WECHAT.name());
+        }
+
+        boolean sameDepartment = a.departmentId != null && a.departmentId.equals(b.departmentId);
+        double nameSimilarity = nameSimilarity(a.nameKey, b.nameKey);
+        if (sameDepartment && nameSimilarity == 1) {
+            reasons.add(CustomerDuplicate.MatchReason.NAME.name());
+        } else if (nameSimilarity >= SIMILAR_NAME_THRESHOLD) {
+            reasons.add(CustomerDuplicate.MatchReason.SIMILAR_NAME.name());
+        }
+        score += (sameDepartment ? SAME_DEPARTMENT_NAME_WEIGHT : OTHER_DEPARTMENT_NAME_WEIGHT) * nameSimilarity;
+
+        score = Math.round(Math.min(score, 1.0) * 1000) / 1000.0;
+        if (score < scoreThreshold) {
+            return null;
+        }
+        return a.id < b.id
+                ? new Match(a.id, b.id, score, String.join(",", reasons))
+                : new Match(b.id, a.id, score, String.join(",", reasons));
+    }
+
+    /**
+     * 姓名相似度：1 - 编辑距离 / 较长姓名长度
+     */
+    private static double nameSimilarity(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        if (a.equals(b)) {
+            return 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) previous[b.length()] / Math.max(a.length(), b.length());
+    }
+
+    private CustomerDuplicate.DuplicateStatus parseStatus(String status) {
+        if (!StringUtils.hasText(status)) {
+            return CustomerDuplicate.DuplicateStatus.PENDING;
+        }
+        try {
+            return CustomerDuplicate.DuplicateStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("无效的处理状态: " + status);
+        }
+    }
+
+    private CustomerDuplicateResponse convertToResponse(CustomerDuplicate duplicate, Map<Long, Customer> customers) {
+        List<String> reasons = StringUtils.hasText(duplicate.getReasons())
+                ? Arrays.asList(duplicate.getReasons().split(","))
+                : Collections.emptyList();
+        return CustomerDuplicateResponse.builder()
+                .id(duplicate.getId())
+                .score(duplicate.getScore())
+                .reasons(reasons)
+                .reasonDescriptions(reasons.stream()
+                        .map(reason -> CustomerDuplicate.MatchReason.valueOf(reason).getDescription())
+                        .collect(Collectors.toList()))
+                .status(duplicate.getStatus().name())
+                .customer(convertToSummary(customers.get(duplicate.getCustomerId())))
+                .duplicateCustomer(convertToSummary(customers.get(duplicate.getDuplicateCustomerId())))
+                .createdAt(duplicate.getCreatedAt())
+                .updatedAt(duplicate.getUpdatedAt())
+                .build();
+    }
+
+    private CustomerSuggestionResponse convertToSummary(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        Department department = customer.getDepartment();
+        School school = customer.getSchool() != null ? customer.getSchool() :
+                department != null ? department.getSchool() : null;
+        return CustomerSuggestionResponse.builder()
+                .id(customer.getId())
+                .name(customer.getName())
+                .position(customer.getPosition())
+                .departmentId(department != null ? department.getId() : null)
+                .departmentName(department != null ? department.getName() : null)
+                .schoolId(school != null ? school.getId() : null)
+                .schoolName(school != null ? school.getName() : null)
+                .build();
+    }
+
+    /**
+     * 检测条目：规范化后的比较字段
+     */
+    private static final class Candidate {
+        final Long id;
+        final String nameKey;
+        final String phone;
+        final String email;
+        final String wechat;
+        final Long departmentId;
+
+        private Candidate(Long id, String nameKey, String phone, String email, String wechat, Long departmentId) {
+            this.id = id;
+            this.nameKey = nameKey;
+            this.phone = phone;
+            this.email = email;
+            this.wechat = wechat;
+            this.departmentId = departmentId;
+        }
+
+        static Candidate of(Object[] row) {
+            return new Candidate((Long) row[0], normalizeName((String) row[1]), normalizePhone((String) row[2]),
+                    normalizeEmail((String) row[3]), normalizeWechat((String) row[4]), (Long) row[5]);
+        }
+
+        List<String> blockKeys() {
+            List<String> keys = new ArrayList<>(3);
+            if (phone != null) {
+                keys.add("P:" + phone);
+            }
+            if (email != null) {
+                keys.add("E:" + email);
+            }
+            if (departmentId != null && !nameKey.isEmpty()) {
+                keys.add("N:" + departmentId + ":" + nameKey);
+            }
+            return keys;
+        }
+
+        private static String normalizeName(String name) {
+            return name == null ? "" : name.replaceAll("\\s+", "").toLowerCase();
+        }
+
+        /**
+         * 只保留数字，去掉 +86 / 86 国家码
+         */
+        private static String normalizePhone(String phone) {
+            if (phone == null) {
+                return null;
+            }
+            String digits = phone.replaceAll("\\D", "");
+            if (digits.length() == 13 && digits.startsWith("86")) {
+                digits = digits.substring(2);
+            }
+            return digits.length() >= MIN_PHONE_DIGITS ? digits : null;
+        }
+
+        private static String normalizeEmail(String email) {
+            if (email == null) {
+                return null;
+            }
+            String normalized = email.trim().toLowerCase();
+            return normalized.indexOf('@') > 0 ? normalized : null;
+        }
+
+        private static String normalizeWechat(String wechat) {
+            if (wechat == null) {
+                return null;
+            }
+            String normalized = wechat.trim().toLowerCase();
+            return normalized.isEmpty() ? null : normalized;
+        }
+    }
+
+    /**
+     * 一对疑似重复客户
+     */
+    private static final class Match {
+        final Long customerId;
+        final Long duplicateCustomerId;
+        final double score;
+        final String reasons;
+
+        private Match(Long customerId, Long duplicateCustomerId, double score, String reasons) {
+            this.customerId = customerId;
+            this.duplicateCustomerId = duplicateCustomerId;
+            this.score = score;
+            this.reasons = reasons;
+        }
+    }
+}
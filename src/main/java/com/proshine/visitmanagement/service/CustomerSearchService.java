@@ -0,0 +1,476 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.dto.response.CustomerSuggestionResponse;
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.Department;
+import com.proshine.visitmanagement.entity.School;
+import com.proshine.visitmanagement.entity.User;
+import com.proshine.visitmanagement.repository.CustomerRepository;
+import com.proshine.visitmanagement.security.CustomUserPrincipal;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 客户联想搜索服务
+ * 在内存中维护客户姓名、职位、院系、学校名称及姓名/学校拼音首字母的 n-gram 倒排索引，
+ * 联想输入时直接查询内存，不访问数据库。客户增删改、合并以及院系、学校改名后在事务提交后增量更新，
+ * 另有定时全量重建兜底多实例部署或直接改库造成的偏差
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerSearchService {
+
+    /**
+     * 默认返回条数
+     */
+    public static final int DEFAULT_LIMIT = 20;
+
+    /**
+     * 最大返回条数
+     */
+    public static final int MAX_LIMIT = 50;
+
+    /**
+     * GB2312 一级汉字按拼音排序，各声母首字的区位码起点（最后一项为一级汉字结束位置）
+     */
+    private static final int[] GB2312_INITIAL_BOUNDARIES = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7, 0xBFA6, 0xC0AC, 0xC2E8,
+            0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6, 0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA
+    };
+
+    private static final char[] GB2312_INITIALS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    private final CustomerRepository customerRepository;
+
+    private volatile SearchIndex index = new SearchIndex();
+
+    /**
+     * 全量重建期间到达的增量更新，重建结束时在新索引上重放后再切换；不在重建时为 null。
+     * 与 index 一样只在 synchronized (this) 内读写
+     */
+    private List<Consumer<SearchIndex>> pendingUpdates;
+
+    /**
+     * 串行化全量重建（启动构建与定时重建可能重叠）
+     */
+    private final Object rebuildLock = new Object();
+
+    // ==================== 索引构建 ====================
+
+    /**
+     * 启动时全量构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建索引
+     * 读库之前开始记录增量更新，新索引构建完成后先重放这些更新再切换，
+     * 避免重建期间提交的客户变更在切换时丢失；重放已包含在快照中的更新不影响结果
+     */
+    @Scheduled(fixedDelay = 30 * 60 * 1000L, initialDelay = 30 * 60 * 1000L)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                pendingUpdates = new ArrayList<>();
+            }
+            SearchIndex rebuilt = new SearchIndex();
+            try {
+                for (Customer customer : customerRepository.findAllForSearchIndex()) {
+                    rebuilt.put(IndexEntry.of(customer));
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendingUpdates = null;
+                }
+                throw e;
+            }
+            int replayed;
+            synchronized (this) {
+                replayed = pendingUpdates.size();
+                pendingUpdates.forEach(update -> update.accept(rebuilt));
+                pendingUpdates = null;
+                index = rebuilt;
+            }
+            log.info("客户联想索引构建完成: 客户数={}, 词条数={}, 重放增量={}, 耗时={}ms",
+                    rebuilt.entries.size(), rebuilt.postings.size(), replayed, System.currentTimeMillis() - start);
+        }
+    }
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 客户新增或修改后更新索引
+     *
+     * @param customer 已保存的客户
+     */
+    public void onCustomerSaved(Customer customer) {
+        IndexEntry entry = IndexEntry.of(customer);
+        runAfterCommit(() -> apply(current -> current.put(entry)));
+    }
+
+    /**
+     * 批量导入客户后更新索引，整批只注册一次提交回调
+     *
+     * @param customers 已保存的客户
+     */
+    public void onCustomersSaved(List<Customer> customers) {
+        List<IndexEntry> entries = customers.stream()
+                .map(IndexEntry::of)
+                .collect(Collectors.toList());
+        runAfterCommit(() -> apply(current -> entries.forEach(current::put)));
+    }
+
+    /**
+     * 客户删除（含合并后删除源客户）后移出索引
+     *
+     * @param customerId 客户ID
+     */
+    public void onCustomerDeleted(Long customerId) {
+        runAfterCommit(() -> apply(current -> current.remove(customerId)));
+    }
+
+    /**
+     * 学校改名后更新所属客户的索引
+     *
+     * @param school 已保存的学校
+     */
+    public void onSchoolRenamed(School school) {
+        Long schoolId = school.getId();
+        String schoolName = school.getName();
+        runAfterCommit(() -> apply(current -> current.entries.values().stream()
+                .filter(entry -> schoolId.equals(entry.getSchoolId()))
+                .collect(Collectors.toList())
+                .forEach(entry -> current.put(entry.withSchoolName(schoolName)))));
+    }
+
+    /**
+     * 院系修改（改名或调整所属学校）后更新所属客户的索引，需在写事务内调用
+     *
+     * @param department 已保存的院系
+     */
+    public void onDepartmentChanged(Department department) {
+        List<IndexEntry> entries = customerRepository.findByDepartmentId(department.getId()).stream()
+                .map(IndexEntry::of)
+                .collect(Collectors.toList());
+        runAfterCommit(() -> apply(current -> entries.forEach(current::put)));
+    }
+
+    // ==================== 联想查询 ====================
+
+    /**
+     * 客户联想搜索
+     * 匹配姓名、职位、院系、学校名称的任意连续片段，以及姓名、学校的拼音首字母；
+     * 销售人员只能搜索自己创建的客户
+     *
+     * @param keyword 关键词
+     * @param limit 返回条数
+     * @param authentication 认证信息
+     * @return 按匹配程度排序的客户列表
+     */
+    public List<CustomerSuggestionResponse> suggest(String keyword, int limit, Authentication authentication) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        CustomUserPrincipal principal = (CustomUserPrincipal) authentication.getPrincipal();
+        Long createdById = principal.getRole() == User.UserRole.SALES ? principal.getId() : null;
+
+        SearchIndex current = index;
+        return current.candidates(query).stream()
+                .map(current.entries::get)
+                .filter(Objects::nonNull)
+                .filter(entry -> createdById == null || createdById.equals(entry.getCreatedById()))
+                .map(entry -> new Match(entry, entry.score(query)))
+                .filter(match -> match.score >= 0)
+                .sorted(Comparator.comparingInt((Match match) -> match.score)
+                        .thenComparing(match -> match.entry.getId(), Comparator.reverseOrder()))
+                .limit(Math.min(Math.max(limit, 1), MAX_LIMIT))
+                .map(match -> match.entry.toResponse())
+                .collect(Collectors.toList());
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 在当前索引上执行增量更新；全量重建进行中时同时记录下来，供新索引切换前重放
+     */
+    private synchronized void apply(Consumer<SearchIndex> update) {
+        update.accept(index);
+        if (pendingUpdates != null) {
+            pendingUpdates.add(update);
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 统一为小写并去除空白
+     */
+    private static String normalize(String text) {
+        if (!StringUtils.hasText(text)) {
+            return "";
+        }
+        return StringUtils.trimAllWhitespace(text).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 取拼音首字母：字母数字原样保留，GB2312 一级汉字按区位码换算首字母，其余字符忽略
+     */
+    private static String pinyinInitials(String text) {
+        if (!StringUtils.hasText(text)) {
+            return "";
+        }
+        StringBuilder initials = new StringBuilder();
+        for (char ch : text.toCharArray()) {
+            if (ch < 0x80) {
+                if (Character.isLetterOrDigit(ch)) {
+                    initials.append(Character.toLowerCase(ch));
+                }
+                continue;
+            }
+            byte[] bytes = String.valueOf(ch).getBytes(GB2312);
+            if (bytes.length != 2) {
+                continue;
+            }
+            int code = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+            for (int i = GB2312_INITIALS.length - 1; i >= 0; i--) {
+                if (code >= GB2312_INITIAL_BOUNDARIES[i]) {
+                    if (code < GB2312_INITIAL_BOUNDARIES[GB2312_INITIAL_BOUNDARIES.length - 1]) {
+                        initials.append(GB2312_INITIALS[i]);
+                    }
+                    break;
+                }
+            }
+        }
+        return initials.toString();
+    }
+
+    /**
+     * 倒排索引：单字和双字片段 -> 客户ID
+     * 查询时取关键词各双字片段（单字关键词取单字）对应集合的交集，再逐条校验
+     */
+    private static final class SearchIndex {
+
+        private final Map<Long, IndexEntry> entries = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+        void put(IndexEntry entry) {
+            remove(entry.getId());
+            entries.put(entry.getId(), entry);
+            for (String gram : entry.grams()) {
+                postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(entry.getId());
+            }
+        }
+
+        void remove(Long customerId) {
+            IndexEntry existing = entries.remove(customerId);
+            if (existing == null) {
+                return;
+            }
+            for (String gram : existing.grams()) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(customerId);
+                    if (ids.isEmpty()) {
+                        postings.remove(gram, ids);
+                    }
+                }
+            }
+        }
+
+        Set<Long> candidates(String query) {
+            List<Set<Long>> sets = new ArrayList<>();
+            for (String gram : queryGrams(query)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return Collections.emptySet();
+                }
+                sets.add(ids);
+            }
+            sets.sort(Comparator.comparingInt(Set::size));
+            Set<Long> result = new HashSet<>(sets.get(0));
+            for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+                result.retainAll(sets.get(i));
+            }
+            return result;
+        }
+
+        private static Set<String> queryGrams(String query) {
+            if (query.length() == 1) {
+                return Collections.singleton(query);
+            }
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + 2 <= query.length(); i++) {
+                grams.add(query.substring(i, i + 2));
+            }
+            return grams;
+        }
+    }
+
+    /**
+     * 单个客户的索引条目（不可变）
+     */
+    @Getter
+    private static final class IndexEntry {
+
+        private final Long id;
+        private final String name;
+        private final String position;
+        private final Long departmentId;
+        private final String departmentName;
+        private final Long schoolId;
+        private final String schoolName;
+        private final Long createdById;
+
+        private final String nameKey;
+        private final String nameInitials;
+        private final String schoolInitials;
+        private final List<String> otherKeys;
+
+        private IndexEntry(Long id, String name, String position, Long departmentId, String departmentName,
+                           Long schoolId, String schoolName, Long createdById) {
+            this.id = id;
+            this.name = name;
+            this.position = position;
+            this.departmentId = departmentId;
+            this.departmentName = departmentName;
+            this.schoolId = schoolId;
+            this.schoolName = schoolName;
+            this.createdById = createdById;
+            this.nameKey = normalize(name);
+            this.nameInitials = pinyinInitials(name);
+            this.schoolInitials = pinyinInitials(schoolName);
+            this.otherKeys = Arrays.asList(normalize(position), normalize(departmentName), normalize(schoolName));
+        }
+
+        static IndexEntry of(Customer customer) {
+            Department department = customer.getDepartment();
+            School school = customer.getSchool() != null ? customer.getSchool() :
+                    department != null ? department.getSchool() : null;
+            return new IndexEntry(customer.getId(), customer.getName(), customer.getPosition(),
+                    department != null ? department.getId() : null,
+                    department != null ? department.getName() : null,
+                    school != null ? school.getId() : null,
+                    school != null ? school.getName() : null,
+                    customer.getCreatedBy() != null ? customer.getCreatedBy().getId() : null);
+        }
+
+        IndexEntry withSchoolName(String newSchoolName) {
+            return new IndexEntry(id, name, position, departmentId, departmentName, schoolId, newSchoolName, createdById);
+        }
+
+        /**
+         * 条目的全部单字、双字片段，片段不跨字段
+         */
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            addGrams(grams, nameKey);
+            addGrams(grams, nameInitials);
+            addGrams(grams, schoolInitials);
+            otherKeys.forEach(key -> addGrams(grams, key));
+            return grams;
+        }
+
+        /**
+         * 匹配得分，越小越靠前；不匹配返回 -1
+         */
+        int score(String query) {
+            if (nameKey.equals(query)) {
+                return 0;
+            }
+            if (nameKey.startsWith(query)) {
+                return 1;
+            }
+            if (nameInitials.startsWith(query)) {
+                return 2;
+            }
+            if (nameKey.contains(query)) {
+                return 3;
+            }
+            if (schoolInitials.startsWith(query)) {
+                return 4;
+            }
+            for (String key : otherKeys) {
+                if (key.contains(query)) {
+                    return 5;
+                }
+            }
+            if (nameInitials.contains(query) || schoolInitials.contains(query)) {
+                return 6;
+            }
+            return -1;
+        }
+
+        CustomerSuggestionResponse toResponse() {
+            return CustomerSuggestionResponse.builder()
+                    .id(id)
+                    .name(name)
+                    .position(position)
+                    .departmentId(departmentId)
+                    .departmentName(departmentName)
+                    .schoolId(schoolId)
+                    .schoolName(schoolName)
+                    .build();
+        }
+
+        private static void addGrams(Set<String> grams, String key) {
+            for (int i = 0; i < key.length(); i++) {
+                grams.add(key.substring(i, i + 1));
+                if (i + 2 <= key.length()) {
+                    grams.add(key.substring(i, i + 2));
+                }
+            }
+        }
+    }
+
+    /**
+     * 候选条目及其得分
+     */
+    private static final class Match {
+
+        private final IndexEntry entry;
+        private final int score;
+
+        private Match(IndexEntry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
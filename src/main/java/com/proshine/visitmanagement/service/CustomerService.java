@@ -1,7 +1,9 @@
 package com.proshine.visitmanagement.service;
 
+import com.proshine.visitmanagement.config.CacheConfig;
 import com.proshine.visitmanagement.dto.request.CustomerRequest;
 import com.proshine.visitmanagement.dto.response.CustomerResponse;
+import com.proshine.visitmanagement.dto.response.CustomerSuggestionResponse;
 import com.proshine.visitmanagement.dto.response.PageResponse;
 import com.proshine.visitmanagement.entity.Customer;
 import com.proshine.visitmanagement.entity.Department;
@@ -13,22 +15,37 @@ import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.CustomerRepository;
 import com.proshine.visitmanagement.repository.DepartmentRepository;
 import com.proshine.visitmanagement.repository.SchoolRepository;
-import com.proshine.visitmanagement.repository.UserRepository;
 import com.proshine.visitmanagement.repository.VisitRecordRepository;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.util.BatchUtils;
+import com.proshine.visitmanagement.util.ExcelUtils;
+import com.proshine.visitmanagement.util.ValidationUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 客户服务类
@@ -42,11 +59,61 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class CustomerService {
 
+    /**
+     * 导入时每批写入的客户数，写入后清空持久化上下文
+     */
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    /**
+     * 导入结果中最多返回的错误行数
+     */
+    private static final int IMPORT_MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * 导入表头（去掉必填标记和括号说明后）与字段的对应关系，同时兼容客户导出文件的表头
+     */
+    private static final Map<String, String> IMPORT_HEADERS = new HashMap<>();
+
+    /**
+     * 导入时可识别的生日格式
+     */
+    private static final List<DateTimeFormatter> IMPORT_DATE_FORMATS = Arrays.asList(
+            DateTimeFormatter.ofPattern("yyyy-M-d"),
+            DateTimeFormatter.ofPattern("yyyy/M/d"),
+            DateTimeFormatter.ofPattern("yyyy.M.d"),
+            DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    static {
+        IMPORT_HEADERS.put("客户姓名", "name");
+        IMPORT_HEADERS.put("职位", "position");
+        IMPORT_HEADERS.put("职称", "title");
+        IMPORT_HEADERS.put("学校名称", "schoolName");
+        IMPORT_HEADERS.put("院系名称", "departmentName");
+        IMPORT_HEADERS.put("手机号", "phone");
+        IMPORT_HEADERS.put("电话", "phone");
+        IMPORT_HEADERS.put("微信号", "wechat");
+        IMPORT_HEADERS.put("邮箱", "email");
+        IMPORT_HEADERS.put("办公地点", "officeLocation");
+        IMPORT_HEADERS.put("楼层房间", "floorRoom");
+        IMPORT_HEADERS.put("研究方向", "researchDirection");
+        IMPORT_HEADERS.put("影响力等级", "influenceLevel");
+        IMPORT_HEADERS.put("决策权力", "decisionPower");
+        IMPORT_HEADERS.put("生日", "birthday");
+        IMPORT_HEADERS.put("备注", "notes");
+    }
+
     private final CustomerRepository customerRepository;
     private final DepartmentRepository departmentRepository;
     private final SchoolRepository schoolRepository;
-    private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
     private final VisitRecordRepository visitRecordRepository;
+    private final VisitDailyStatService visitDailyStatService;
+    private final RealtimeDashboardService realtimeDashboardService;
+    private final CustomerSearchService customerSearchService;
+    private final CustomerDuplicateService customerDuplicateService;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final ExportService exportService;
 
     // ==================== Controller调用的核心方法 ====================
 
@@ -120,6 +187,7 @@ public class CustomerService {
      * 创建客户
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public CustomerResponse createCustomer(CustomerRequest request, Authentication authentication) {
         log.info("创建客户: name={}", request.getName());
 
@@ -175,6 +243,8 @@ public class CustomerService {
         customer.setUpdatedBy(currentUser);
 
         Customer savedCustomer = customerRepository.save(customer);
+        realtimeDashboardService.onCustomerCreated(savedCustomer);
+        customerSearchService.onCustomerSaved(savedCustomer);
         log.info("创建客户成功: {}", savedCustomer.getName());
 
         return convertToResponse(savedCustomer);
@@ -184,6 +254,7 @@ public class CustomerService {
      * 更新客户
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public CustomerResponse updateCustomer(Long id, CustomerRequest request, Authentication authentication) {
         log.info("更新客户: id={}, name={}", id, request.getName());
 
@@ -225,6 +296,8 @@ public class CustomerService {
             });
         }
 
+        boolean nameChanged = !Objects.equals(customer.getName(), request.getName());
+
         customer.setName(request.getName());
         customer.setPosition(request.getPosition());
         customer.setTitle(request.getTitle());
@@ -249,6 +322,12 @@ public class CustomerService {
         Customer savedCustomer = customerRepository.save(customer);
         log.info("更新客户成功: {}", savedCustomer.getName());
 
+        // 客户姓名是拜访记录检索文本的一部分
+        if (nameChanged) {
+            visitRecordRepository.refreshSearchTextByCustomerId(savedCustomer.getId());
+        }
+        customerSearchService.onCustomerSaved(savedCustomer);
+
         return convertToResponse(savedCustomer);
     }
 
@@ -256,6 +335,7 @@ public class CustomerService {
      * 删除客户
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public void deleteCustomer(Long id, Authentication authentication) {
         log.info("删除客户: id={}", id);
 
@@ -272,6 +352,9 @@ public class CustomerService {
         }
 
         customerRepository.delete(customer);
+        realtimeDashboardService.onCustomerDeleted(customer);
+        customerSearchService.onCustomerDeleted(customer.getId());
+        customerDuplicateService.onCustomersDeleted(Collections.singletonList(customer.getId()));
         log.info("删除客户成功: {}", customer.getName());
     }
 
@@ -279,6 +362,7 @@ public class CustomerService {
      * 批量删除客户
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public int batchDeleteCustomers(List<Long> ids, Authentication authentication) {
         log.info("批量删除客户: ids={}", ids);
 
@@ -287,54 +371,87 @@ public class CustomerService {
             throw new BusinessException("只有管理员和经理才能批量删除客户");
         }
 
-        List<Customer> customers = customerRepository.findAllById(ids);
+        List<List<Long>> idChunks = BatchUtils.chunkIds(ids);
+        List<Customer> customers = new ArrayList<>();
+        for (List<Long> chunk : idChunks) {
+            customers.addAll(customerRepository.findAllById(chunk));
+        }
         if (customers.isEmpty()) {
             throw new BusinessException("未找到要删除的客户");
         }
 
-        // 检查是否有关联的拜访记录
+        // 检查是否有关联的拜访记录，每个分块一次分组统计
+        Map<Long, Long> visitCounts = new HashMap<>();
+        for (List<Long> chunk : idChunks) {
+            for (Object[] row : visitRecordRepository.countGroupByCustomerIdIn(chunk)) {
+                visitCounts.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+        }
         for (Customer customer : customers) {
-            long visitCount = visitRecordRepository.countByCustomerId(customer.getId());
+            long visitCount = visitCounts.getOrDefault(customer.getId(), 0L);
             if (visitCount > 0) {
                 throw new BusinessException("客户 " + customer.getName() + " 存在 " + visitCount + " 条拜访记录，无法删除");
             }
         }
 
-        customerRepository.deleteAll(customers);
-        log.info("批量删除客户成功，数量: {}", customers.size());
+        int deletedCount = 0;
+        for (List<Long> chunk : idChunks) {
+            deletedCount += customerRepository.softDeleteByIdIn(chunk);
+        }
+        customers.forEach(realtimeDashboardService::onCustomerDeleted);
+        customers.forEach(customer -> customerSearchService.onCustomerDeleted(customer.getId()));
+        customerDuplicateService.onCustomersDeleted(
+                customers.stream().map(Customer::getId).collect(Collectors.toList()));
+        log.info("批量删除客户成功，数量: {}", deletedCount);
 
-        return customers.size();
+        return deletedCount;
     }
 
     /**
-     * 获取客户列表用于导出
+     * 导出客户列表到输出流（供同步下载和异步导出任务使用）
+     * 客户及拜访统计由一条流式查询逐行读出并写入，内存占用与客户数无关
+     *
+     * @param format 导出格式（excel / csv）
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @param outputStream 输出流
+     * @param progress 导出任务进度，同步下载时为 null
+     * @param authentication 认证信息
+     * @return 导出记录数
      */
-    public List<CustomerResponse> getCustomersForExport(String keyword, Long departmentId, Long schoolId,
-                                                        String schoolCity, String influenceLevel, String decisionPower,
-                                                        Boolean hasWechat, Authentication authentication) {
+    public long exportCustomers(String keyword, Long departmentId, Long schoolId, String schoolCity,
+                                String influenceLevel, String decisionPower, Boolean hasWechat, String format,
+                                boolean gzip, OutputStream outputStream,
+                                ExportJobService.ExportProgress progress, Authentication authentication) {
         log.info("导出客户列表: keyword={}, departmentId={}, schoolId={}", keyword, departmentId, schoolId);
 
         // 转换枚举参数
         Customer.InfluenceLevel influenceLevelEnum = parseInfluenceLevel(influenceLevel);
         Customer.DecisionPower decisionPowerEnum = parseDecisionPower(decisionPower);
 
-        // 根据用户权限获取客户列表
+        // 根据用户权限确定导出范围
         User currentUser = getCurrentUser(authentication);
-        List<Customer> customers;
-
-        if (isAdminOrManager(currentUser)) {
-            customers = customerRepository.findCustomersForExport(
-                    keyword, departmentId, schoolId, schoolCity,
-                    influenceLevelEnum, decisionPowerEnum, hasWechat);
-        } else {
-            customers = customerRepository.findCustomersForExportByCreatedBy(
-                    keyword, departmentId, schoolId, schoolCity,
-                    influenceLevelEnum, decisionPowerEnum, hasWechat, currentUser.getId());
+        if (progress != null) {
+            // 先统计总行数再打开流，任务进度才能按比例显示
+            progress.setTotalRows(customerRepository.countCustomersForExport(
+                    keyword, departmentId, schoolId, schoolCity, influenceLevelEnum, decisionPowerEnum, hasWechat,
+                    isAdminOrManager(currentUser) ? null : currentUser.getId()));
+        }
+        Stream<CustomerResponse> customers = isAdminOrManager(currentUser)
+                ? customerRepository.streamCustomersForExport(
+                        keyword, departmentId, schoolId, schoolCity,
+                        influenceLevelEnum, decisionPowerEnum, hasWechat)
+                : customerRepository.streamCustomersForExportByCreatedBy(
+                        keyword, departmentId, schoolId, schoolCity,
+                        influenceLevelEnum, decisionPowerEnum, hasWechat, currentUser.getId());
+
+        try (Stream<CustomerResponse> rows = customers) {
+            long count = exportService.export(ExportService.withProgress(rows, progress),
+                    ExportService.CUSTOMER_COLUMNS, "客户信息", format, gzip, outputStream);
+            if (progress != null) {
+                progress.setProcessedRows(count);
+            }
+            return count;
         }
-
-        return customers.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
     }
 
     /**
@@ -374,8 +491,10 @@ public class CustomerService {
 
     /**
      * 从Excel导入客户
+     * 不在外层事务中执行，每批在独立事务中提交，后面批次失败不会回滚已提交的批次
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public Object importCustomersFromExcel(MultipartFile file, Authentication authentication) {
         log.info("开始导入客户: fileName={}", file.getOriginalFilename());
 
@@ -384,43 +503,63 @@ public class CustomerService {
             throw new BusinessException("只有管理员和经理才能批量导入客户");
         }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("successCount", 0);
-        result.put("failCount", 0);
-        result.put("errors", Arrays.asList("Excel导入功能需要完整实现"));
-        result.put("totalCount", 0);
-        result.put("message", "Excel导入功能需要使用POI库具体实现");
+        CustomerImport customerImport = new CustomerImport(currentUser);
+        ExcelUtils.readXlsxRows(file, customerImport::acceptRow);
+        customerImport.flush();
 
+        Map<String, Object> result = customerImport.toResult();
+        log.info("客户导入完成: fileName={}, {}", file.getOriginalFilename(), result.get("message"));
         return result;
     }
 
     /**
-     * 客户合并
+     * 客户合并：把多个重复的源客户并入同一个目标客户
+     * 拜访记录和日汇总都用集合语句整体转移，不再逐条加载保存
+     *
+     * @param sourceIds 源客户ID列表
+     * @param targetId 目标客户ID
+     * @param authentication 认证信息
+     * @return 转移的拜访记录数
      */
     @Transactional
-    public void mergeCustomers(Long sourceId, Long targetId, Authentication authentication) {
-        log.info("合并客户: sourceId={}, targetId={}", sourceId, targetId);
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
+    public int mergeCustomers(List<Long> sourceIds, Long targetId, Authentication authentication) {
+        log.info("合并客户: sourceIds={}, targetId={}", sourceIds, targetId);
 
         User currentUser = getCurrentUser(authentication);
         if (!isAdminOrManager(currentUser)) {
             throw new BusinessException("只有管理员和经理才能合并客户");
         }
 
-        Customer sourceCustomer = customerRepository.findById(sourceId)
-                .orElseThrow(() -> new ResourceNotFoundException("源客户不存在"));
+        Set<Long> distinctSourceIds = new LinkedHashSet<>(sourceIds);
+        distinctSourceIds.remove(null);
+        if (distinctSourceIds.isEmpty()) {
+            throw new BusinessException("源客户ID列表不能为空");
+        }
+        if (distinctSourceIds.contains(targetId)) {
+            throw new BusinessException("源客户和目标客户不能相同");
+        }
+
         Customer targetCustomer = customerRepository.findById(targetId)
                 .orElseThrow(() -> new ResourceNotFoundException("目标客户不存在"));
-
-        // 将源客户的拜访记录转移到目标客户
-        List<VisitRecord> sourceVisitRecords = visitRecordRepository.findByCustomerIdOrderByVisitDateDesc(sourceId);
-        for (VisitRecord record : sourceVisitRecords) {
-            record.setCustomer(targetCustomer);
-            visitRecordRepository.save(record);
+        List<Customer> sourceCustomers = customerRepository.findAllById(distinctSourceIds);
+        if (sourceCustomers.size() != distinctSourceIds.size()) {
+            throw new ResourceNotFoundException("源客户不存在");
         }
 
-        // 删除源客户
-        customerRepository.delete(sourceCustomer);
-        log.info("客户合并成功: {} -> {}", sourceCustomer.getName(), targetCustomer.getName());
+        // 将源客户的拜访记录和日汇总整体转移到目标客户，再删除源客户
+        int movedCount = visitRecordRepository.reassignCustomer(distinctSourceIds, targetId);
+        visitDailyStatService.onCustomersMerged(distinctSourceIds, targetId);
+        customerRepository.softDeleteByIdIn(distinctSourceIds);
+
+        sourceCustomers.forEach(realtimeDashboardService::onCustomerDeleted);
+        sourceCustomers.forEach(customer -> customerSearchService.onCustomerDeleted(customer.getId()));
+        customerDuplicateService.onCustomersDeleted(distinctSourceIds);
+        log.info("客户合并成功: {} -> {}, 转移拜访记录数: {}",
+                sourceCustomers.stream().map(Customer::getName).collect(Collectors.toList()),
+                targetCustomer.getName(), movedCount);
+
+        return movedCount;
     }
 
     // ==================== 业务辅助方法 ====================
@@ -457,17 +596,10 @@ public class CustomerService {
     }
 
     /**
-     * 搜索客户
+     * 搜索客户（联想输入），走内存索引不访问数据库
      */
-    public List<CustomerResponse> searchCustomers(String keyword) {
-        if (!StringUtils.hasText(keyword)) {
-            return new ArrayList<>();
-        }
-
-        List<Customer> customers = customerRepository.findByNameContaining(keyword);
-        return customers.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    public List<CustomerSuggestionResponse> searchCustomers(String keyword, int limit, Authentication authentication) {
+        return customerSearchService.suggest(keyword, limit, authentication);
     }
 
     /**
@@ -500,9 +632,7 @@ public class CustomerService {
      * 获取当前用户
      */
     private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        return userDetailsService.getCurrentUser(authentication);
     }
 
     /**
@@ -768,4 +898,325 @@ public class CustomerService {
         return visitRecords.get(0).getIntentLevel() != null ?
                 visitRecords.get(0).getIntentLevel().name() : null;
     }
-}
\ No newline at end of file
+
+    // ==================== 批量导入 ====================
+
+    /**
+     * 一次Excel导入的处理状态
+     * 学校、院系预加载为按名称查找的映射表；校验通过的行攒满一批后在独立事务中写入并清空持久化上下文，
+     * 整批写入失败时逐行重试，只把失败的行记入错误；跨批只保留错误信息和文件内邮箱去重集合
+     */
+    private class CustomerImport {
+
+        private final User currentUser;
+        private final TransactionTemplate batchTransaction;
+        private final Map<String, School> schoolsByName = new HashMap<>();
+        private final Map<String, Department> departmentsByKey = new HashMap<>();
+        private final Set<String> fileEmails = new HashSet<>();
+        private final Map<Integer, Customer> batch = new LinkedHashMap<>();
+        private final TreeMap<Integer, String> errors = new TreeMap<>();
+        private Map<String, Integer> columns;
+        private int totalCount;
+        private int successCount;
+        private int failCount;
+
+        CustomerImport(User currentUser) {
+            this.currentUser = currentUser;
+            this.batchTransaction = new TransactionTemplate(transactionManager);
+            this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            schoolRepository.findAll().forEach(school ->
+                    schoolsByName.putIfAbsent(school.getName().trim(), school));
+            departmentRepository.findAll().forEach(department ->
+                    departmentsByKey.putIfAbsent(departmentKey(department.getSchoolId(), department.getName()), department));
+        }
+
+        /**
+         * 处理一行，第一行非空行作为表头
+         */
+        void acceptRow(int rowIndex, List<String> cells) {
+            if (columns == null) {
+                columns = resolveColumns(cells);
+                return;
+            }
+
+            totalCount++;
+            int rowNumber = rowIndex + 1;
+            List<String> messages = new ArrayList<>();
+
+            String name = cell(cells, "name");
+            if (name == null) {
+                messages.add("客户姓名不能为空");
+            }
+            checkLength(messages, "客户姓名", name, 100);
+
+            School school = null;
+            String schoolName = cell(cells, "schoolName");
+            if (schoolName == null) {
+                messages.add("学校名称不能为空");
+            } else {
+                school = schoolsByName.get(schoolName);
+                if (school == null) {
+                    messages.add("学校不存在: " + schoolName);
+                }
+            }
+
+            Department department = null;
+            String departmentName = cell(cells, "departmentName");
+            if (departmentName == null) {
+                messages.add("院系名称不能为空");
+            } else if (school != null) {
+                department = departmentsByKey.get(departmentKey(school.getId(), departmentName));
+                if (department == null) {
+                    messages.add("院系不存在或不属于该学校: " + departmentName);
+                }
+            }
+
+            String position = cell(cells, "position");
+            String title = cell(cells, "title");
+            String phone = cell(cells, "phone");
+            String wechat = cell(cells, "wechat");
+            String officeLocation = cell(cells, "officeLocation");
+            String floorRoom = cell(cells, "floorRoom");
+            checkLength(messages, "职位", position, 100);
+            checkLength(messages, "职称", title, 50);
+            checkLength(messages, "手机号", phone, 20);
+            checkLength(messages, "微信号", wechat, 100);
+            checkLength(messages, "办公地点", officeLocation, 200);
+            checkLength(messages, "楼层房间", floorRoom, 100);
+
+            String email = cell(cells, "email");
+            if (email != null) {
+                if (!ValidationUtils.isValidEmail(email) || email.length() > 100) {
+                    messages.add("邮箱格式不正确: " + email);
+                } else if (fileEmails.contains(email.toLowerCase())) {
+                    messages.add("邮箱在文件中重复: " + email);
+                }
+            }
+
+            Customer.InfluenceLevel influenceLevel = Customer.InfluenceLevel.MEDIUM;
+            String influenceLevelValue = cell(cells, "influenceLevel");
+            if (influenceLevelValue != null) {
+                influenceLevel = parseImportEnum(Customer.InfluenceLevel.class, influenceLevelValue,
+                        Customer.InfluenceLevel::getDescription);
+                if (influenceLevel == null) {
+                    messages.add("影响力等级无效: " + influenceLevelValue);
+                }
+            }
+
+            Customer.DecisionPower decisionPower = Customer.DecisionPower.OTHER;
+            String decisionPowerValue = cell(cells, "decisionPower");
+            if (decisionPowerValue != null) {
+                decisionPower = parseImportEnum(Customer.DecisionPower.class, decisionPowerValue,
+                        Customer.DecisionPower::getDescription);
+                if (decisionPower == null) {
+                    messages.add("决策权力无效: " + decisionPowerValue);
+                }
+            }
+
+            LocalDate birthday = null;
+            String birthdayValue = cell(cells, "birthday");
+            if (birthdayValue != null) {
+                birthday = parseImportDate(birthdayValue);
+                if (birthday == null) {
+                    messages.add("生日格式不正确: " + birthdayValue);
+                }
+            }
+
+            if (!messages.isEmpty()) {
+                reject(rowNumber, String.join("；", messages));
+                return;
+            }
+
+            Customer customer = new Customer();
+            customer.setName(name);
+            customer.setPosition(position);
+            customer.setTitle(title);
+            customer.setSchool(school);
+            customer.setDepartment(department);
+            customer.setPhone(phone);
+            customer.setWechat(wechat);
+            customer.setEmail(email);
+            customer.setOfficeLocation(officeLocation);
+            customer.setFloorRoom(floorRoom);
+            customer.setResearchDirection(cell(cells, "researchDirection"));
+            customer.setInfluenceLevel(influenceLevel);
+            customer.setDecisionPower(decisionPower);
+            customer.setBirthday(birthday);
+            customer.setNotes(cell(cells, "notes"));
+            customer.setCreatedBy(currentUser);
+            customer.setUpdatedBy(currentUser);
+
+            if (email != null) {
+                fileEmails.add(email.toLowerCase());
+            }
+            batch.put(rowNumber, customer);
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * 写入当前批次：先用一次IN查询剔除邮箱已被占用的行，再在独立事务中批量保存；
+         * 整批失败（如并发导入占用了同一邮箱）时逐行重试，失败的行记为错误
+         */
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            Set<String> emails = batch.values().stream()
+                    .map(Customer::getEmail)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            if (!emails.isEmpty()) {
+                Set<String> existingEmails = customerRepository.findExistingEmails(emails).stream()
+                        .map(String::toLowerCase)
+                        .collect(Collectors.toSet());
+                batch.entrySet().removeIf(entry -> {
+                    String email = entry.getValue().getEmail();
+                    if (email != null && existingEmails.contains(email.toLowerCase())) {
+                        reject(entry.getKey(), "邮箱已存在: " + email);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+
+            Map<Integer, Customer> rows = new LinkedHashMap<>(batch);
+            batch.clear();
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            try {
+                save(new ArrayList<>(rows.values()));
+                successCount += rows.size();
+            } catch (RuntimeException e) {
+                log.warn("客户导入批次写入失败，逐行重试: {}", NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                rows.forEach((rowNumber, customer) -> {
+                    // 回滚前已分配的ID不再有效，重新分配
+                    customer.setId(null);
+                    try {
+                        save(Collections.singletonList(customer));
+                        successCount++;
+                    } catch (RuntimeException rowException) {
+                        reject(rowNumber, "写入失败: "
+                                + NestedExceptionUtils.getMostSpecificCause(rowException).getMessage());
+                    }
+                });
+            }
+        }
+
+        /**
+         * 在独立事务中保存并清空持久化上下文，提交后再更新实时计数和联想索引
+         */
+        private void save(List<Customer> customers) {
+            try {
+                batchTransaction.executeWithoutResult(status -> {
+                    customerRepository.saveAll(customers);
+                    customerRepository.flush();
+                    realtimeDashboardService.onCustomersCreated(customers);
+                    customerSearchService.onCustomersSaved(customers);
+                });
+            } finally {
+                entityManager.clear();
+            }
+        }
+
+        Map<String, Object> toResult() {
+            List<String> errorList = errors.entrySet().stream()
+                    .map(entry -> "第" + entry.getKey() + "行: " + entry.getValue())
+                    .collect(Collectors.toList());
+
+            String message = String.format("共%d行，成功%d行，失败%d行", totalCount, successCount, failCount);
+            if (failCount > errorList.size()) {
+                message += "，仅列出前" + errorList.size() + "条错误";
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("successCount", successCount);
+            result.put("failCount", failCount);
+            result.put("errors", errorList);
+            result.put("totalCount", totalCount);
+            result.put("message", message);
+            return result;
+        }
+
+        private Map<String, Integer> resolveColumns(List<String> headers) {
+            Map<String, Integer> resolved = new HashMap<>();
+            for (int i = 0; i < headers.size(); i++) {
+                String header = headers.get(i);
+                if (header == null) {
+                    continue;
+                }
+                String label = header.replace("*", "").split("[(（]")[0].trim();
+                String field = IMPORT_HEADERS.containsValue(label) ? label : IMPORT_HEADERS.get(label);
+                if (field != null) {
+                    resolved.putIfAbsent(field, i);
+                }
+            }
+
+            List<String> missing = new ArrayList<>();
+            if (!resolved.containsKey("name")) {
+                missing.add("客户姓名");
+            }
+            if (!resolved.containsKey("schoolName")) {
+                missing.add("学校名称");
+            }
+            if (!resolved.containsKey("departmentName")) {
+                missing.add("院系名称");
+            }
+            if (!missing.isEmpty()) {
+                throw new BusinessException("导入文件缺少必填列: " + String.join("、", missing));
+            }
+            return resolved;
+        }
+
+        private String cell(List<String> cells, String field) {
+            Integer column = columns.get(field);
+            return column != null && column < cells.size() ? cells.get(column) : null;
+        }
+
+        private void reject(int rowNumber, String message) {
+            failCount++;
+            errors.put(rowNumber, message);
+            if (errors.size() > IMPORT_MAX_REPORTED_ERRORS) {
+                errors.pollLastEntry();
+            }
+        }
+
+        private void checkLength(List<String> messages, String label, String value, int maxLength) {
+            if (value != null && value.length() > maxLength) {
+                messages.add(label + "长度不能超过" + maxLength + "个字符");
+            }
+        }
+    }
+
+    private static String departmentKey(Long schoolId, String departmentName) {
+        return schoolId + "|" + departmentName.trim();
+    }
+
+    /**
+     * 按枚举名（忽略大小写）或中文描述解析导入的枚举值
+     */
+    private static <E extends Enum<E>> E parseImportEnum(Class<E> type, String value, Function<E, String> description) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value) || description.apply(constant).equals(value)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate parseImportDate(String value) {
+        String date = value.split(" ")[0];
+        for (DateTimeFormatter formatter : IMPORT_DATE_FORMATS) {
+            try {
+                return LocalDate.parse(date, formatter);
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
+            }
+        }
+        return null;
+    }
+}
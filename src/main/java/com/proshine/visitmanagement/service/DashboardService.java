@@ -1,21 +1,37 @@
 package com.proshine.visitmanagement.service;
 
+import com.proshine.visitmanagement.config.CacheConfig;
 import com.proshine.visitmanagement.entity.Customer;
 import com.proshine.visitmanagement.entity.School;
 import com.proshine.visitmanagement.entity.User;
 import com.proshine.visitmanagement.entity.VisitRecord;
-import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.*;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -33,7 +49,24 @@ public class DashboardService {
     private final VisitRecordRepository visitRecordRepository;
     private final CustomerRepository customerRepository;
     private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
     private final SchoolRepository schoolRepository;
+    private final VisitDailyStatService visitDailyStatService;
+    private final RealtimeDashboardService realtimeDashboardService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Qualifier("dashboardTaskExecutor")
+    private final Executor dashboardTaskExecutor;
+
+    /**
+     * 概览中计数类部分的超时时间（毫秒）
+     */
+    private static final long COUNT_SECTION_TIMEOUT_MS = 2000;
+
+    /**
+     * 概览中趋势部分的超时时间（毫秒）
+     */
+    private static final long TREND_SECTION_TIMEOUT_MS = 3000;
 
     /**
      * 获取仪表盘概览数据
@@ -41,30 +74,50 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 概览数据
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error') || #result.containsKey('partial')")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> getDashboardOverview(Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
         Map<String, Object> overview = new HashMap<>();
+        long startTime = System.nanoTime();
+
+        // 各部分相互独立，在仪表盘线程池中并发查询
+        Map<String, CompletableFuture<Map<String, Object>>> sections = new LinkedHashMap<>();
+        // 基础统计数据
+        sections.put("basicStats", submitSection(COUNT_SECTION_TIMEOUT_MS, () -> getBasicStatistics(currentUser)));
+        // 今日数据
+        sections.put("todayStats", submitSection(COUNT_SECTION_TIMEOUT_MS, () -> getTodayStatistics(currentUser)));
+        // 本月数据
+        sections.put("monthStats", submitSection(COUNT_SECTION_TIMEOUT_MS, () -> getMonthStatistics(currentUser)));
+        // 趋势数据
+        sections.put("trendData", submitSection(TREND_SECTION_TIMEOUT_MS, () -> getRecentTrend(currentUser)));
+
+        // 每个部分按各自的超时时间等待，超时或失败的部分不影响其他部分返回
+        List<String> failedSections = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Map<String, Object>>> section : sections.entrySet()) {
+            long timeoutMs = "trendData".equals(section.getKey()) ? TREND_SECTION_TIMEOUT_MS : COUNT_SECTION_TIMEOUT_MS;
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - startTime);
+            try {
+                overview.put(section.getKey(), section.getValue().get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                section.getValue().cancel(true);
+                log.warn("获取仪表盘概览数据超时: section={}, timeout={}ms", section.getKey(), timeoutMs);
+                failedSections.add(section.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedSections.add(section.getKey());
+            } catch (ExecutionException e) {
+                log.error("获取仪表盘概览数据失败: section={}", section.getKey(), e.getCause());
+                failedSections.add(section.getKey());
+            }
+        }
 
-        try {
-            // 基础统计数据
-            Map<String, Object> basicStats = getBasicStatistics(currentUser);
-            overview.put("basicStats", basicStats);
-
-            // 今日数据
-            Map<String, Object> todayStats = getTodayStatistics(currentUser);
-            overview.put("todayStats", todayStats);
-
-            // 本月数据
-            Map<String, Object> monthStats = getMonthStatistics(currentUser);
-            overview.put("monthStats", monthStats);
-
-            // 趋势数据
-            Map<String, Object> trendData = getRecentTrend(currentUser);
-            overview.put("trendData", trendData);
-
-        } catch (Exception e) {
-            log.error("获取仪表盘概览数据失败", e);
+        if (failedSections.size() == sections.size()) {
             overview.put("error", "获取数据失败");
+        } else if (!failedSections.isEmpty()) {
+            overview.put("partial", true);
+            overview.put("failedSections", failedSections);
         }
 
         return overview;
@@ -80,6 +133,8 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 拜访统计数据
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error')")
     public Map<String, Object> getVisitStatistics(String period, LocalDate startDate, LocalDate endDate,
                                                   Long salesId, Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
@@ -123,6 +178,8 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 销售业绩统计
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error')")
     public Map<String, Object> getSalesPerformance(String period, Integer year, Integer month,
                                                    Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
@@ -163,6 +220,8 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 客户分析数据
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error')")
     public Map<String, Object> getCustomerAnalysis(String dimension, Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
         Map<String, Object> analysis = new HashMap<>();
@@ -242,6 +301,8 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 排行榜数据
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error')")
     public Map<String, Object> getRankings(String type, String period, Integer limit, Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
         Map<String, Object> rankings = new HashMap<>();
@@ -279,6 +340,8 @@ public class DashboardService {
      * @param authentication 认证信息
      * @return 地理分布数据
      */
+    @Cacheable(cacheNames = CacheConfig.DASHBOARD_CACHE, keyGenerator = CacheConfig.DASHBOARD_KEY_GENERATOR,
+               unless = "#result == null || #result.containsKey('error')")
     public Map<String, Object> getGeographicDistribution(String level, Authentication authentication) {
         User currentUser = getCurrentUser(authentication);
         Map<String, Object> distribution = new HashMap<>();
@@ -313,18 +376,9 @@ public class DashboardService {
         Map<String, Object> realtimeData = new HashMap<>();
 
         try {
-            // 当前在线用户数
-            realtimeData.put("onlineUsers", getCurrentOnlineUsers());
-
-            // 今日拜访数
+            // 在线用户数、今日拜访数、今日新增客户数均来自内存中的实时计数
             User currentUser = getCurrentUser(authentication);
-            realtimeData.put("todayVisits", getTodayVisitCount(currentUser));
-
-            // 今日新增客户数
-            realtimeData.put("todayNewCustomers", getTodayNewCustomerCount(currentUser));
-
-            // 系统状态
-            realtimeData.put("systemStatus", "正常");
+            realtimeData.putAll(realtimeDashboardService.getSnapshot(currentUser));
 
         } catch (Exception e) {
             log.error("获取实时数据失败", e);
@@ -334,6 +388,16 @@ public class DashboardService {
         return realtimeData;
     }
 
+    /**
+     * 订阅实时数据推送
+     *
+     * @param authentication 认证信息
+     * @return SSE发射器
+     */
+    public SseEmitter subscribeRealtimeData(Authentication authentication) {
+        return realtimeDashboardService.subscribe(getCurrentUser(authentication));
+    }
+
     /**
      * 获取个性化推荐
      *
@@ -370,14 +434,9 @@ public class DashboardService {
      *
      * @param authentication 认证信息
      */
-    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public void refreshCache(Authentication authentication) {
-        try {
-            log.info("刷新仪表盘缓存");
-            // 这里可以添加具体的缓存刷新逻辑
-        } catch (Exception e) {
-            log.error("刷新缓存失败", e);
-        }
+        log.info("刷新仪表盘缓存: 操作人={}", authentication.getName());
     }
 
     // ==================== 私有方法 ====================
@@ -386,9 +445,31 @@ public class DashboardService {
      * 获取当前用户
      */
     private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
+        return userDetailsService.getCurrentUser(authentication);
+    }
+
+    /**
+     * 在仪表盘线程池中执行概览的一个部分
+     * 每个部分在独立的只读事务中执行，事务超时会以 javax.persistence.query.timeout 提示下发到其中的每条查询，
+     * 超时的部分由数据库中止查询并归还连接；线程池排满时该部分直接记为失败，不退回请求线程执行
+     *
+     * @param timeoutMs 该部分的超时时间（毫秒）
+     * @param section 查询逻辑
+     * @return 查询结果
+     */
+    private CompletableFuture<Map<String, Object>> submitSection(long timeoutMs, Supplier<Map<String, Object>> section) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout((int) TimeUnit.MILLISECONDS.toSeconds(timeoutMs + 999));
+        try {
+            return CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> section.get()),
+                    dashboardTaskExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("仪表盘查询线程池已满，跳过该部分");
+            CompletableFuture<Map<String, Object>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
     }
 
     /**
@@ -419,13 +500,10 @@ public class DashboardService {
         LocalDate today = LocalDate.now();
 
         if (currentUser.getRole() == User.UserRole.SALES) {
-            // 使用正确的Repository方法
-            List<VisitRecord> todayVisits = visitRecordRepository.findBySalesIdAndVisitDate(currentUser.getId(), today);
-            stats.put("todayVisits", todayVisits.size());
+            stats.put("todayVisits", visitDailyStatService.getVisitCount(currentUser.getId(), today, today));
             stats.put("todayNewCustomers", customerRepository.countBySalesIdAndCreatedAtAfter(currentUser.getId(), today.atStartOfDay()));
         } else {
-            List<VisitRecord> todayVisits = visitRecordRepository.findByVisitDate(today);
-            stats.put("todayVisits", todayVisits.size());
+            stats.put("todayVisits", visitDailyStatService.getVisitCount(null, today, today));
             stats.put("todayNewCustomers", customerRepository.countByCreatedAtAfter(today.atStartOfDay()));
         }
 
@@ -530,13 +608,12 @@ public class DashboardService {
     private Map<String, Object> getVisitStatsByDateRange(Long salesId, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> stats = new HashMap<>();
 
-        List<VisitRecord> visits = (salesId != null) ?
-                visitRecordRepository.findBySalesIdAndVisitDateBetweenOrderByVisitDateDesc(salesId, startDate, endDate) :
-                visitRecordRepository.findByVisitDateBetween(startDate, endDate);
+        VisitDailyStatService.StatusIntentCounts counts =
+                visitDailyStatService.getStatusIntentCounts(salesId, startDate, endDate);
 
-        stats.put("totalVisits", visits.size());
-        stats.put("completedVisits", visits.stream().filter(v -> v.getStatus() == VisitRecord.VisitStatus.COMPLETED).count());
-        stats.put("scheduledVisits", visits.stream().filter(v -> v.getStatus() == VisitRecord.VisitStatus.SCHEDULED).count());
+        stats.put("totalVisits", counts.getTotal());
+        stats.put("completedVisits", counts.getStatusCount(VisitRecord.VisitStatus.COMPLETED));
+        stats.put("scheduledVisits", counts.getStatusCount(VisitRecord.VisitStatus.SCHEDULED));
 
         return stats;
     }
@@ -545,16 +622,8 @@ public class DashboardService {
      * 获取指定日期范围的拜访趋势
      */
     private List<Map<String, Object>> getVisitTrendByDateRange(Long salesId, LocalDate startDate, LocalDate endDate) {
-        List<VisitRecord> visits = (salesId != null) ?
-                visitRecordRepository.findBySalesIdAndVisitDateBetweenOrderByVisitDateDesc(salesId, startDate, endDate) :
-                visitRecordRepository.findByVisitDateBetween(startDate, endDate);
-
         // 按日期分组统计
-        Map<LocalDate, Long> visitsByDate = visits.stream()
-                .collect(Collectors.groupingBy(
-                        VisitRecord::getVisitDate,
-                        Collectors.counting()
-                ));
+        Map<LocalDate, Long> visitsByDate = visitDailyStatService.getDailyCounts(salesId, startDate, endDate);
 
         List<Map<String, Object>> trendData = new ArrayList<>();
         LocalDate currentDate = startDate;
@@ -615,79 +684,30 @@ public class DashboardService {
     }
 
     private Map<String, Object> getCustomerAnalysisBySchool(User currentUser) {
-        Map<String, Object> analysis = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
-
-        Map<String, Long> customersBySchool = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null && customer.getDepartment().getSchool() != null ?
-                                customer.getDepartment().getSchool().getName() : "未分类",
-                        Collectors.counting()
-                ));
-
-        analysis.put("distribution", customersBySchool);
-        analysis.put("total", customers.size());
-
-        return analysis;
+        return buildCustomerAnalysis(customerRepository.countGroupBySchoolName(getCreatedByScope(currentUser)));
     }
 
     private Map<String, Object> getCustomerAnalysisByDepartment(User currentUser) {
-        Map<String, Object> analysis = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
-
-        Map<String, Long> customersByDepartment = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null ? customer.getDepartment().getName() : "未分类",
-                        Collectors.counting()
-                ));
-
-        analysis.put("distribution", customersByDepartment);
-        analysis.put("total", customers.size());
-
-        return analysis;
+        return buildCustomerAnalysis(customerRepository.countGroupByDepartmentName(getCreatedByScope(currentUser)));
     }
 
     private Map<String, Object> getCustomerAnalysisByRegion(User currentUser) {
-        Map<String, Object> analysis = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
-
-        Map<String, Long> customersByRegion = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null && customer.getDepartment().getSchool() != null ?
-                                customer.getDepartment().getSchool().getCity() : "未分类",
-                        Collectors.counting()
-                ));
-
-        analysis.put("distribution", customersByRegion);
-        analysis.put("total", customers.size());
-
-        return analysis;
+        return buildCustomerAnalysis(customerRepository.countGroupBySchoolCity(getCreatedByScope(currentUser)));
     }
 
     private Map<String, Object> getCustomerAnalysisByType(User currentUser) {
-        Map<String, Object> analysis = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
+        return buildCustomerAnalysis(customerRepository.countGroupByStatus(getCreatedByScope(currentUser)));
+    }
 
-        Map<String, Long> customersByStatus = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getStatus() != null ? customer.getStatus().toString() : "未分类",
-                        Collectors.counting()
-                ));
+    /**
+     * 根据分组统计结果构建客户分析数据
+     */
+    private Map<String, Object> buildCustomerAnalysis(List<Object[]> rows) {
+        Map<String, Object> analysis = new HashMap<>();
+        Map<String, Long> distribution = toDistribution(rows);
 
-        analysis.put("distribution", customersByStatus);
-        analysis.put("total", customers.size());
+        analysis.put("distribution", distribution);
+        analysis.put("total", distribution.values().stream().mapToLong(Long::longValue).sum());
 
         return analysis;
     }
@@ -695,16 +715,9 @@ public class DashboardService {
     private Map<String, Object> getVisitTrendAnalysis(User currentUser, LocalDate startDate, LocalDate endDate, String period) {
         Map<String, Object> trend = new HashMap<>();
 
-        List<VisitRecord> visits = currentUser.getRole() == User.UserRole.SALES ?
-                visitRecordRepository.findBySalesIdAndVisitDateBetweenOrderByVisitDateDesc(currentUser.getId(), startDate, endDate) :
-                visitRecordRepository.findByVisitDateBetween(startDate, endDate);
-
         // 按日期分组统计
-        Map<LocalDate, Long> visitsByDate = visits.stream()
-                .collect(Collectors.groupingBy(
-                        VisitRecord::getVisitDate,
-                        Collectors.counting()
-                ));
+        Map<LocalDate, Long> visitsByDate = visitDailyStatService.getDailyCounts(
+                currentUser.getRole() == User.UserRole.SALES ? currentUser.getId() : null, startDate, endDate);
 
         List<Map<String, Object>> trendData = new ArrayList<>();
         LocalDate currentDate = startDate;
@@ -717,7 +730,7 @@ public class DashboardService {
         }
 
         trend.put("data", trendData);
-        trend.put("total", visits.size());
+        trend.put("total", visitsByDate.values().stream().mapToLong(Long::longValue).sum());
 
         return trend;
     }
@@ -781,20 +794,16 @@ public class DashboardService {
         Map<String, Object> rankings = new HashMap<>();
 
         // 获取销售人员拜访数量排名
-        List<VisitRecord> visits = visitRecordRepository.findByVisitDateBetween(startDate, endDate);
-        Map<String, Long> salesVisitCount = visits.stream()
-                .collect(Collectors.groupingBy(
-                        visit -> visit.getSales().getRealName(),
-                        Collectors.counting()
-                ));
+        Map<Long, Long> salesVisitCount = visitDailyStatService.getSalesCounts(startDate, endDate);
+        List<Long> topSalesIds = salesVisitCount.keySet().stream().limit(limit).collect(Collectors.toList());
+        Map<Long, String> salesNames = userRepository.findAllById(topSalesIds).stream()
+                .collect(Collectors.toMap(User::getId, User::getRealName, (a, b) -> a));
 
-        List<Map<String, Object>> rankingList = salesVisitCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
+        List<Map<String, Object>> rankingList = topSalesIds.stream()
+                .map(id -> {
                     Map<String, Object> item = new HashMap<>();
-                    item.put("name", entry.getKey());
-                    item.put("count", entry.getValue());
+                    item.put("name", salesNames.get(id));
+                    item.put("count", salesVisitCount.get(id));
                     return item;
                 })
                 .collect(Collectors.toList());
@@ -809,20 +818,16 @@ public class DashboardService {
         Map<String, Object> rankings = new HashMap<>();
 
         // 获取拜访频次最高的客户
-        List<VisitRecord> visits = visitRecordRepository.findByVisitDateBetween(startDate, endDate);
-        Map<String, Long> customerVisitCount = visits.stream()
-                .collect(Collectors.groupingBy(
-                        visit -> visit.getCustomer().getName(),
-                        Collectors.counting()
-                ));
+        Map<Long, Long> customerVisitCount = visitDailyStatService.getCustomerCounts(startDate, endDate);
+        List<Long> topCustomerIds = customerVisitCount.keySet().stream().limit(limit).collect(Collectors.toList());
+        Map<Long, String> customerNames = customerRepository.findAllById(topCustomerIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Customer::getName, (a, b) -> a));
 
-        List<Map<String, Object>> rankingList = customerVisitCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
+        List<Map<String, Object>> rankingList = topCustomerIds.stream()
+                .map(id -> {
                     Map<String, Object> item = new HashMap<>();
-                    item.put("name", entry.getKey());
-                    item.put("count", entry.getValue());
+                    item.put("name", customerNames.get(id));
+                    item.put("count", customerVisitCount.get(id));
                     return item;
                 })
                 .collect(Collectors.toList());
@@ -836,17 +841,10 @@ public class DashboardService {
     private Map<String, Object> getSchoolRankings(LocalDate startDate, LocalDate endDate, Integer limit) {
         Map<String, Object> rankings = new HashMap<>();
 
-        // 获取学校客户数量排名
-        List<Customer> customers = customerRepository.findAll();
-        Map<String, Long> schoolCustomerCount = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null && customer.getDepartment().getSchool() != null ?
-                                customer.getDepartment().getSchool().getName() : "未分类",
-                        Collectors.counting()
-                ));
+        // 获取学校客户数量排名（查询结果已按数量降序）
+        Map<String, Long> schoolCustomerCount = toDistribution(customerRepository.countGroupBySchoolName(null));
 
         List<Map<String, Object>> rankingList = schoolCustomerCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .limit(limit)
                 .map(entry -> {
                     Map<String, Object> item = new HashMap<>();
@@ -863,80 +861,53 @@ public class DashboardService {
     }
 
     private Map<String, Object> getProvinceDistribution(User currentUser) {
-        Map<String, Object> distribution = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
-
-        Map<String, Long> provinceDistribution = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null &&
-                                customer.getDepartment().getSchool() != null &&
-                                customer.getDepartment().getSchool().getProvince() != null ?
-                                customer.getDepartment().getSchool().getProvince() : "未分类",
-                        Collectors.counting()
-                ));
-
-        distribution.put("data", provinceDistribution);
-        distribution.put("total", customers.size());
-
-        return distribution;
+        return buildGeographicDistribution(customerRepository.countGroupBySchoolProvince(getCreatedByScope(currentUser)));
     }
 
     private Map<String, Object> getCityDistribution(User currentUser) {
-        Map<String, Object> distribution = new HashMap<>();
-
-        List<Customer> customers = currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()) :
-                customerRepository.findAll();
+        return buildGeographicDistribution(customerRepository.countGroupBySchoolCity(getCreatedByScope(currentUser)));
+    }
 
-        Map<String, Long> cityDistribution = customers.stream()
-                .collect(Collectors.groupingBy(
-                        customer -> customer.getDepartment() != null &&
-                                customer.getDepartment().getSchool() != null &&
-                                customer.getDepartment().getSchool().getCity() != null ?
-                                customer.getDepartment().getSchool().getCity() : "未分类",
-                        Collectors.counting()
-                ));
+    /**
+     * 根据分组统计结果构建地理分布数据
+     */
+    private Map<String, Object> buildGeographicDistribution(List<Object[]> rows) {
+        Map<String, Object> distribution = new HashMap<>();
+        Map<String, Long> data = toDistribution(rows);
 
-        distribution.put("data", cityDistribution);
-        distribution.put("total", customers.size());
+        distribution.put("data", data);
+        distribution.put("total", data.values().stream().mapToLong(Long::longValue).sum());
 
         return distribution;
     }
 
-    private Long getCurrentOnlineUsers() {
-        // 简化实现，实际应从Session或缓存中获取
-        return 10L;
-    }
-
-    private Long getTodayVisitCount(User currentUser) {
-        LocalDate today = LocalDate.now();
-        return currentUser.getRole() == User.UserRole.SALES ?
-                (long) visitRecordRepository.findBySalesIdAndVisitDate(currentUser.getId(), today).size() :
-                (long) visitRecordRepository.findByVisitDate(today).size();
+    /**
+     * 获取客户统计范围：销售人员只统计自己创建的客户，其他角色统计全部（返回null）
+     */
+    private Long getCreatedByScope(User currentUser) {
+        return currentUser.getRole() == User.UserRole.SALES ? currentUser.getId() : null;
     }
 
-    private Long getTodayNewCustomerCount(User currentUser) {
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-
-        return currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.countBySalesIdAndCreatedAtAfter(currentUser.getId(), startOfDay) :
-                customerRepository.countByCreatedAtAfter(startOfDay);
+    /**
+     * 将 (分组键, 数量) 结果转换为有序分布，空分组键归入"未分类"
+     */
+    private Map<String, Long> toDistribution(List<Object[]> rows) {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String key = row[0] != null ? row[0].toString() : "未分类";
+            distribution.merge(key, ((Number) row[1]).longValue(), Long::sum);
+        }
+        return distribution;
     }
 
     private List<Customer> getRecommendedCustomers(User currentUser) {
         // 简化实现，实际应根据算法推荐
-        return currentUser.getRole() == User.UserRole.SALES ?
-                customerRepository.findByCreatedById(currentUser.getId()).stream().limit(5).collect(Collectors.toList()) :
-                customerRepository.findAll().stream().limit(5).collect(Collectors.toList());
+        return customerRepository.findRecentCustomers(getCreatedByScope(currentUser), PageRequest.of(0, 5));
     }
 
     private List<School> getRecommendedSchools(User currentUser) {
         // 简化实现，实际应根据算法推荐
-        return schoolRepository.findAll().stream().limit(5).collect(Collectors.toList());
+        return schoolRepository.findAll(PageRequest.of(0, 5)).getContent();
     }
 
     private List<String> getWorkSuggestions(User currentUser) {
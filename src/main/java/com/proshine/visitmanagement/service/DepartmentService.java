@@ -12,7 +12,8 @@ import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.CustomerRepository;
 import com.proshine.visitmanagement.repository.DepartmentRepository;
 import com.proshine.visitmanagement.repository.SchoolRepository;
-import com.proshine.visitmanagement.repository.UserRepository;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.util.BatchUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -22,7 +23,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -40,7 +44,8 @@ public class DepartmentService {
     private final DepartmentRepository departmentRepository;
     private final SchoolRepository schoolRepository;
     private final CustomerRepository customerRepository;
-    private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
+    private final CustomerSearchService customerSearchService;
 
     /**
      * 分页查询院系
@@ -224,6 +229,7 @@ public class DepartmentService {
         department.setDescription(request.getDescription());
 
         Department savedDepartment = departmentRepository.save(department);
+        customerSearchService.onDepartmentChanged(savedDepartment);
         log.info("院系更新成功: id={}, name={}", savedDepartment.getId(), savedDepartment.getName());
 
         return convertToResponse(savedDepartment);
@@ -269,23 +275,36 @@ public class DepartmentService {
         // 检查权限 - 只有管理员和经理可以批量删除院系
         checkAdminOrManagerPermission(authentication);
 
-        List<Department> departments = departmentRepository.findAllById(ids);
+        List<List<Long>> idChunks = BatchUtils.chunkIds(ids);
+        List<Department> departments = new ArrayList<>();
+        for (List<Long> chunk : idChunks) {
+            departments.addAll(departmentRepository.findAllById(chunk));
+        }
         if (departments.isEmpty()) {
             throw new BusinessException("未找到要删除的院系");
         }
 
-        // 检查是否有关联的客户
+        // 检查是否有关联的客户，每个分块一次分组统计
+        Map<Long, Long> customerCounts = new HashMap<>();
+        for (List<Long> chunk : idChunks) {
+            for (Object[] row : customerRepository.countGroupByDepartmentIdIn(chunk)) {
+                customerCounts.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+        }
         for (Department department : departments) {
-            long customerCount = customerRepository.countByDepartmentId(department.getId());
+            long customerCount = customerCounts.getOrDefault(department.getId(), 0L);
             if (customerCount > 0) {
                 throw new BusinessException("院系 " + department.getName() + " 下存在 " + customerCount + " 个客户，无法删除");
             }
         }
 
-        departmentRepository.deleteAll(departments);
-        log.info("批量删除院系成功，数量: {}", departments.size());
+        int deletedCount = 0;
+        for (List<Long> chunk : idChunks) {
+            deletedCount += departmentRepository.softDeleteByIdIn(chunk);
+        }
+        log.info("批量删除院系成功，数量: {}", deletedCount);
 
-        return departments.size();
+        return deletedCount;
     }
 
     // ==================== 辅助方法 ====================
@@ -327,9 +346,7 @@ public class DepartmentService {
      * @return 用户对象
      */
     private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        return userDetailsService.getCurrentUser(authentication);
     }
 
     /**
@@ -0,0 +1,437 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.config.FileConfig;
+import com.proshine.visitmanagement.dto.response.ExportJobResponse;
+import com.proshine.visitmanagement.exception.BusinessException;
+import com.proshine.visitmanagement.exception.ResourceNotFoundException;
+import com.proshine.visitmanagement.security.CustomUserPrincipal;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 异步导出任务服务类
+ * 导出在文件处理线程池中执行并写入导出目录，客户端提交后轮询任务状态，完成后下载结果文件；
+ * 每个用户同时进行的任务数受限，过期的任务和文件定时清理
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportJobService {
+
+    /**
+     * 导出任务文件所在的子目录
+     */
+    private static final String JOB_DIRECTORY = "jobs";
+
+    /**
+     * 写入中的临时文件后缀
+     */
+    private static final String PART_SUFFIX = ".part";
+
+    private final FileConfig fileConfig;
+
+    @Qualifier("fileTaskExecutor")
+    private final Executor fileTaskExecutor;
+
+    @Value("${app.export.max-running-jobs-per-user:2}")
+    private int maxRunningJobsPerUser;
+
+    @Value("${app.export.retention-hours:24}")
+    private long retentionHours;
+
+    /**
+     * 任务ID -> 导出任务
+     */
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    // ==================== 任务提交与查询 ====================
+
+    /**
+     * 提交导出任务
+     *
+     * @param type 导出类型
+     * @param fileName 下载文件名
+     * @param task 导出逻辑
+     * @param authentication 认证信息
+     * @return 任务信息
+     */
+    public ExportJobResponse submit(String type, String fileName, ExportTask task, Authentication authentication) {
+        Long userId = getUserId(authentication);
+        Path directory = getJobDirectory();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.error("创建导出目录失败: {}", directory, e);
+            throw new BusinessException("创建导出目录失败");
+        }
+
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        String extension = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')) : "";
+        ExportJob job = new ExportJob(jobId, type, userId, fileName, directory.resolve(jobId + extension));
+
+        // 检查并登记需要原子进行，避免并发提交突破上限
+        synchronized (this) {
+            long running = jobs.values().stream()
+                    .filter(existing -> existing.getUserId().equals(userId) && !existing.isFinished())
+                    .count();
+            if (running >= maxRunningJobsPerUser) {
+                throw new BusinessException(String.format("最多同时进行%d个导出任务，请等待当前任务完成", maxRunningJobsPerUser));
+            }
+            jobs.put(jobId, job);
+        }
+
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(authentication);
+        try {
+            fileTaskExecutor.execute(() -> run(job, task, securityContext));
+        } catch (TaskRejectedException e) {
+            jobs.remove(jobId);
+            log.warn("导出任务被拒绝: type={}, userId={}", type, userId);
+            throw new BusinessException("导出任务过多，请稍后重试");
+        }
+
+        log.info("提交导出任务: jobId={}, type={}, userId={}", jobId, type, userId);
+        return convertToResponse(job);
+    }
+
+    /**
+     * 获取导出任务状态
+     *
+     * @param jobId 任务ID
+     * @param authentication 认证信息
+     * @return 任务信息
+     */
+    public ExportJobResponse getJob(String jobId, Authentication authentication) {
+        return convertToResponse(findJob(jobId, authentication));
+    }
+
+    /**
+     * 获取当前用户的导出任务（按创建时间倒序）
+     *
+     * @param authentication 认证信息
+     * @return 任务列表
+     */
+    public List<ExportJobResponse> getJobs(Authentication authentication) {
+        Long userId = getUserId(authentication);
+        return jobs.values().stream()
+                .filter(job -> job.getUserId().equals(userId))
+                .sorted(Comparator.comparing(ExportJob::getCreatedAt).reversed())
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取已完成任务的结果文件
+     *
+     * @param jobId 任务ID
+     * @param authentication 认证信息
+     * @return 结果文件路径
+     */
+    public Path getJobFile(String jobId, Authentication authentication) {
+        ExportJob job = findJob(jobId, authentication);
+        if (job.getStatus() != JobStatus.COMPLETED) {
+            throw new BusinessException("导出任务尚未完成");
+        }
+        if (!Files.exists(job.getFilePath())) {
+            throw new BusinessException("导出文件已过期，请重新导出");
+        }
+        return job.getFilePath();
+    }
+
+    /**
+     * 获取任务的下载文件名
+     *
+     * @param jobId 任务ID
+     * @param authentication 认证信息
+     * @return 下载文件名
+     */
+    public String getJobFileName(String jobId, Authentication authentication) {
+        return findJob(jobId, authentication).getFileName();
+    }
+
+    /**
+     * 删除已结束的导出任务及其文件
+     *
+     * @param jobId 任务ID
+     * @param authentication 认证信息
+     */
+    public void deleteJob(String jobId, Authentication authentication) {
+        ExportJob job = findJob(jobId, authentication);
+        if (!job.isFinished()) {
+            throw new BusinessException("导出任务正在进行，无法删除");
+        }
+        jobs.remove(jobId);
+        deleteQuietly(job.getFilePath());
+        log.info("删除导出任务: jobId={}", jobId);
+    }
+
+    // ==================== 定时清理 ====================
+
+    /**
+     * 清理过期的导出任务和文件（包括重启前遗留、已不在任务列表中的文件）
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L, initialDelay = 60 * 1000L)
+    public void cleanupExpiredJobs() {
+        LocalDateTime expireBefore = LocalDateTime.now().minusHours(retentionHours);
+
+        int removedJobs = 0;
+        for (ExportJob job : new ArrayList<>(jobs.values())) {
+            if (job.isFinished() && job.getFinishedAt().isBefore(expireBefore)) {
+                jobs.remove(job.getJobId());
+                deleteQuietly(job.getFilePath());
+                removedJobs++;
+            }
+        }
+
+        int removedFiles = 0;
+        Path directory = getJobDirectory();
+        if (Files.isDirectory(directory)) {
+            Set<Path> activeFiles = jobs.values().stream()
+                    .flatMap(job -> Stream.of(job.getFilePath(), getPartPath(job)))
+                    .collect(Collectors.toSet());
+            long expireMillis = expireBefore.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    if (!activeFiles.contains(file) && Files.getLastModifiedTime(file).toMillis() < expireMillis) {
+                        deleteQuietly(file);
+                        removedFiles++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("清理导出目录失败: {}", directory, e);
+            }
+        }
+
+        if (removedJobs > 0 || removedFiles > 0) {
+            log.info("清理过期导出任务: 任务={}, 遗留文件={}", removedJobs, removedFiles);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void run(ExportJob job, ExportTask task, SecurityContext securityContext) {
+        SecurityContextHolder.setContext(securityContext);
+        job.setStatus(JobStatus.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        Path partPath = getPartPath(job);
+
+        try {
+            // 先写入临时文件，完成后再改名，避免下载到不完整的文件
+            try (OutputStream outputStream = Files.newOutputStream(partPath)) {
+                task.export(outputStream, job);
+            }
+            Files.move(partPath, job.getFilePath(), StandardCopyOption.REPLACE_EXISTING);
+
+            job.setFileSize(Files.size(job.getFilePath()));
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(JobStatus.COMPLETED);
+            log.info("导出任务完成: jobId={}, 行数={}, 文件大小={}",
+                    job.getJobId(), job.getProcessedRows().get(), job.getFileSize());
+
+        } catch (Exception e) {
+            deleteQuietly(partPath);
+            job.setErrorMessage(e instanceof BusinessException ? e.getMessage() : "导出失败，请稍后重试");
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(JobStatus.FAILED);
+            log.error("导出任务失败: jobId={}, type={}", job.getJobId(), job.getType(), e);
+
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private ExportJob findJob(String jobId, Authentication authentication) {
+        ExportJob job = jobs.get(jobId);
+        // 其他用户的任务按不存在处理
+        if (job == null || !job.getUserId().equals(getUserId(authentication))) {
+            throw new ResourceNotFoundException("导出任务不存在或已过期");
+        }
+        return job;
+    }
+
+    private Long getUserId(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserPrincipal) {
+            return ((CustomUserPrincipal) authentication.getPrincipal()).getId();
+        }
+        throw new BusinessException("无法获取当前用户信息");
+    }
+
+    private Path getJobDirectory() {
+        return Paths.get(fileConfig.getExportPath(), JOB_DIRECTORY).toAbsolutePath().normalize();
+    }
+
+    private Path getPartPath(ExportJob job) {
+        return job.getFilePath().resolveSibling(job.getFilePath().getFileName() + PART_SUFFIX);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除导出文件失败: {}", path, e);
+        }
+    }
+
+    private ExportJobResponse convertToResponse(ExportJob job) {
+        long processedRows = job.getProcessedRows().get();
+        Long totalRows = job.getTotalRows();
+        Integer progress = null;
+        if (job.getStatus() == JobStatus.COMPLETED) {
+            progress = 100;
+        } else if (totalRows != null && totalRows > 0) {
+            progress = (int) Math.min(99, processedRows * 100 / totalRows);
+        }
+
+        return ExportJobResponse.builder()
+                .jobId(job.getJobId())
+                .type(job.getType())
+                .fileName(job.getFileName())
+                .status(job.getStatus().name())
+                .statusDescription(job.getStatus().getDescription())
+                .processedRows(processedRows)
+                .totalRows(totalRows)
+                .progress(progress)
+                .fileSize(job.getFileSize())
+                .errorMessage(job.getErrorMessage())
+                .downloadUrl(job.getStatus() == JobStatus.COMPLETED ?
+                        "/api/export-jobs/" + job.getJobId() + "/download" : null)
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .expiresAt(job.getFinishedAt() != null ? job.getFinishedAt().plusHours(retentionHours) : null)
+                .build();
+    }
+
+    /**
+     * 导出逻辑，将文件内容写入输出流
+     */
+    @FunctionalInterface
+    public interface ExportTask {
+        void export(OutputStream outputStream, ExportProgress progress) throws Exception;
+    }
+
+    /**
+     * 导出进度回调
+     */
+    public interface ExportProgress {
+
+        /**
+         * 设置总行数（已知时）
+         */
+        void setTotalRows(Long totalRows);
+
+        /**
+         * 更新已写入行数
+         */
+        void setProcessedRows(long processedRows);
+    }
+
+    /**
+     * 导出任务状态
+     */
+    public enum JobStatus {
+        PENDING("排队中"),
+        RUNNING("导出中"),
+        COMPLETED("已完成"),
+        FAILED("导出失败");
+
+        private final String description;
+
+        JobStatus(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * 导出任务
+     */
+    @Getter
+    private static class ExportJob implements ExportProgress {
+        private final String jobId;
+        private final String type;
+        private final Long userId;
+        private final String fileName;
+        private final Path filePath;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicLong processedRows = new AtomicLong();
+        private volatile Long totalRows;
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile String errorMessage;
+        private volatile Long fileSize;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        ExportJob(String jobId, String type, Long userId, String fileName, Path filePath) {
+            this.jobId = jobId;
+            this.type = type;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.filePath = filePath;
+        }
+
+        @Override
+        public void setTotalRows(Long totalRows) {
+            this.totalRows = totalRows;
+        }
+
+        @Override
+        public void setProcessedRows(long processedRows) {
+            this.processedRows.set(processedRows);
+        }
+
+        boolean isFinished() {
+            return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        }
+
+        void setStatus(JobStatus status) {
+            this.status = status;
+        }
+
+        void setErrorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+
+        void setFileSize(Long fileSize) {
+            this.fileSize = fileSize;
+        }
+
+        void setStartedAt(LocalDateTime startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void setFinishedAt(LocalDateTime finishedAt) {
+            this.finishedAt = finishedAt;
+        }
+    }
+}
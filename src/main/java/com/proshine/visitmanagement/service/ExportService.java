@@ -8,25 +8,33 @@ import com.proshine.visitmanagement.dto.response.VisitRecordResponse;
 import com.proshine.visitmanagement.entity.Customer;
 import com.proshine.visitmanagement.entity.School;
 import com.proshine.visitmanagement.exception.BusinessException;
+import com.proshine.visitmanagement.util.ExcelUtils;
+import com.proshine.visitmanagement.util.ValidationUtils;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.Arrays;
-import java.util.ArrayList;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 导出服务类
+ * 各类数据的导出列统一定义为 {@link ExportColumn}，Excel 与 CSV 两种格式共用同一套列定义
  *
  * @author System
  * @since 2024-01-01
@@ -36,332 +44,377 @@ import java.util.List;
 @Slf4j
 public class ExportService {
 
+    /**
+     * Excel导出格式
+     */
+    public static final String FORMAT_EXCEL = "excel";
+
+    /**
+     * CSV导出格式
+     */
+    public static final String FORMAT_CSV = "csv";
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /**
-     * 导出拜访记录
+     * SXSSF在内存中保留的行数
+     */
+    private static final int EXCEL_ROW_WINDOW = 200;
+
+    /**
+     * 流式导出时回报进度的间隔行数
+     */
+    private static final int PROGRESS_INTERVAL = 500;
+
+    /**
+     * Excel最大列宽
+     */
+    private static final int MAX_COLUMN_WIDTH = 15000;
+
+    /**
+     * UTF-8 BOM，Excel据此识别CSV编码
+     */
+    private static final char UTF8_BOM = '\uFEFF';
+
+    /**
+     * CSV写入缓冲区大小
+     */
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+
+    // ==================== 导出列定义 ====================
+
+    /**
+     * 拜访记录导出列
+     */
+    public static final List<ExportColumn<VisitRecordResponse>> VISIT_RECORD_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            ExportColumn.of("ID", VisitRecordResponse::getId),
+            ExportColumn.of("客户姓名", VisitRecordResponse::getCustomerName),
+            ExportColumn.of("客户职位", VisitRecordResponse::getCustomerPosition),
+            ExportColumn.of("销售人员", VisitRecordResponse::getSalesName),
+            ExportColumn.of("院系", VisitRecordResponse::getDepartmentName),
+            ExportColumn.of("学校", VisitRecordResponse::getSchoolName),
+            ExportColumn.of("城市", VisitRecordResponse::getSchoolCity),
+            ExportColumn.of("拜访日期", VisitRecordResponse::getVisitDate),
+            ExportColumn.of("拜访时间", VisitRecordResponse::getVisitTime),
+            ExportColumn.of("时长(分钟)", VisitRecordResponse::getDurationMinutes),
+            ExportColumn.of("拜访类型", VisitRecordResponse::getVisitTypeDescription),
+            ExportColumn.of("状态", VisitRecordResponse::getStatusDescription),
+            ExportColumn.of("意向等级", VisitRecordResponse::getIntentLevelDescription),
+            ExportColumn.of("可用事项", VisitRecordResponse::getAvailableMatters),
+            ExportColumn.of("需求分析", VisitRecordResponse::getDemandAnalysis),
+            ExportColumn.of("竞争对手分析", VisitRecordResponse::getCompetitorAnalysis),
+            ExportColumn.of("下一步计划", VisitRecordResponse::getNextSteps),
+            ExportColumn.of("拜访总结", VisitRecordResponse::getVisitSummary),
+            ExportColumn.of("备注", VisitRecordResponse::getNotes),
+            ExportColumn.of("创建时间", VisitRecordResponse::getCreatedAt)
+    ));
+
+    /**
+     * 客户导出列
+     */
+    public static final List<ExportColumn<CustomerResponse>> CUSTOMER_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            ExportColumn.of("客户ID", CustomerResponse::getId),
+            ExportColumn.of("客户姓名", CustomerResponse::getName),
+            ExportColumn.of("职位", CustomerResponse::getPosition),
+            ExportColumn.of("职称", CustomerResponse::getTitle),
+            ExportColumn.of("院系名称", CustomerResponse::getDepartmentName),
+            ExportColumn.of("学校名称", CustomerResponse::getSchoolName),
+            ExportColumn.of("学校城市", CustomerResponse::getSchoolCity),
+            ExportColumn.of("学校类型", CustomerResponse::getSchoolTypeDescription),
+            ExportColumn.of("手机号", CustomerResponse::getPhone),
+            ExportColumn.of("微信号", CustomerResponse::getWechat),
+            ExportColumn.of("邮箱", CustomerResponse::getEmail),
+            ExportColumn.of("办公地点", CustomerResponse::getOfficeLocation),
+            ExportColumn.of("楼层房间", CustomerResponse::getFloorRoom),
+            ExportColumn.of("研究方向", CustomerResponse::getResearchDirection),
+            ExportColumn.of("影响力等级", CustomerResponse::getInfluenceLevelDescription),
+            ExportColumn.of("决策权力", CustomerResponse::getDecisionPowerDescription),
+            ExportColumn.of("生日", CustomerResponse::getBirthday),
+            ExportColumn.of("拜访次数", CustomerResponse::getVisitCount),
+            ExportColumn.of("最后拜访日期", CustomerResponse::getLastVisitDate),
+            ExportColumn.of("创建时间", CustomerResponse::getCreatedAt)
+    ));
+
+    /**
+     * 学校导出列
+     */
+    public static final List<ExportColumn<SchoolResponse>> SCHOOL_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            ExportColumn.of("学校ID", SchoolResponse::getId),
+            ExportColumn.of("学校名称", SchoolResponse::getName),
+            ExportColumn.of("学校地址", SchoolResponse::getAddress),
+            ExportColumn.of("省份", SchoolResponse::getProvince),
+            ExportColumn.of("城市", SchoolResponse::getCity),
+            ExportColumn.of("学校类型", SchoolResponse::getSchoolTypeDescription),
+            ExportColumn.of("联系电话", SchoolResponse::getContactPhone),
+            ExportColumn.of("学校网站", SchoolResponse::getWebsite),
+            ExportColumn.of("院系数量", SchoolResponse::getDepartmentCount),
+            ExportColumn.of("客户数量", SchoolResponse::getCustomerCount),
+            ExportColumn.of("创建时间", SchoolResponse::getCreatedAt),
+            ExportColumn.of("更新时间", SchoolResponse::getUpdatedAt)
+    ));
+
+    // ==================== 导出方法 ====================
+
+    /**
+     * 流式导出数据到输出流，逐行写入，不在内存中保留全部数据
      *
-     * @param visitRecords 拜访记录列表
-     * @param format 导出格式
-     * @return 文件字节数组
+     * @param rows 数据行
+     * @param columns 导出列
+     * @param sheetName 工作表名称（仅Excel）
+     * @param format 导出格式（excel / csv）
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @param outputStream 输出流
+     * @return 导出行数
      */
-    public byte[] exportVisitRecords(List<VisitRecordResponse> visitRecords, String format) {
-        if ("pdf".equalsIgnoreCase(format)) {
-            return exportVisitRecordsToPdf(visitRecords);
-        } else {
-            return exportVisitRecordsToExcel(visitRecords);
+    public <T> long export(Iterator<T> rows, List<ExportColumn<T>> columns, String sheetName,
+                           String format, boolean gzip, OutputStream outputStream) {
+        ValidationUtils.exportFormat(format, Arrays.asList(FORMAT_EXCEL, FORMAT_CSV));
+        try {
+            if (isCsv(format)) {
+                return writeCsv(rows, columns, gzip, outputStream);
+            }
+            return writeExcel(rows, columns, sheetName, outputStream);
+        } catch (IOException e) {
+            log.error("导出数据失败: format={}", format, e);
+            throw new BusinessException("导出失败：" + e.getMessage());
         }
     }
 
     /**
-     * 导出客户数据
+     * 设置下载响应头
      *
-     * @param customers 客户列表
+     * @param baseName 不含扩展名的文件名
      * @param format 导出格式
-     * @return 文件字节数组
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @param response HTTP响应
      */
-    public byte[] exportCustomers(List<CustomerResponse> customers, String format) {
-        if ("pdf".equalsIgnoreCase(format)) {
-            return exportCustomersToPdf(customers);
-        } else {
-            return exportCustomersToExcel(customers);
+    public void setDownloadHeaders(String baseName, String format, boolean gzip, HttpServletResponse response) {
+        String fileName = getFileName(baseName, format, gzip);
+        try {
+            response.setContentType(getContentType(format, gzip));
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Content-Disposition",
+                    "attachment; filename=\"" + URLEncoder.encode(fileName, "UTF-8") + "\"");
+        } catch (UnsupportedEncodingException e) {
+            throw new BusinessException("导出失败：" + e.getMessage());
         }
     }
 
     /**
-     * 导出学校数据
+     * 获取导出文件名
      *
-     * @param schools 学校列表
+     * @param baseName 不含扩展名的文件名
      * @param format 导出格式
-     * @return 文件字节数组
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @return 文件名
      */
-    public byte[] exportSchools(List<SchoolResponse> schools, String format) {
-        if ("pdf".equalsIgnoreCase(format)) {
-            return exportSchoolsToPdf(schools);
-        } else {
-            return exportSchoolsToExcel(schools);
+    public String getFileName(String baseName, String format, boolean gzip) {
+        if (isCsv(format)) {
+            return baseName + (gzip ? ".csv.gz" : ".csv");
         }
+        return baseName + ".xlsx";
     }
 
     /**
-     * 导出拜访记录到Excel
+     * 将数据流包装为导出行迭代器，每写出 PROGRESS_INTERVAL 行回报一次进度
      *
-     * @param visitRecords 拜访记录列表
-     * @return Excel文件字节数组
+     * @param rows 数据流
+     * @param progress 导出任务进度，同步下载时为 null
+     * @return 导出行迭代器
      */
-    private byte[] exportVisitRecordsToExcel(List<VisitRecordResponse> visitRecords) {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("拜访记录");
-
-            // 创建标题样式
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle dateStyle = createDateStyle(workbook);
-
-            // 创建标题行
-            Row headerRow = sheet.createRow(0);
-            String[] headers = {
-                    "序号", "客户姓名", "客户职位", "客户电话", "院系名称", "学校名称", "学校城市",
-                    "销售人员", "销售部门", "拜访日期", "拜访时间", "拜访时长(分钟)", "拜访类型",
-                    "拜访状态", "意向等级", "可用事项", "需求分析", "竞争对手分析", "下一步计划",
-                    "拜访总结", "备注", "创建时间"
-            };
-
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
+    public static <T> Iterator<T> withProgress(Stream<T> rows, ExportJobService.ExportProgress progress) {
+        Iterator<T> source = rows.iterator();
+        if (progress == null) {
+            return source;
+        }
+        return new Iterator<T>() {
+            private long count;
 
-            // 填充数据
-            int rowIndex = 1;
-            for (VisitRecordResponse record : visitRecords) {
-                Row row = sheet.createRow(rowIndex++);
-                int cellIndex = 0;
-
-                // 序号
-                createCell(row, cellIndex++, rowIndex - 1, dataStyle);
-                // 客户信息
-                createCell(row, cellIndex++, record.getCustomerName(), dataStyle);
-                createCell(row, cellIndex++, record.getCustomerPosition(), dataStyle);
-                createCell(row, cellIndex++, record.getCustomerPhone(), dataStyle);
-                createCell(row, cellIndex++, record.getDepartmentName(), dataStyle);
-                createCell(row, cellIndex++, record.getSchoolName(), dataStyle);
-                createCell(row, cellIndex++, record.getSchoolCity(), dataStyle);
-                // 销售信息
-                createCell(row, cellIndex++, record.getSalesName(), dataStyle);
-                createCell(row, cellIndex++, record.getSalesDepartment(), dataStyle);
-                // 拜访信息
-                createCell(row, cellIndex++, record.getVisitDate() != null ?
-                        record.getVisitDate().format(DATE_FORMATTER) : "", dateStyle);
-                createCell(row, cellIndex++, record.getVisitTime() != null ?
-                        record.getVisitTime().toString() : "", dataStyle);
-                createCell(row, cellIndex++, record.getDurationMinutes(), dataStyle);
-                createCell(row, cellIndex++, record.getVisitTypeDescription(), dataStyle);
-                createCell(row, cellIndex++, record.getStatusDescription(), dataStyle);
-                createCell(row, cellIndex++, record.getIntentLevelDescription(), dataStyle);
-
-                // 拜访详情 - 使用VisitRecordResponse中正确的字段名
-                createCell(row, cellIndex++, record.getAvailableMatters(), dataStyle);
-                createCell(row, cellIndex++, record.getDemandAnalysis(), dataStyle);
-                createCell(row, cellIndex++, record.getCompetitorAnalysis(), dataStyle);
-                createCell(row, cellIndex++, record.getNextSteps(), dataStyle);
-                createCell(row, cellIndex++, record.getVisitSummary(), dataStyle);
-                createCell(row, cellIndex++, record.getNotes(), dataStyle);
-
-                createCell(row, cellIndex++, record.getCreatedAt() != null ?
-                        record.getCreatedAt().format(DATETIME_FORMATTER) : "", dateStyle);
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
             }
 
-            // 自动调整列宽
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                if (sheet.getColumnWidth(i) > 15000) {
-                    sheet.setColumnWidth(i, 15000);
+            @Override
+            public T next() {
+                T row = source.next();
+                if (++count % PROGRESS_INTERVAL == 0) {
+                    progress.setProcessedRows(count);
                 }
+                return row;
             }
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
-
-            log.info("导出拜访记录到Excel成功，记录数: {}", visitRecords.size());
-            return outputStream.toByteArray();
-
-        } catch (IOException e) {
-            log.error("导出拜访记录到Excel失败", e);
-            throw new BusinessException("导出失败：" + e.getMessage());
-        }
+        };
     }
 
-    /**
-     * 导出拜访记录到PDF
-     *
-     * @param visitRecords 拜访记录列表
-     * @return PDF文件字节数组
-     */
-    private byte[] exportVisitRecordsToPdf(List<VisitRecordResponse> visitRecords) {
-        // 简化实现，实际项目中可以使用iText等库
-        return exportVisitRecordsToExcel(visitRecords);
-    }
+    // ==================== 写入实现 ====================
 
     /**
-     * 导出客户数据到Excel
-     *
-     * @param customers 客户列表
-     * @return Excel文件字节数组
+     * 使用SXSSF窗口写入Excel，只在内存中保留最近的若干行
      */
-    private byte[] exportCustomersToExcel(List<CustomerResponse> customers) {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("客户信息");
+    private <T> long writeExcel(Iterator<T> rows, List<ExportColumn<T>> columns, String sheetName,
+                                OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(sheetName);
 
             // 创建样式
             CellStyle headerStyle = createHeaderStyle(workbook);
             CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle dateStyle = createDateStyle(workbook);
+
+            // 流式窗口中无法对全部数据调用autoSizeColumn，按表头和前若干行估算列宽
+            ExcelUtils.ColumnWidthEstimator widthEstimator =
+                    new ExcelUtils.ColumnWidthEstimator(columns.size(), ExcelUtils.WIDTH_SAMPLE_ROWS);
 
             // 创建标题行
             Row headerRow = sheet.createRow(0);
-            String[] headers = {
-                    "序号", "客户姓名", "职位", "职称", "院系名称", "学校名称", "学校城市", "学校类型",
-                    "电话", "微信号", "邮箱", "办公地点", "楼层房间", "研究方向", "影响力等级",
-                    "决策权力", "生日", "拜访次数", "最近拜访日期", "最近意向等级", "微信添加",
-                    "备注", "创建时间", "更新时间"
-            };
-
-            for (int i = 0; i < headers.length; i++) {
+            for (int i = 0; i < columns.size(); i++) {
                 Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
+                cell.setCellValue(columns.get(i).getHeader());
                 cell.setCellStyle(headerStyle);
+                widthEstimator.accept(i, columns.get(i).getHeader());
             }
 
             // 填充数据
-            int rowIndex = 1;
-            for (CustomerResponse customer : customers) {
-                Row row = sheet.createRow(rowIndex++);
-                int cellIndex = 0;
-
-                createCell(row, cellIndex++, rowIndex - 1, dataStyle);
-                createCell(row, cellIndex++, customer.getName(), dataStyle);
-                createCell(row, cellIndex++, customer.getPosition(), dataStyle);
-                createCell(row, cellIndex++, customer.getTitle(), dataStyle);
-                createCell(row, cellIndex++, customer.getDepartmentName(), dataStyle);
-                createCell(row, cellIndex++, customer.getSchoolName(), dataStyle);
-                createCell(row, cellIndex++, customer.getSchoolCity(), dataStyle);
-                createCell(row, cellIndex++, customer.getSchoolTypeDescription(), dataStyle);
-                createCell(row, cellIndex++, customer.getPhone(), dataStyle);
-                createCell(row, cellIndex++, customer.getWechat(), dataStyle);
-                createCell(row, cellIndex++, customer.getEmail(), dataStyle);
-                createCell(row, cellIndex++, customer.getOfficeLocation(), dataStyle);
-                createCell(row, cellIndex++, customer.getFloorRoom(), dataStyle);
-                createCell(row, cellIndex++, customer.getResearchDirection(), dataStyle);
-                createCell(row, cellIndex++, customer.getInfluenceLevelDescription(), dataStyle);
-                createCell(row, cellIndex++, customer.getDecisionPowerDescription(), dataStyle);
-                createCell(row, cellIndex++, customer.getBirthday() != null ?
-                        customer.getBirthday().format(DATE_FORMATTER) : "", dateStyle);
-                createCell(row, cellIndex++, customer.getVisitCount(), dataStyle);
-                createCell(row, cellIndex++, customer.getLastVisitDate() != null ?
-                        customer.getLastVisitDate().format(DATE_FORMATTER) : "", dateStyle);
-                createCell(row, cellIndex++, customer.getLastIntentLevel(), dataStyle);
-                createCell(row, cellIndex++, Boolean.TRUE.equals(customer.getWechatAdded()) ? "是" : "否", dataStyle);
-                createCell(row, cellIndex++, customer.getNotes(), dataStyle);
-                createCell(row, cellIndex++, customer.getCreatedAt() != null ?
-                        customer.getCreatedAt().format(DATETIME_FORMATTER) : "", dateStyle);
-                createCell(row, cellIndex++, customer.getUpdatedAt() != null ?
-                        customer.getUpdatedAt().format(DATETIME_FORMATTER) : "", dateStyle);
-            }
-
-            // 自动调整列宽
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                if (sheet.getColumnWidth(i) > 15000) {
-                    sheet.setColumnWidth(i, 15000);
+            int rowNumber = 0;
+            while (rows.hasNext()) {
+                T item = rows.next();
+                rowNumber++;
+                Row row = sheet.createRow(rowNumber);
+                boolean sampling = widthEstimator.isSampling();
+                for (int i = 0; i < columns.size(); i++) {
+                    Object value = toCellValue(columns.get(i).getValue(item, rowNumber));
+                    createCell(row, i, value, dataStyle);
+                    if (sampling) {
+                        widthEstimator.accept(i, value);
+                    }
                 }
+                widthEstimator.endRow();
             }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
+            // 列宽信息不随行刷出，写入前统一设置
+            widthEstimator.apply(sheet, MAX_COLUMN_WIDTH);
 
-            log.info("导出客户数据到Excel成功，记录数: {}", customers.size());
-            return outputStream.toByteArray();
+            workbook.write(outputStream);
+            outputStream.flush();
+            return rowNumber;
 
-        } catch (IOException e) {
-            log.error("导出客户数据到Excel失败", e);
-            throw new BusinessException("导出失败：" + e.getMessage());
+        } finally {
+            // 删除SXSSF产生的临时文件
+            workbook.dispose();
+            workbook.close();
         }
     }
 
     /**
-     * 导出客户数据到PDF
-     *
-     * @param customers 客户列表
-     * @return PDF文件字节数组
+     * 逐行写入CSV（RFC 4180），开头写入UTF-8 BOM以便Excel正确识别中文
      */
-    private byte[] exportCustomersToPdf(List<CustomerResponse> customers) {
-        // 简化实现
-        return exportCustomersToExcel(customers);
-    }
-
-    /**
-     * 导出学校数据到Excel
-     *
-     * @param schools 学校列表
-     * @return Excel文件字节数组
-     */
-    private byte[] exportSchoolsToExcel(List<SchoolResponse> schools) {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("学校信息");
-
-            // 创建样式
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle dateStyle = createDateStyle(workbook);
-
-            // 创建标题行
-            Row headerRow = sheet.createRow(0);
-            String[] headers = {
-                    "序号", "学校名称", "地址", "省份", "城市", "学校类型", "联系电话", "网站",
-                    "院系数量", "客户数量", "拜访数量", "创建时间", "更新时间"
-            };
-
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
+    private <T> long writeCsv(Iterator<T> rows, List<ExportColumn<T>> columns, boolean gzip,
+                              OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, CSV_BUFFER_SIZE) : null;
+        // 不关闭writer，输出流由调用方负责关闭
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzipStream != null ? gzipStream : outputStream, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
+
+        writer.write(UTF8_BOM);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
             }
-
-            // 填充数据
-            int rowIndex = 1;
-            for (SchoolResponse school : schools) {
-                Row row = sheet.createRow(rowIndex++);
-                int cellIndex = 0;
-
-                createCell(row, cellIndex++, rowIndex - 1, dataStyle);
-                createCell(row, cellIndex++, school.getName(), dataStyle);
-                createCell(row, cellIndex++, school.getAddress(), dataStyle);
-                createCell(row, cellIndex++, school.getProvince(), dataStyle);
-                createCell(row, cellIndex++, school.getCity(), dataStyle);
-                createCell(row, cellIndex++, school.getSchoolTypeDescription(), dataStyle);
-                createCell(row, cellIndex++, school.getContactPhone(), dataStyle);
-                createCell(row, cellIndex++, school.getWebsite(), dataStyle);
-                createCell(row, cellIndex++, school.getDepartmentCount(), dataStyle);
-                createCell(row, cellIndex++, school.getCustomerCount(), dataStyle);
-                createCell(row, cellIndex++, school.getVisitCount(), dataStyle);
-                createCell(row, cellIndex++, school.getCreatedAt() != null ?
-                        school.getCreatedAt().format(DATETIME_FORMATTER) : "", dateStyle);
-                createCell(row, cellIndex++, school.getUpdatedAt() != null ?
-                        school.getUpdatedAt().format(DATETIME_FORMATTER) : "", dateStyle);
-            }
-
-            // 自动调整列宽
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                if (sheet.getColumnWidth(i) > 15000) {
-                    sheet.setColumnWidth(i, 15000);
+            writeCsvValue(writer, columns.get(i).getHeader());
+        }
+        writer.write("\r\n");
+
+        long rowNumber = 0;
+        while (rows.hasNext()) {
+            T item = rows.next();
+            rowNumber++;
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
                 }
+                writeCsvValue(writer, toCsvText(columns.get(i).getValue(item, rowNumber)));
             }
+            writer.write("\r\n");
+        }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        outputStream.flush();
+        return rowNumber;
+    }
 
-            log.info("导出学校数据到Excel成功，记录数: {}", schools.size());
-            return outputStream.toByteArray();
+    private void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean needQuote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needQuote = true;
+                break;
+            }
+        }
+        if (!needQuote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
 
-        } catch (IOException e) {
-            log.error("导出学校数据到Excel失败", e);
-            throw new BusinessException("导出失败：" + e.getMessage());
+    /**
+     * 日期时间统一格式化为文本，数字保留为数值
+     */
+    private Object toCellValue(Object value) {
+        if (value instanceof Number || value instanceof Boolean || value == null) {
+            return value;
         }
+        return toText(value);
     }
 
     /**
-     * 导出学校数据到PDF
-     *
-     * @param schools 学校列表
-     * @return PDF文件字节数组
+     * CSV单元格文本；以 = + - @ 开头的文本在Excel中会被当作公式执行，前面加单引号按文本显示
      */
-    private byte[] exportSchoolsToPdf(List<SchoolResponse> schools) {
-        // 简化实现
-        return exportSchoolsToExcel(schools);
+    private String toCsvText(Object value) {
+        String text = toText(value);
+        if (text == null || text.isEmpty() || value instanceof Number) {
+            return text;
+        }
+        char first = text.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            return "'" + text;
+        }
+        return text;
+    }
+
+    private String toText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).format(DATETIME_FORMATTER);
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).format(DATE_FORMATTER);
+        }
+        return value.toString();
+    }
+
+    private boolean isCsv(String format) {
+        return FORMAT_CSV.equalsIgnoreCase(format);
+    }
+
+    private String getContentType(String format, boolean gzip) {
+        if (isCsv(format)) {
+            return gzip ? "application/gzip" : "text/csv";
+        }
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
     }
 
     /**
@@ -525,16 +578,6 @@ public class ExportService {
         return style;
     }
 
-    /**
-     * 创建日期样式
-     */
-    private CellStyle createDateStyle(Workbook workbook) {
-        CellStyle style = createDataStyle(workbook);
-        CreationHelper creationHelper = workbook.getCreationHelper();
-        style.setDataFormat(creationHelper.createDataFormat().getFormat("yyyy-mm-dd"));
-        return style;
-    }
-
     /**
      * 创建单元格并设置值
      */
@@ -715,4 +758,44 @@ public class ExportService {
 
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * 导出列定义：表头 + 取值函数
+     */
+    @Getter
+    public static final class ExportColumn<T> {
+
+        private final String header;
+
+        /**
+         * 取值函数，参数为 (数据行, 从1开始的行号)
+         */
+        private final BiFunction<T, Long, Object> valueGetter;
+
+        private ExportColumn(String header, BiFunction<T, Long, Object> valueGetter) {
+            this.header = header;
+            this.valueGetter = valueGetter;
+        }
+
+        /**
+         * 普通数据列
+         */
+        public static <T> ExportColumn<T> of(String header, Function<T, ?> getter) {
+            return new ExportColumn<>(header, (item, rowNumber) -> getter.apply(item));
+        }
+
+        /**
+         * 序号列
+         */
+        public static <T> ExportColumn<T> sequence(String header) {
+            return new ExportColumn<>(header, (item, rowNumber) -> rowNumber);
+        }
+
+        /**
+         * 获取单元格值
+         */
+        public Object getValue(T item, long rowNumber) {
+            return valueGetter.apply(item, rowNumber);
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package com.proshine.visitmanagement.service;
 
 import com.proshine.visitmanagement.config.FileConfig;
+import com.proshine.visitmanagement.entity.FileReference;
+import com.proshine.visitmanagement.entity.StoredFile;
 import com.proshine.visitmanagement.exception.BusinessException;
+import com.proshine.visitmanagement.repository.FileReferenceRepository;
+import com.proshine.visitmanagement.repository.StoredFileRepository;
 import com.proshine.visitmanagement.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * 文件服务类
@@ -25,6 +44,16 @@ import java.util.Map;
 public class FileService {
     
     private final FileConfig fileConfig;
+    private final StoredFileRepository storedFileRepository;
+    private final FileReferenceRepository fileReferenceRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    /**
+     * 按内容哈希分段的锁
+     * 只在单个JVM进程内串行同一内容的引用计数变化和磁盘写入/删除；多实例部署共用上传目录时，
+     * 另一进程可能在本进程复用内容的同时删除最后一个引用对应的磁盘文件，需要改用数据库行锁或分布式锁
+     */
+    private final Object[] contentLocks = createLocks(64);
     
     /**
      * 初始化目录结构
@@ -54,9 +83,7 @@ public class FileService {
         // 验证文件类型
         FileUtils.validateFileExtension(file.getOriginalFilename(), fileConfig.getAllowedImageTypes());
         
-        String filePath = FileUtils.uploadFile(file, fileConfig.getAvatarPath());
-        
-        return createFileInfo(file, filePath, "avatar");
+        return storeFile(file, fileConfig.getAvatarPath(), "avatar");
     }
     
     /**
@@ -74,9 +101,7 @@ public class FileService {
         // 验证文件类型
         FileUtils.validateFileExtension(file.getOriginalFilename(), fileConfig.getAllowedDocumentTypes());
         
-        String filePath = FileUtils.uploadFile(file, fileConfig.getDocumentPath());
-        
-        return createFileInfo(file, filePath, "document");
+        return storeFile(file, fileConfig.getDocumentPath(), "document");
     }
     
     /**
@@ -94,9 +119,7 @@ public class FileService {
         // 验证文件类型
         FileUtils.validateFileExtension(file.getOriginalFilename(), fileConfig.getAllowedImageTypes());
         
-        String filePath = FileUtils.uploadFile(file, fileConfig.getImagePath());
-        
-        return createFileInfo(file, filePath, "image");
+        return storeFile(file, fileConfig.getImagePath(), "image");
     }
     
     /**
@@ -127,9 +150,7 @@ public class FileService {
             fileType = "other";
         }
         
-        String filePath = FileUtils.uploadFile(file, uploadDir);
-        
-        return createFileInfo(file, filePath, fileType);
+        return storeFile(file, uploadDir, fileType);
     }
     
     /**
@@ -172,6 +193,7 @@ public class FileService {
     
     /**
      * 删除文件
+     * 内容寻址存储的文件删除引用记录并释放一次内容引用，最后一个引用释放时才删除磁盘文件
      * 
      * @param filePath 文件路径
      * @return 删除结果
@@ -182,9 +204,131 @@ public class FileService {
             throw new BusinessException("文件路径不安全");
         }
         
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(filePath);
+        if (reference.isPresent()) {
+            return releaseContent(reference.get().getSha256(), filePath);
+        }
+        
+        // 引用记录出现之前上传的文件，返回给调用方的就是内容文件本身的路径
+        Optional<StoredFile> storedFile = storedFileRepository.findFirstByFilePath(filePath);
+        if (storedFile.isPresent()) {
+            return releaseContent(storedFile.get().getSha256(), null);
+        }
+        
         return FileUtils.deleteFile(filePath);
     }
     
+    /**
+     * 下载文件，内容寻址存储的文件按引用记录的文件名和内容类型返回
+     * 
+     * @param filePath 文件路径
+     * @param fileName 下载文件名，为空时使用路径中的文件名
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    public void downloadFile(String filePath, String fileName, HttpServletRequest request,
+                             HttpServletResponse response) {
+        String downloadName = fileName != null ? fileName : Paths.get(filePath).getFileName().toString();
+        
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(filePath);
+        if (!reference.isPresent()) {
+            FileUtils.downloadFile(filePath, downloadName, request, response);
+            return;
+        }
+        
+        FileUtils.downloadFile(getContentPath(reference.get()), downloadName, reference.get().getContentType(),
+                request, response);
+    }
+    
+    /**
+     * 按 /uploads/** 访问上传文件
+     * 启用去重后引用路径在磁盘上并不存在，按引用记录找到内容文件，以记录的内容类型在浏览器中展示
+     * 
+     * @param relativePath 相对上传根目录的路径
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    public void serveUpload(String relativePath, HttpServletRequest request, HttpServletResponse response) {
+        // 安全检查
+        if (!FileUtils.isSecurePath(relativePath)) {
+            throw new BusinessException("文件路径不安全");
+        }
+        
+        String filePath = fileConfig.getUploadPath() + "/" + relativePath;
+        String fileName = Paths.get(relativePath).getFileName().toString();
+        
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(filePath);
+        if (reference.isPresent()) {
+            FileUtils.serveFile(getContentPath(reference.get()), fileName, reference.get().getContentType(),
+                    request, response);
+            return;
+        }
+        
+        String contentType = MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElse(null);
+        FileUtils.serveFile(filePath, fileName, contentType, request, response);
+    }
+    
+    /**
+     * 复制文件
+     * 内容寻址存储的文件只新建一条引用并增加一次内容引用，不复制磁盘文件
+     * 
+     * @param sourcePath 源文件路径
+     * @param targetPath 目标文件路径
+     * @return 是否复制成功
+     */
+    public boolean copyFile(String sourcePath, String targetPath) {
+        checkTargetUnreferenced(targetPath);
+        
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(sourcePath);
+        if (!reference.isPresent()) {
+            return FileUtils.copyFile(sourcePath, targetPath);
+        }
+        
+        FileReference source = reference.get();
+        synchronized (lockFor(source.getSha256())) {
+            transactionTemplate.execute(status -> {
+                if (storedFileRepository.retain(source.getSha256()) == 0) {
+                    throw new BusinessException("源文件不存在");
+                }
+                FileReference copy = new FileReference();
+                copy.setFilePath(targetPath);
+                copy.setSha256(source.getSha256());
+                copy.setOriginalName(source.getOriginalName());
+                copy.setExtension(source.getExtension());
+                copy.setContentType(source.getContentType());
+                copy.setFileType(source.getFileType());
+                copy.setCreatedAt(LocalDateTime.now());
+                return fileReferenceRepository.save(copy);
+            });
+        }
+        log.info("文件引用复制成功: {} -> {}", sourcePath, targetPath);
+        return true;
+    }
+    
+    /**
+     * 移动文件
+     * 内容寻址存储的文件只修改引用路径；内容文件本身被其他引用共用，不允许直接移动
+     * 
+     * @param sourcePath 源文件路径
+     * @param targetPath 目标文件路径
+     * @return 是否移动成功
+     */
+    public boolean moveFile(String sourcePath, String targetPath) {
+        checkTargetUnreferenced(targetPath);
+        
+        Integer moved = transactionTemplate.execute(status ->
+                fileReferenceRepository.updateFilePath(sourcePath, targetPath));
+        if (moved != null && moved > 0) {
+            log.info("文件引用移动成功: {} -> {}", sourcePath, targetPath);
+            return true;
+        }
+        
+        if (storedFileRepository.findFirstByFilePath(sourcePath).isPresent()) {
+            throw new BusinessException("去重存储的文件不能移动");
+        }
+        return FileUtils.moveFile(sourcePath, targetPath);
+    }
+    
     /**
      * 获取文件信息
      * 
@@ -197,7 +341,38 @@ public class FileService {
             throw new BusinessException("文件路径不安全");
         }
         
-        return FileUtils.getFileInfo(filePath);
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(filePath);
+        if (!reference.isPresent()) {
+            return FileUtils.getFileInfo(filePath);
+        }
+        
+        // 大小、修改时间取自内容文件，文件名、扩展名和内容类型取自引用记录
+        String fileName = Paths.get(filePath).getFileName().toString();
+        Map<String, Object> fileInfo = FileUtils.getFileInfo(getContentPath(reference.get()));
+        fileInfo.put("fileName", fileName);
+        fileInfo.put("filePath", filePath);
+        fileInfo.put("originalName", reference.get().getOriginalName());
+        fileInfo.put("extension", reference.get().getExtension());
+        fileInfo.put("contentType", reference.get().getContentType());
+        fileInfo.put("isImage", FileUtils.isImageFile(fileName));
+        fileInfo.put("isDocument", FileUtils.isDocumentFile(fileName));
+        return fileInfo;
+    }
+    
+    /**
+     * 判断文件是否存在，内容寻址存储的文件判断其内容文件
+     * 
+     * @param filePath 文件路径
+     * @return 是否存在
+     */
+    public boolean exists(String filePath) {
+        Optional<FileReference> reference = fileReferenceRepository.findByFilePath(filePath);
+        if (!reference.isPresent()) {
+            return FileUtils.exists(filePath);
+        }
+        return storedFileRepository.findBySha256(reference.get().getSha256())
+                .map(storedFile -> FileUtils.exists(storedFile.getFilePath()))
+                .orElse(false);
     }
     
     /**
@@ -212,7 +387,19 @@ public class FileService {
             throw new BusinessException("目录路径不安全");
         }
         
-        return FileUtils.listFiles(directory);
+        // 去重存储的上传只有引用记录，磁盘上没有对应文件，按引用补进列表
+        List<Map<String, Object>> fileList = FileUtils.listFiles(directory);
+        Path directoryPath = Paths.get(directory).normalize();
+        for (FileReference reference : fileReferenceRepository.findUnderDirectory(directory)) {
+            Path referencePath = Paths.get(reference.getFilePath()).normalize();
+            if (directoryPath.equals(referencePath.getParent())) {
+                fileList.add(createReferenceInfo(reference, referencePath));
+            }
+        }
+        
+        fileList.sort(Comparator.comparing((Map<String, Object> fileInfo) -> !(Boolean) fileInfo.get("isDirectory"))
+                .thenComparing(fileInfo -> (String) fileInfo.get("fileName"), String.CASE_INSENSITIVE_ORDER));
+        return fileList;
     }
     
     /**
@@ -267,27 +454,201 @@ public class FileService {
         }
     }
     
+    /**
+     * 保存上传文件
+     * 启用去重时按内容寻址存储：边写临时文件边计算SHA-256，内容已存在时只增加引用次数，不再写盘
+     * 
+     * @param file 文件
+     * @param uploadDir 未启用去重时的上传目录
+     * @param fileType 文件类型
+     * @return 文件信息
+     */
+    private Map<String, Object> storeFile(MultipartFile file, String uploadDir, String fileType) {
+        FileUtils.DigestedUpload upload = FileUtils.saveToTempWithDigest(file, fileConfig.getTempPath());
+        String extension = FileUtils.getFileExtension(file.getOriginalFilename());
+        
+        try {
+            if (!fileConfig.isEnableDeduplication()) {
+                String filePath = uploadDir + "/" + FileUtils.generateUniqueFileName() + extension;
+                moveIntoPlace(upload.getTempPath(), Paths.get(filePath));
+                log.info("文件上传成功: {}", filePath);
+                return createFileInfo(file, upload, filePath, fileType, false);
+            }
+            
+            // 返回给调用方的是带扩展名的引用路径，内容文件只按哈希命名
+            String filePath = uploadDir + "/" + FileUtils.generateUniqueFileName() + extension;
+            String sha256 = upload.getSha256();
+            synchronized (lockFor(sha256)) {
+                // 已有记录且磁盘文件仍在时直接复用，否则写入内容寻址路径
+                Optional<StoredFile> existing = storedFileRepository.findBySha256(sha256);
+                boolean deduplicated = existing.isPresent() && Files.exists(Paths.get(existing.get().getFilePath()));
+                String blobPath = deduplicated ? existing.get().getFilePath() : getBlobPath(sha256);
+                if (!deduplicated) {
+                    moveIntoPlace(upload.getTempPath(), Paths.get(blobPath));
+                }
+                transactionTemplate.execute(status -> {
+                    storedFileRepository.acquire(sha256, blobPath, upload.getSize());
+                    return fileReferenceRepository.save(createReference(file, filePath, sha256, extension, fileType));
+                });
+                
+                log.info("文件上传成功: {} -> {}, 重复内容: {}", filePath, blobPath, deduplicated);
+                return createFileInfo(file, upload, filePath, fileType, deduplicated);
+            }
+        } finally {
+            FileUtils.deleteFile(upload.getTempPath().toString());
+        }
+    }
+    
+    /**
+     * 内容寻址路径：blobs/哈希前两位/哈希三四位/完整哈希，避免单个目录下文件过多。
+     * 不带扩展名，同一内容以不同扩展名上传时共用一份；扩展名和内容类型记录在各自的引用上
+     */
+    private String getBlobPath(String sha256) {
+        return fileConfig.getUploadPath() + "/blobs/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4)
+                + "/" + sha256;
+    }
+    
+    /**
+     * 引用对应的内容文件路径
+     */
+    private String getContentPath(FileReference reference) {
+        return storedFileRepository.findBySha256(reference.getSha256())
+                .map(StoredFile::getFilePath)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+    }
+    
+    /**
+     * 释放一次内容引用，最后一个引用释放时删除内容文件
+     * 
+     * @param sha256 内容哈希
+     * @param referencePath 同时删除的引用路径，为 null 时只释放内容引用
+     * @return 是否释放成功；引用已被并发删除时返回 false
+     */
+    private boolean releaseContent(String sha256, String referencePath) {
+        synchronized (lockFor(sha256)) {
+            Optional<StoredFile> storedFile = storedFileRepository.findBySha256(sha256);
+            // 删除引用和释放内容引用在同一事务中，引用已被并发删除时不再重复释放
+            Boolean unreferenced = transactionTemplate.execute(status -> {
+                if (referencePath != null && fileReferenceRepository.deleteByFilePath(referencePath) == 0) {
+                    return null;
+                }
+                return storedFileRepository.release(sha256) > 0 && storedFileRepository.deleteUnreferenced(sha256) > 0;
+            });
+            if (unreferenced == null) {
+                return false;
+            }
+            if (unreferenced && storedFile.isPresent()) {
+                FileUtils.deleteFile(storedFile.get().getFilePath());
+                log.info("文件最后一个引用已释放，删除文件: {}", storedFile.get().getFilePath());
+            } else {
+                log.info("释放文件引用: {}", referencePath != null ? referencePath : sha256);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * 把临时文件移动到目标位置（临时目录与上传目录同盘时为原子重命名）
+     */
+    private void moveIntoPlace(Path tempPath, Path target) {
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.error("保存上传文件失败: {}", target, e);
+            throw new BusinessException("文件上传失败");
+        }
+    }
+    
+    /**
+     * 同一内容的引用计数变化和磁盘文件写入/删除需要串行，按哈希分段加锁
+     */
+    private Object lockFor(String sha256) {
+        return contentLocks[Math.floorMod(sha256.hashCode(), contentLocks.length)];
+    }
+    
+    private static Object[] createLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+    
+    /**
+     * 创建文件引用记录
+     */
+    private FileReference createReference(MultipartFile file, String filePath, String sha256, String extension,
+                                          String fileType) {
+        FileReference reference = new FileReference();
+        reference.setFilePath(filePath);
+        reference.setSha256(sha256);
+        reference.setOriginalName(file.getOriginalFilename());
+        reference.setExtension(extension);
+        reference.setContentType(file.getContentType());
+        reference.setFileType(fileType);
+        reference.setCreatedAt(LocalDateTime.now());
+        return reference;
+    }
+    
+    /**
+     * 文件列表中引用记录对应的一项，字段与磁盘文件一致
+     */
+    private Map<String, Object> createReferenceInfo(FileReference reference, Path referencePath) {
+        String fileName = referencePath.getFileName().toString();
+        Map<String, Object> fileInfo = new HashMap<>();
+        fileInfo.put("fileName", fileName);
+        fileInfo.put("filePath", reference.getFilePath());
+        fileInfo.put("fileSize", storedFileRepository.findBySha256(reference.getSha256())
+                .map(StoredFile::getFileSize)
+                .orElse(0L));
+        fileInfo.put("isDirectory", false);
+        fileInfo.put("lastModified", reference.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant());
+        fileInfo.put("extension", reference.getExtension());
+        fileInfo.put("isImage", FileUtils.isImageFile(fileName));
+        fileInfo.put("isDocument", FileUtils.isDocumentFile(fileName));
+        return fileInfo;
+    }
+    
+    /**
+     * 目标路径已被引用记录占用时，磁盘上的同名文件不会被访问到，拒绝复制或移动
+     */
+    private void checkTargetUnreferenced(String targetPath) {
+        if (fileReferenceRepository.findByFilePath(targetPath).isPresent()) {
+            throw new BusinessException("目标文件已存在");
+        }
+    }
+    
     /**
      * 创建文件信息
      * 
      * @param file 文件
+     * @param upload 已计算摘要的上传
      * @param filePath 文件路径
      * @param fileType 文件类型
+     * @param deduplicated 是否复用了已有的相同内容
      * @return 文件信息
      */
-    private Map<String, Object> createFileInfo(MultipartFile file, String filePath, String fileType) {
+    private Map<String, Object> createFileInfo(MultipartFile file, FileUtils.DigestedUpload upload, String filePath,
+                                               String fileType, boolean deduplicated) {
         Map<String, Object> fileInfo = new HashMap<>();
         fileInfo.put("originalName", file.getOriginalFilename());
         fileInfo.put("fileName", FileUtils.cleanFileName(file.getOriginalFilename()));
         fileInfo.put("filePath", filePath);
-        fileInfo.put("fileSize", file.getSize());
-        fileInfo.put("fileSizeDescription", FileUtils.getFileSizeDescription(file.getSize()));
+        fileInfo.put("fileSize", upload.getSize());
+        fileInfo.put("fileSizeDescription", FileUtils.getFileSizeDescription(upload.getSize()));
         fileInfo.put("contentType", file.getContentType());
         fileInfo.put("fileType", fileType);
         fileInfo.put("extension", FileUtils.getFileExtension(file.getOriginalFilename()));
         fileInfo.put("isImage", FileUtils.isImageFile(file.getOriginalFilename()));
         fileInfo.put("isDocument", FileUtils.isDocumentFile(file.getOriginalFilename()));
-        fileInfo.put("md5", FileUtils.getFileMD5(file));
+        fileInfo.put("md5", upload.getMd5());
+        fileInfo.put("sha256", upload.getSha256());
+        fileInfo.put("deduplicated", deduplicated);
         fileInfo.put("accessUrl", fileConfig.getUrlPrefix() + "/" + filePath.replace("\\", "/"));
         
         return fileInfo;
@@ -0,0 +1,165 @@
+package com.proshine.visitmanagement.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proshine.visitmanagement.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录限流服务
+ * 按用户名和客户端IP分别维护令牌桶，超出频率的登录请求在查库和校验密码之前直接拒绝
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginThrottleService {
+
+    /**
+     * 令牌桶缓存的最大条目数（每个维度各一份）
+     */
+    private static final long MAX_BUCKETS = 100_000;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.login-throttle.username.capacity:5}")
+    private int usernameCapacity;
+
+    @Value("${app.security.login-throttle.username.refill-seconds:60}")
+    private long usernameRefillSeconds;
+
+    @Value("${app.security.login-throttle.ip.capacity:30}")
+    private int ipCapacity;
+
+    @Value("${app.security.login-throttle.ip.refill-seconds:2}")
+    private long ipRefillSeconds;
+
+    /**
+     * 用户名 -> 令牌桶
+     */
+    private Cache<String, TokenBucket> usernameBuckets;
+
+    /**
+     * 客户端IP -> 令牌桶
+     */
+    private Cache<String, TokenBucket> ipBuckets;
+
+    private Counter usernameRejected;
+    private Counter ipRejected;
+
+    @PostConstruct
+    public void init() {
+        // 空闲到桶被重新装满后，条目与新建的桶等价，可以直接淘汰
+        usernameBuckets = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .expireAfterAccess(Duration.ofSeconds(usernameCapacity * usernameRefillSeconds))
+                .build();
+        ipBuckets = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .expireAfterAccess(Duration.ofSeconds(ipCapacity * ipRefillSeconds))
+                .build();
+        usernameRejected = rejectedCounter("username");
+        ipRejected = rejectedCounter("ip");
+        log.info("登录限流配置完成: 用户名{}次/{}秒补充1次, IP{}次/{}秒补充1次",
+                usernameCapacity, usernameRefillSeconds, ipCapacity, ipRefillSeconds);
+    }
+
+    /**
+     * 登录前消耗IP和用户名各一个令牌，任一维度不足时抛出429
+     *
+     * @param username 用户名
+     * @param clientIp 客户端IP
+     */
+    public void acquire(String username, String clientIp) {
+        long now = System.nanoTime();
+
+        String ipKey = StringUtils.hasText(clientIp) ? clientIp : "unknown";
+        long ipWait = ipBuckets.get(ipKey, key -> new TokenBucket(ipCapacity, ipRefillSeconds, now)).tryConsume(now);
+        if (ipWait > 0) {
+            ipRejected.increment();
+            log.warn("登录请求过于频繁(IP): ip={}, username={}", ipKey, username);
+            throw new TooManyRequestsException("登录尝试过于频繁，请稍后再试", toSeconds(ipWait));
+        }
+
+        String usernameKey = normalizeUsername(username);
+        long usernameWait = usernameBuckets.get(usernameKey,
+                key -> new TokenBucket(usernameCapacity, usernameRefillSeconds, now)).tryConsume(now);
+        if (usernameWait > 0) {
+            usernameRejected.increment();
+            log.warn("登录请求过于频繁(用户名): ip={}, username={}", ipKey, username);
+            throw new TooManyRequestsException("该账号登录尝试过于频繁，请稍后再试", toSeconds(usernameWait));
+        }
+    }
+
+    /**
+     * 登录成功后重置该用户名的令牌桶，之前输错密码的次数不再影响后续登录
+     *
+     * @param username 用户名
+     */
+    public void onLoginSucceeded(String username) {
+        usernameBuckets.invalidate(normalizeUsername(username));
+    }
+
+    private Counter rejectedCounter(String reason) {
+        return Counter.builder("auth.login.rejected")
+                .description("被限流拒绝的登录请求数")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static String normalizeUsername(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * 令牌桶：容量为 capacity，每 refillSeconds 秒补充一个令牌
+     */
+    private static final class TokenBucket {
+
+        private final int capacity;
+        private final long nanosPerToken;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, long refillSeconds, long now) {
+            this.capacity = capacity;
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(refillSeconds);
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * 尝试消耗一个令牌
+         *
+         * @return 0 表示成功；否则为下一个令牌到来前需要等待的纳秒数
+         */
+        synchronized long tryConsume(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (double) (now - lastRefill) / nanosPerToken);
+                lastRefill = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * nanosPerToken);
+        }
+    }
+}
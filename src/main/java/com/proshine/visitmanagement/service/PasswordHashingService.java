@@ -0,0 +1,121 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希服务
+ * 登录校验、注册和修改密码时的BCrypt计算放到有界的专用线程池中执行，
+ * 线程池排满时快速拒绝，不占用Tomcat请求线程；计算耗时通过 actuator 的 auth.password.hash 指标暴露
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("loginHashExecutor")
+    private final Executor loginHashExecutor;
+
+    /**
+     * 等待哈希计算完成的最长时间（毫秒）
+     */
+    @Value("${app.security.login-throttle.hash-timeout-ms:5000}")
+    private long hashTimeoutMs;
+
+    /**
+     * 在密码哈希线程池中执行任务（例如包含密码校验的 AuthenticationManager.authenticate）
+     *
+     * @param operation 操作名称，作为指标标签
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 任务结果；任务抛出的运行时异常原样抛出
+     */
+    public <T> T execute(String operation, Supplier<T> task) {
+        Timer timer = Timer.builder("auth.password.hash")
+                .description("密码哈希计算耗时")
+                .tag("operation", operation)
+                .register(meterRegistry);
+
+        // 用 FutureTask 而不是 CompletableFuture：超时后 cancel(true) 能中断正在执行的线程，
+        // 仍在队列中的任务也会在出队时直接跳过，不再占用哈希线程
+        FutureTask<T> future = new FutureTask<>(() -> timer.record(task));
+        try {
+            loginHashExecutor.execute(future);
+        } catch (RejectedExecutionException e) {
+            busyCounter().increment();
+            log.warn("密码哈希线程池已满，拒绝请求: operation={}", operation);
+            throw new TooManyRequestsException("系统繁忙，请稍后再试", 1);
+        }
+
+        try {
+            return future.get(hashTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            busyCounter().increment();
+            log.warn("密码哈希等待超时: operation={}, timeout={}ms", operation, hashTimeoutMs);
+            throw new TooManyRequestsException("系统繁忙，请稍后再试", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("密码哈希计算被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("密码哈希计算失败", cause);
+        }
+    }
+
+    /**
+     * 计算密码哈希
+     *
+     * @param rawPassword 明文密码
+     * @return 密码哈希
+     */
+    public String encode(String rawPassword) {
+        return execute("encode", () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param rawPassword 明文密码
+     * @param encodedPassword 密码哈希
+     * @return 是否匹配
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute("verify", () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    private Counter busyCounter() {
+        return Counter.builder("auth.login.rejected")
+                .description("被限流拒绝的登录请求数")
+                .tag("reason", "busy")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,392 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.User;
+import com.proshine.visitmanagement.repository.CustomerRepository;
+import com.proshine.visitmanagement.repository.VisitDailyStatRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 仪表盘实时数据服务类
+ * 按数据范围（全局 / 单个销售人员）在内存中维护今日计数，拜访和客户写入后增量更新，
+ * 变化的范围按固定间隔合并推送给 SSE 订阅者，订阅者数量不影响数据库负载
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RealtimeDashboardService {
+
+    /**
+     * 全局数据范围（管理员、经理）
+     */
+    private static final String SCOPE_ALL = "ALL";
+
+    /**
+     * 销售人员数据范围前缀
+     */
+    private static final String SCOPE_SALES_PREFIX = "SALES:";
+
+    /**
+     * SSE连接超时时间（毫秒），超时后由客户端自动重连
+     */
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    /**
+     * 计数与数据库校准的间隔（毫秒）
+     */
+    private static final long RECONCILE_INTERVAL_MS = 60 * 1000L;
+
+    private final VisitDailyStatRepository visitDailyStatRepository;
+    private final CustomerRepository customerRepository;
+
+    /**
+     * 数据范围 -> 今日计数
+     */
+    private final Map<String, ScopeCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 数据范围 -> 订阅者
+     */
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 计数发生变化、等待推送的数据范围
+     */
+    private final Set<String> dirtyScopes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 当前计数对应的日期
+     */
+    private volatile LocalDate counterDate = LocalDate.now();
+
+    // ==================== 订阅与查询 ====================
+
+    /**
+     * 订阅实时数据推送
+     *
+     * @param user 当前用户
+     * @return SSE发射器
+     */
+    public SseEmitter subscribe(User user) {
+        String scope = getScope(user);
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(user.getId(), emitter);
+
+        subscribers.computeIfAbsent(scope, key -> new CopyOnWriteArraySet<>()).add(subscriber);
+        emitter.onCompletion(() -> removeSubscriber(scope, subscriber));
+        emitter.onTimeout(() -> removeSubscriber(scope, subscriber));
+        emitter.onError(e -> removeSubscriber(scope, subscriber));
+
+        // 连接建立后立即推送一次当前数据
+        send(scope, subscriber, getSnapshot(user));
+        log.debug("实时数据订阅: userId={}, scope={}", user.getId(), scope);
+
+        return emitter;
+    }
+
+    /**
+     * 获取当前用户范围内的实时数据
+     *
+     * @param user 当前用户
+     * @return 实时数据
+     */
+    public Map<String, Object> getSnapshot(User user) {
+        return buildSnapshot(getScope(user));
+    }
+
+    // ==================== 增量更新 ====================
+
+    /**
+     * 拜访记录维度变化（新增时 before 为空，删除时 after 为空），事务提交后更新今日计数
+     *
+     * @param before 变化前的维度
+     * @param after 变化后的维度
+     */
+    public void onVisitChanged(VisitDailyStatService.StatKey before, VisitDailyStatService.StatKey after) {
+        runAfterCommit(() -> {
+            LocalDate today = LocalDate.now();
+            if (before != null && today.equals(before.getStatDate())) {
+                adjustVisits(before.getSalesId(), -1);
+            }
+            if (after != null && today.equals(after.getStatDate())) {
+                adjustVisits(after.getSalesId(), 1);
+            }
+        });
+    }
+
+    /**
+     * 客户新增后更新今日新增客户计数
+     *
+     * @param customer 新增的客户
+     */
+    public void onCustomerCreated(Customer customer) {
+        adjustCustomers(customer, 1);
+    }
+
+    /**
+     * 批量新增客户后更新今日新增客户计数，整批只注册一次提交回调
+     *
+     * @param customers 新增的客户
+     */
+    public void onCustomersCreated(List<Customer> customers) {
+        LocalDate today = LocalDate.now();
+        long total = 0;
+        Map<Long, Long> countsByCreator = new HashMap<>();
+        for (Customer customer : customers) {
+            if (customer.getCreatedAt() != null && !today.equals(customer.getCreatedAt().toLocalDate())) {
+                continue;
+            }
+            total++;
+            if (customer.getCreatedBy() != null) {
+                countsByCreator.merge(customer.getCreatedBy().getId(), 1L, Long::sum);
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+        long created = total;
+        runAfterCommit(() -> {
+            adjust(SCOPE_ALL, 0, created);
+            countsByCreator.forEach((createdById, count) -> adjust(SCOPE_SALES_PREFIX + createdById, 0, count));
+        });
+    }
+
+    /**
+     * 客户删除后更新今日新增客户计数
+     *
+     * @param customer 删除的客户
+     */
+    public void onCustomerDeleted(Customer customer) {
+        adjustCustomers(customer, -1);
+    }
+
+    // ==================== 定时推送 ====================
+
+    /**
+     * 合并推送发生变化的数据范围，并处理跨天重置
+     */
+    @Scheduled(fixedDelay = 2000)
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(counterDate)) {
+            counterDate = today;
+            counters.clear();
+            dirtyScopes.addAll(subscribers.keySet());
+        }
+
+        for (String scope : new ArrayList<>(dirtyScopes)) {
+            dirtyScopes.remove(scope);
+            Set<Subscriber> scopeSubscribers = subscribers.get(scope);
+            if (scopeSubscribers == null || scopeSubscribers.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> snapshot = buildSnapshot(scope);
+            for (Subscriber subscriber : scopeSubscribers) {
+                send(scope, subscriber, snapshot);
+            }
+        }
+    }
+
+    /**
+     * 定时用数据库中的值校准有订阅者的数据范围
+     * 加载期间到达的增量可能漏计，事务提交与提交回调之间的增量可能被重复累加，校准把这类偏差限制在一个周期内。
+     * 没有订阅者的范围直接移出内存，下次访问时重新加载
+     */
+    @Scheduled(fixedDelay = RECONCILE_INTERVAL_MS, initialDelay = RECONCILE_INTERVAL_MS)
+    public void reconcile() {
+        for (String scope : new ArrayList<>(counters.keySet())) {
+            Set<Subscriber> scopeSubscribers = subscribers.get(scope);
+            if (scopeSubscribers == null || scopeSubscribers.isEmpty()) {
+                counters.remove(scope);
+                continue;
+            }
+            ScopeCounters current = counters.get(scope);
+            if (current == null) {
+                continue;
+            }
+            try {
+                // 按查询前后的差值修正，查询期间到达的增量保留在计数中
+                long visitsBefore = current.getTodayVisits().get();
+                long customersBefore = current.getTodayNewCustomers().get();
+                ScopeCounters loaded = loadCounters(scope);
+                long visitDrift = loaded.getTodayVisits().get() - visitsBefore;
+                long customerDrift = loaded.getTodayNewCustomers().get() - customersBefore;
+                if (visitDrift != 0 || customerDrift != 0) {
+                    log.debug("校准实时计数: scope={}, visits {} -> {}, customers {} -> {}", scope,
+                            visitsBefore, loaded.getTodayVisits().get(),
+                            customersBefore, loaded.getTodayNewCustomers().get());
+                    current.getTodayVisits().addAndGet(visitDrift);
+                    current.getTodayNewCustomers().addAndGet(customerDrift);
+                    dirtyScopes.add(scope);
+                }
+            } catch (Exception e) {
+                log.warn("校准实时计数失败: scope={}, 原因: {}", scope, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时发送心跳，避免代理断开空闲连接
+     */
+    @Scheduled(fixedRate = 25000)
+    public void heartbeat() {
+        subscribers.forEach((scope, scopeSubscribers) -> {
+            for (Subscriber subscriber : scopeSubscribers) {
+                try {
+                    subscriber.getEmitter().send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    removeSubscriber(scope, subscriber);
+                }
+            }
+        });
+    }
+
+    // ==================== 私有方法 ====================
+
+    private String getScope(User user) {
+        return user.getRole() == User.UserRole.SALES ? SCOPE_SALES_PREFIX + user.getId() : SCOPE_ALL;
+    }
+
+    private Map<String, Object> buildSnapshot(String scope) {
+        ScopeCounters scopeCounters = counters.get(scope);
+        if (scopeCounters == null) {
+            // 在 ConcurrentHashMap 的 compute 之外查询数据库，查询期间不阻塞同一哈希桶上的其他写入
+            ScopeCounters loaded = loadCounters(scope);
+            ScopeCounters existing = counters.putIfAbsent(scope, loaded);
+            scopeCounters = existing != null ? existing : loaded;
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("onlineUsers", countOnlineUsers());
+        snapshot.put("todayVisits", scopeCounters.getTodayVisits().get());
+        snapshot.put("todayNewCustomers", scopeCounters.getTodayNewCustomers().get());
+        snapshot.put("systemStatus", "正常");
+        snapshot.put("timestamp", LocalDateTime.now());
+        return snapshot;
+    }
+
+    /**
+     * 首次访问某个数据范围时从数据库加载今日计数，之后只做增量更新
+     */
+    private ScopeCounters loadCounters(String scope) {
+        LocalDate today = LocalDate.now();
+        LocalDateTime startOfDay = today.atStartOfDay();
+        ScopeCounters scopeCounters = new ScopeCounters();
+
+        if (SCOPE_ALL.equals(scope)) {
+            scopeCounters.getTodayVisits().set(visitDailyStatRepository.sumVisitCount(null, today, today));
+            scopeCounters.getTodayNewCustomers().set(customerRepository.countByCreatedAtAfter(startOfDay));
+        } else {
+            Long salesId = Long.valueOf(scope.substring(SCOPE_SALES_PREFIX.length()));
+            scopeCounters.getTodayVisits().set(visitDailyStatRepository.sumVisitCount(salesId, today, today));
+            scopeCounters.getTodayNewCustomers().set(customerRepository.countBySalesIdAndCreatedAtAfter(salesId, startOfDay));
+        }
+        return scopeCounters;
+    }
+
+    private void adjustVisits(Long salesId, long delta) {
+        adjust(SCOPE_ALL, delta, 0);
+        adjust(SCOPE_SALES_PREFIX + salesId, delta, 0);
+    }
+
+    private void adjustCustomers(Customer customer, long delta) {
+        LocalDateTime createdAt = customer.getCreatedAt();
+        Long createdById = customer.getCreatedBy() != null ? customer.getCreatedBy().getId() : null;
+        runAfterCommit(() -> {
+            if (createdAt != null && !LocalDate.now().equals(createdAt.toLocalDate())) {
+                return;
+            }
+            adjust(SCOPE_ALL, 0, delta);
+            if (createdById != null) {
+                adjust(SCOPE_SALES_PREFIX + createdById, 0, delta);
+            }
+        });
+    }
+
+    /**
+     * 只更新已加载的数据范围，未加载的范围在首次访问时从数据库读取最新值；
+     * 加载进行中到达的增量会漏计，由定时校准修正
+     */
+    private void adjust(String scope, long visitDelta, long customerDelta) {
+        ScopeCounters scopeCounters = counters.get(scope);
+        if (scopeCounters != null) {
+            scopeCounters.getTodayVisits().addAndGet(visitDelta);
+            scopeCounters.getTodayNewCustomers().addAndGet(customerDelta);
+            dirtyScopes.add(scope);
+        }
+    }
+
+    private long countOnlineUsers() {
+        return subscribers.values().stream()
+                .flatMap(Set::stream)
+                .map(Subscriber::getUserId)
+                .distinct()
+                .count();
+    }
+
+    private void send(String scope, Subscriber subscriber, Map<String, Object> data) {
+        try {
+            subscriber.getEmitter().send(SseEmitter.event().name("realtime").data(data));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("实时数据推送失败，移除订阅: userId={}", subscriber.getUserId());
+            removeSubscriber(scope, subscriber);
+        }
+    }
+
+    private void removeSubscriber(String scope, Subscriber subscriber) {
+        Set<Subscriber> scopeSubscribers = subscribers.get(scope);
+        if (scopeSubscribers != null) {
+            scopeSubscribers.remove(subscriber);
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 单个数据范围的今日计数
+     */
+    @Getter
+    private static class ScopeCounters {
+        private final AtomicLong todayVisits = new AtomicLong();
+        private final AtomicLong todayNewCustomers = new AtomicLong();
+    }
+
+    /**
+     * SSE订阅者
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+    }
+}
@@ -12,6 +12,8 @@ import com.proshine.visitmanagement.entity.User;
 import com.proshine.visitmanagement.exception.BusinessException;
 import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.*;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.util.BatchUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -23,9 +25,11 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 学校服务类
@@ -43,7 +47,9 @@ public class SchoolService {
     private final DepartmentRepository departmentRepository;
     private final CustomerRepository customerRepository;
     private final VisitRecordRepository visitRecordRepository;
-    private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
+    private final CustomerSearchService customerSearchService;
+    private final ExportService exportService;
 
     // ==================== Controller调用的核心方法 ====================
 
@@ -133,8 +139,8 @@ public class SchoolService {
                 .orElseThrow(() -> new ResourceNotFoundException("学校不存在"));
 
         // 检查学校名称是否已被其他学校使用
-        if (!school.getName().equals(request.getName()) &&
-                schoolRepository.existsByName(request.getName())) {
+        boolean nameChanged = !school.getName().equals(request.getName());
+        if (nameChanged && schoolRepository.existsByName(request.getName())) {
             throw new BusinessException("学校名称已存在");
         }
 
@@ -149,6 +155,10 @@ public class SchoolService {
         School savedSchool = schoolRepository.save(school);
         log.info("更新学校成功: {}", savedSchool.getName());
 
+        if (nameChanged) {
+            customerSearchService.onSchoolRenamed(savedSchool);
+        }
+
         return convertToResponse(savedSchool);
     }
 
@@ -180,30 +190,51 @@ public class SchoolService {
     public int batchDeleteSchools(List<Long> ids, Authentication authentication) {
         checkAdminPermission(authentication);
 
-        List<School> schools = schoolRepository.findAllById(ids);
+        List<List<Long>> idChunks = BatchUtils.chunkIds(ids);
+        List<School> schools = new ArrayList<>();
+        for (List<Long> chunk : idChunks) {
+            schools.addAll(schoolRepository.findAllById(chunk));
+        }
         if (schools.isEmpty()) {
             throw new BusinessException("未找到要删除的学校");
         }
 
-        // 检查是否有关联的院系
+        // 检查是否有关联的院系，每个分块一次分组统计
+        Set<Long> schoolIdsWithDepartments = new HashSet<>();
+        for (List<Long> chunk : idChunks) {
+            for (Object[] row : departmentRepository.countGroupBySchoolIdIn(chunk)) {
+                schoolIdsWithDepartments.add((Long) row[0]);
+            }
+        }
         for (School school : schools) {
-            List<Department> departments = departmentRepository.findBySchoolId(school.getId());
-            if (!departments.isEmpty()) {
+            if (schoolIdsWithDepartments.contains(school.getId())) {
                 throw new BusinessException("学校 " + school.getName() + " 存在关联的院系，无法删除");
             }
         }
 
-        schoolRepository.deleteAll(schools);
-        log.info("批量删除学校成功，数量: {}", schools.size());
+        int deletedCount = 0;
+        for (List<Long> chunk : idChunks) {
+            deletedCount += schoolRepository.softDeleteByIdIn(chunk);
+        }
+        log.info("批量删除学校成功，数量: {}", deletedCount);
 
-        return schools.size();
+        return deletedCount;
     }
 
     /**
-     * 获取学校列表用于导出（修复版本 - 添加authentication参数）
+     * 导出学校列表到输出流（供同步下载和异步导出任务使用）
+     * 学校及统计数据由一条流式查询逐行读出并写入，内存占用与学校数无关
+     *
+     * @param format 导出格式（excel / csv）
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @param outputStream 输出流
+     * @param progress 导出任务进度，同步下载时为 null
+     * @param authentication 认证信息
+     * @return 导出记录数
      */
-    public List<SchoolResponse> getSchoolsForExport(String keyword, String province,
-                                                    String city, String schoolType, Authentication authentication) {
+    public long exportSchools(String keyword, String province, String city, String schoolType, String format,
+                              boolean gzip, OutputStream outputStream,
+                              ExportJobService.ExportProgress progress, Authentication authentication) {
         log.info("导出学校列表: keyword={}, province={}, city={}, schoolType={}",
                 keyword, province, city, schoolType);
 
@@ -212,12 +243,20 @@ public class SchoolService {
 
         // 转换schoolType字符串为正则表达式
         String schoolTypesRegex = buildSchoolTypesRegex(schoolType);
+        if (progress != null) {
+            // 先统计总行数再打开流，任务进度才能按比例显示
+            progress.setTotalRows(schoolRepository.countSchoolsForExport(keyword, province, city, schoolTypesRegex));
+        }
 
-        List<School> schools = schoolRepository.findSchoolsForExport(keyword, province, city, schoolTypesRegex);
-
-        return schools.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        try (Stream<SchoolResponse> schools = schoolRepository.streamSchoolsForExport(
+                keyword, province, city, schoolTypesRegex)) {
+            long count = exportService.export(ExportService.withProgress(schools, progress),
+                    ExportService.SCHOOL_COLUMNS, "学校信息", format, gzip, outputStream);
+            if (progress != null) {
+                progress.setProcessedRows(count);
+            }
+            return count;
+        }
     }
 
     /**
@@ -435,9 +474,7 @@ public class SchoolService {
      * 获取当前用户
      */
     private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        return userDetailsService.getCurrentUser(authentication);
     }
 
     /**
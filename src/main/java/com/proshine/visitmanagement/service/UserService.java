@@ -7,20 +7,33 @@ import com.proshine.visitmanagement.entity.User;
 import com.proshine.visitmanagement.exception.BusinessException;
 import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.UserRepository;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.util.BatchUtils;
 import com.proshine.visitmanagement.util.ExcelUtils;
+import com.proshine.visitmanagement.util.ValidationUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -35,8 +48,18 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class UserService {
     
+    /**
+     * 导入时每批校验和保存的用户数
+     */
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CustomUserDetailsService userDetailsService;
+    @Qualifier("passwordHashExecutor")
+    private final Executor passwordHashExecutor;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
     
     /**
      * 分页查询用户
@@ -153,6 +176,7 @@ public class UserService {
             throw new BusinessException("邮箱已存在");
         }
         
+        String oldUsername = user.getUsername();
         user.setUsername(request.getUsername());
         user.setRealName(request.getRealName());
         user.setEmail(request.getEmail());
@@ -167,6 +191,7 @@ public class UserService {
         }
         
         User savedUser = userRepository.save(user);
+        userDetailsService.evictUser(id, oldUsername, savedUser.getUsername());
         log.info("更新用户成功: {}", savedUser.getUsername());
         
         return convertToResponse(savedUser);
@@ -183,6 +208,7 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
         
         userRepository.delete(user);
+        userDetailsService.evictUser(id, user.getUsername());
         log.info("删除用户成功: {}", user.getUsername());
     }
     
@@ -193,14 +219,17 @@ public class UserService {
      */
     @Transactional
     public int batchDeleteUsers(List<Long> ids) {
-        List<User> users = userRepository.findAllById(ids);
-        if (users.isEmpty()) {
+        int deletedCount = 0;
+        for (List<Long> chunk : BatchUtils.chunkIds(ids)) {
+            deletedCount += userRepository.softDeleteByIdIn(chunk);
+        }
+        if (deletedCount == 0) {
             throw new BusinessException("未找到要删除的用户");
         }
+        userDetailsService.evictAll();
         
-        userRepository.deleteAll(users);
-        log.info("批量删除用户成功，数量: {}", users.size());
-        return users.size();
+        log.info("批量删除用户成功，数量: {}", deletedCount);
+        return deletedCount;
     }
 
     /**
@@ -278,101 +307,145 @@ public class UserService {
 
     /**
      * 从Excel文件批量导入用户
+     * 先逐行校验必填项和文件内重复，再按批用IN查询剔除已存在的用户名、邮箱，
+     * 密码在专用线程池上并行哈希，每批在独立事务中保存，
+     * 整批失败（如并发导入占用了同一用户名）时逐行重试，失败的行记为错误
      *
      * @param file Excel文件
      * @return 导入结果
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> importUsersFromExcel(MultipartFile file) {
         Map<String, Object> result = new HashMap<>();
         List<String> errors = new ArrayList<>();
         int successCount = 0;
         int failCount = 0;
 
+        List<Map<String, Object>> excelData;
         try {
-            // 这里需要使用Excel解析工具类来读取文件
-            // 假设ExcelUtils.parseExcel返回List<Map<String, Object>>
-            List<Map<String, Object>> excelData = ExcelUtils.parseExcel(file);
-
-            for (int i = 0; i < excelData.size(); i++) {
-                Map<String, Object> row = excelData.get(i);
-                try {
-                    // 验证必填字段
-                    String username = (String) row.get("username");
-                    String password = (String) row.get("password");
-                    String realName = (String) row.get("realName");
-                    String email = (String) row.get("email");
-                    String phone = (String) row.get("phone");
-                    String role = (String) row.get("role");
-                    String department = (String) row.get("department");
-
-                    if (!StringUtils.hasText(username) || !StringUtils.hasText(password)
-                            || !StringUtils.hasText(realName)) {
-                        errors.add(String.format("第%d行：用户名、密码、真实姓名不能为空", i + 2));
-                        failCount++;
-                        continue;
-                    }
-
-                    // 检查用户名是否已存在
-                    if (userRepository.existsByUsername(username)) {
-                        errors.add(String.format("第%d行：用户名'%s'已存在", i + 2, username));
-                        failCount++;
-                        continue;
-                    }
-
-                    // 检查邮箱是否已存在
-                    if (StringUtils.hasText(email) && userRepository.existsByEmail(email)) {
-                        errors.add(String.format("第%d行：邮箱'%s'已存在", i + 2, email));
-                        failCount++;
-                        continue;
-                    }
-
-                    // 创建用户
-                    User user = new User();
-                    user.setUsername(username);
-                    user.setPassword(passwordEncoder.encode(password));
-                    user.setRealName(realName);
-                    user.setEmail(email);
-                    user.setPhone(phone);
-
-                    // 验证并设置角色
-                    try {
-                        user.setRole(User.UserRole.valueOf(role.toUpperCase()));
-                    } catch (Exception e) {
-                        user.setRole(User.UserRole.SALES); // 默认角色
-                    }
+            excelData = ExcelUtils.parseExcel(file);
+        } catch (Exception e) {
+            log.error("解析Excel文件失败", e);
+            result.put("successCount", 0);
+            result.put("failCount", 0);
+            result.put("errors", Arrays.asList("Excel文件解析失败: " + e.getMessage()));
+            result.put("totalCount", 0);
+            return result;
+        }
 
-                    user.setDepartment(department);
-                    user.setStatus(User.UserStatus.ACTIVE);
+        // 逐行校验，通过的行进入候选列表
+        List<ImportRow> candidates = new ArrayList<>();
+        Set<String> fileUsernames = new HashSet<>();
+        Set<String> fileEmails = new HashSet<>();
+        for (int i = 0; i < excelData.size(); i++) {
+            Map<String, Object> row = excelData.get(i);
+            ImportRow importRow = new ImportRow(i + 2, importText(row, "username"), importText(row, "password"),
+                    importText(row, "realName"), importText(row, "email"), importText(row, "phone"),
+                    importText(row, "role"), importText(row, "department"));
+
+            String error = validateImportRow(importRow);
+            if (error == null && !fileUsernames.add(importRow.username.toLowerCase())) {
+                error = String.format("用户名'%s'在文件中重复", importRow.username);
+            }
+            if (error == null && importRow.email != null && !fileEmails.add(importRow.email.toLowerCase())) {
+                error = String.format("邮箱'%s'在文件中重复", importRow.email);
+            }
 
-                    userRepository.save(user);
-                    successCount++;
+            if (error != null) {
+                errors.add(String.format("第%d行：%s", importRow.rowNumber, error));
+                failCount++;
+            } else {
+                candidates.add(importRow);
+            }
+        }
 
-                } catch (Exception e) {
-                    errors.add(String.format("第%d行：导入失败 - %s", i + 2, e.getMessage()));
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (int from = 0; from < candidates.size(); from += IMPORT_BATCH_SIZE) {
+            List<ImportRow> chunk = candidates.subList(from, Math.min(from + IMPORT_BATCH_SIZE, candidates.size()));
+
+            // 每批各一次IN查询取已存在的用户名和邮箱
+            Set<String> existingUsernames = toLowerCaseSet(userRepository.findExistingUsernames(
+                    chunk.stream().map(row -> row.username).collect(Collectors.toList())));
+            List<String> chunkEmails = chunk.stream()
+                    .map(row -> row.email)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            Set<String> existingEmails = chunkEmails.isEmpty() ? Collections.emptySet() :
+                    toLowerCaseSet(userRepository.findExistingEmails(chunkEmails));
+
+            List<ImportRow> accepted = new ArrayList<>();
+            for (ImportRow row : chunk) {
+                if (existingUsernames.contains(row.username.toLowerCase())) {
+                    errors.add(String.format("第%d行：用户名'%s'已存在", row.rowNumber, row.username));
                     failCount++;
-                    log.error("导入用户失败: 第{}行", i + 2, e);
+                } else if (row.email != null && existingEmails.contains(row.email.toLowerCase())) {
+                    errors.add(String.format("第%d行：邮箱'%s'已存在", row.rowNumber, row.email));
+                    failCount++;
+                } else {
+                    accepted.add(row);
                 }
             }
 
-            result.put("successCount", successCount);
-            result.put("failCount", failCount);
-            result.put("errors", errors);
-            result.put("totalCount", excelData.size());
+            // BCrypt为CPU密集型计算，在有界线程池上并行执行
+            List<CompletableFuture<String>> hashes = accepted.stream()
+                    .map(row -> CompletableFuture.supplyAsync(
+                            () -> passwordEncoder.encode(row.password), passwordHashExecutor))
+                    .collect(Collectors.toList());
 
-            log.info("用户批量导入完成: 成功{}个, 失败{}个", successCount, failCount);
+            Map<Integer, User> users = new LinkedHashMap<>();
+            for (int i = 0; i < accepted.size(); i++) {
+                users.put(accepted.get(i).rowNumber, accepted.get(i).toUser(hashes.get(i).join()));
+            }
+            if (users.isEmpty()) {
+                continue;
+            }
 
-        } catch (Exception e) {
-            log.error("解析Excel文件失败", e);
-            result.put("successCount", 0);
-            result.put("failCount", 0);
-            result.put("errors", Arrays.asList("Excel文件解析失败: " + e.getMessage()));
-            result.put("totalCount", 0);
+            try {
+                saveImportedUsers(chunkTransaction, new ArrayList<>(users.values()));
+                successCount += users.size();
+            } catch (RuntimeException e) {
+                log.warn("用户导入批次写入失败，逐行重试: {}", NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                for (Map.Entry<Integer, User> entry : users.entrySet()) {
+                    User user = entry.getValue();
+                    // 回滚前已分配的ID不再有效，重新分配
+                    user.setId(null);
+                    try {
+                        saveImportedUsers(chunkTransaction, Collections.singletonList(user));
+                        successCount++;
+                    } catch (RuntimeException rowException) {
+                        errors.add(String.format("第%d行：写入失败: %s", entry.getKey(),
+                                NestedExceptionUtils.getMostSpecificCause(rowException).getMessage()));
+                        failCount++;
+                    }
+                }
+            }
         }
 
+        result.put("successCount", successCount);
+        result.put("failCount", failCount);
+        result.put("errors", errors);
+        result.put("totalCount", excelData.size());
+
+        log.info("用户批量导入完成: 成功{}个, 失败{}个", successCount, failCount);
         return result;
     }
 
+    /**
+     * 在独立事务中保存并立即flush，唯一约束冲突在本批内抛出而不是拖到外层提交
+     */
+    private void saveImportedUsers(TransactionTemplate chunkTransaction, List<User> users) {
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                userRepository.saveAll(users);
+                userRepository.flush();
+            });
+        } finally {
+            entityManager.clear();
+        }
+    }
+
     /**
      * 更新用户状态
      * 
@@ -386,6 +459,7 @@ public class UserService {
         
         user.setStatus(status);
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
         log.info("更新用户状态成功: {} -> {}", user.getUsername(), status);
     }
     
@@ -402,6 +476,7 @@ public class UserService {
         
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
         log.info("重置用户密码成功: {}", user.getUsername());
     }
     
@@ -417,6 +492,7 @@ public class UserService {
         
         user.setLastLoginAt(LocalDateTime.now());
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
     }
     
     /**
@@ -497,9 +573,7 @@ public class UserService {
      * @return 是否有权限
      */
     public boolean hasPermission(Long targetUserId, Authentication authentication) {
-        String currentUsername = authentication.getName();
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        User currentUser = userDetailsService.getCurrentUser(authentication);
         
         // 管理员有所有权限
         if (currentUser.getRole() == User.UserRole.ADMIN) {
@@ -598,6 +672,7 @@ public class UserService {
         
         user.setAvatarUrl(avatarUrl);
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
         log.info("更新用户头像成功: {}", user.getUsername());
     }
     
@@ -631,6 +706,7 @@ public class UserService {
         }
         
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
         log.info("更新用户个人信息成功: {}", user.getUsername());
     }
 
@@ -648,6 +724,7 @@ public class UserService {
         User.UserStatus newStatus = enabled ? User.UserStatus.ACTIVE : User.UserStatus.INACTIVE;
         user.setStatus(newStatus);
         userRepository.save(user);
+        userDetailsService.evictUser(id, user.getUsername());
 
         log.info("修改用户状态成功: {} -> {}", user.getUsername(), newStatus);
     }
@@ -660,9 +737,7 @@ public class UserService {
      * @return 是否为当前用户
      */
     public boolean isCurrentUser(Long userId, Authentication authentication) {
-        String currentUsername = authentication.getName();
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        User currentUser = userDetailsService.getCurrentUser(authentication);
 
         return currentUser.getId().equals(userId);
     }
@@ -691,4 +766,99 @@ public class UserService {
                 .updatedAt(user.getUpdatedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * 校验导入行的必填项、长度和格式
+     *
+     * @param row 导入行
+     * @return 错误信息，校验通过时为null
+     */
+    private String validateImportRow(ImportRow row) {
+        if (row.username == null || row.password == null || row.realName == null) {
+            return "用户名、密码、真实姓名不能为空";
+        }
+        if (row.username.length() > 50) {
+            return "用户名长度不能超过50个字符";
+        }
+        if (row.realName.length() > 100) {
+            return "真实姓名长度不能超过100个字符";
+        }
+        if (row.email != null && (row.email.length() > 100 || !ValidationUtils.isValidEmail(row.email))) {
+            return String.format("邮箱'%s'格式不正确", row.email);
+        }
+        if (row.phone != null && row.phone.length() > 20) {
+            return "手机号长度不能超过20个字符";
+        }
+        if (row.department != null && row.department.length() > 100) {
+            return "部门长度不能超过100个字符";
+        }
+        return null;
+    }
+
+    /**
+     * 读取导入单元格文本，数字单元格（如手机号）按原样转为字符串
+     */
+    private String importText(Map<String, Object> row, String key) {
+        Object value = row.get(key);
+        if (value == null) {
+            return null;
+        }
+        String text = value instanceof Number ?
+                new BigDecimal(value.toString()).stripTrailingZeros().toPlainString() : value.toString().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private Set<String> toLowerCaseSet(List<String> values) {
+        return values.stream()
+                .filter(Objects::nonNull)
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * 用户导入行
+     */
+    private static class ImportRow {
+
+        private final int rowNumber;
+        private final String username;
+        private final String password;
+        private final String realName;
+        private final String email;
+        private final String phone;
+        private final String role;
+        private final String department;
+
+        ImportRow(int rowNumber, String username, String password, String realName,
+                  String email, String phone, String role, String department) {
+            this.rowNumber = rowNumber;
+            this.username = username;
+            this.password = password;
+            this.realName = realName;
+            this.email = email;
+            this.phone = phone;
+            this.role = role;
+            this.department = department;
+        }
+
+        User toUser(String encodedPassword) {
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword(encodedPassword);
+            user.setRealName(realName);
+            user.setEmail(email);
+            user.setPhone(phone);
+
+            // 验证并设置角色
+            try {
+                user.setRole(User.UserRole.valueOf(role.toUpperCase()));
+            } catch (Exception e) {
+                user.setRole(User.UserRole.SALES); // 默认角色
+            }
+
+            user.setDepartment(department);
+            user.setStatus(User.UserStatus.ACTIVE);
+            return user;
+        }
+    }
+}
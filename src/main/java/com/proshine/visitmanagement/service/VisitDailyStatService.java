@@ -0,0 +1,293 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.entity.VisitDailyStat;
+import com.proshine.visitmanagement.entity.VisitRecord;
+import com.proshine.visitmanagement.repository.VisitDailyStatRepository;
+import com.proshine.visitmanagement.repository.VisitRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * 拜访日汇总服务类
+ * 在拜访记录写入时增量维护 visit_daily_stats 和实时计数，仪表盘统计按天读取汇总数据，
+ * 查询代价与天数相关而与拜访记录数无关
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class VisitDailyStatService {
+
+    /**
+     * 定时校准时回溯的天数
+     */
+    private static final int RECONCILE_DAYS = 7;
+
+    private final VisitDailyStatRepository visitDailyStatRepository;
+    private final VisitRecordRepository visitRecordRepository;
+    private final RealtimeDashboardService realtimeDashboardService;
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 拜访记录新增（含复制）后累加汇总
+     *
+     * @param visitRecord 已保存的拜访记录
+     */
+    @Transactional
+    public void onVisitCreated(VisitRecord visitRecord) {
+        StatKey key = StatKey.of(visitRecord);
+        apply(key, 1);
+        realtimeDashboardService.onVisitChanged(null, key);
+    }
+
+    /**
+     * 拜访记录删除后扣减汇总
+     *
+     * @param visitRecord 被删除的拜访记录
+     */
+    @Transactional
+    public void onVisitDeleted(VisitRecord visitRecord) {
+        StatKey key = StatKey.of(visitRecord);
+        apply(key, -1);
+        realtimeDashboardService.onVisitChanged(key, null);
+    }
+
+    /**
+     * 批量删除拜访记录后扣减汇总，相同维度合并为一次累加
+     *
+     * @param visitRecords 被删除的拜访记录
+     */
+    @Transactional
+    public void onVisitsDeleted(Collection<VisitRecord> visitRecords) {
+        Map<StatKey, Long> deltas = new LinkedHashMap<>();
+        for (VisitRecord visitRecord : visitRecords) {
+            StatKey key = StatKey.of(visitRecord);
+            deltas.merge(key, -1L, Long::sum);
+            realtimeDashboardService.onVisitChanged(key, null);
+        }
+        deltas.forEach(this::apply);
+    }
+
+    /**
+     * 拜访记录修改后迁移汇总，维度未变化时不做处理
+     *
+     * @param before 修改前的维度快照
+     * @param visitRecord 修改后的拜访记录
+     */
+    @Transactional
+    public void onVisitChanged(StatKey before, VisitRecord visitRecord) {
+        StatKey after = StatKey.of(visitRecord);
+        if (before.equals(after)) {
+            return;
+        }
+        apply(before, -1);
+        apply(after, 1);
+        realtimeDashboardService.onVisitChanged(before, after);
+    }
+
+    /**
+     * 客户合并后把源客户的汇总行并入目标客户，实时计数按销售人员统计，不受影响
+     *
+     * @param sourceIds 源客户ID
+     * @param targetId 目标客户ID
+     */
+    @Transactional
+    public void onCustomersMerged(Collection<Long> sourceIds, Long targetId) {
+        visitDailyStatRepository.mergeCustomerCounts(sourceIds, targetId);
+        visitDailyStatRepository.deleteByCustomerIdIn(sourceIds);
+    }
+
+    /**
+     * 重建日期范围内的汇总数据
+     *
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     */
+    @Transactional
+    public void rebuild(LocalDate startDate, LocalDate endDate) {
+        int deleted = visitDailyStatRepository.deleteByStatDateBetween(startDate, endDate);
+        int inserted = visitDailyStatRepository.rebuildByStatDateBetween(startDate, endDate);
+        log.info("重建拜访日汇总: {} ~ {}, 删除={}, 写入={}", startDate, endDate, deleted, inserted);
+    }
+
+    /**
+     * 启动时若汇总表为空则根据现有拜访记录全量构建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        if (visitDailyStatRepository.count() > 0) {
+            return;
+        }
+        LocalDate minDate = visitRecordRepository.findMinVisitDate();
+        LocalDate maxDate = visitRecordRepository.findMaxVisitDate();
+        if (minDate == null || maxDate == null) {
+            return;
+        }
+        rebuild(minDate, maxDate);
+    }
+
+    /**
+     * 每日凌晨校准最近几天的汇总数据，并清理数量归零的行
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    @Transactional
+    public void reconcile() {
+        LocalDate today = LocalDate.now();
+        rebuild(today.minusDays(RECONCILE_DAYS), today);
+        int removed = visitDailyStatRepository.deleteEmptyRows();
+        log.info("拜访日汇总校准完成, 清理空行={}", removed);
+    }
+
+    // ==================== 统计查询 ====================
+
+    /**
+     * 统计日期范围内的拜访总数
+     *
+     * @param salesId 销售人员ID（为空表示全部）
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 拜访总数
+     */
+    public long getVisitCount(Long salesId, LocalDate startDate, LocalDate endDate) {
+        return visitDailyStatRepository.sumVisitCount(salesId, startDate, endDate);
+    }
+
+    /**
+     * 按日期统计拜访数量
+     *
+     * @param salesId 销售人员ID（为空表示全部）
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 日期 -> 拜访数量
+     */
+    public Map<LocalDate, Long> getDailyCounts(Long salesId, LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, Long> counts = new HashMap<>();
+        for (Object[] row : visitDailyStatRepository.sumGroupByDate(salesId, startDate, endDate)) {
+            counts.put((LocalDate) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * 按状态 × 意向等级统计拜访数量，一次分组查询同时得到总数、各状态和各意向等级的数量
+     *
+     * @param salesId 销售人员ID（为空表示全部）
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 交叉计数
+     */
+    public StatusIntentCounts getStatusIntentCounts(Long salesId, LocalDate startDate, LocalDate endDate) {
+        StatusIntentCounts counts = new StatusIntentCounts();
+        for (Object[] row : visitDailyStatRepository.sumGroupByStatusAndIntentLevel(salesId, startDate, endDate)) {
+            counts.add((String) row[0], (String) row[1], ((Number) row[2]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * 按销售人员统计拜访数量，按数量降序
+     *
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 销售人员ID -> 拜访数量（保持降序）
+     */
+    public LinkedHashMap<Long, Long> getSalesCounts(LocalDate startDate, LocalDate endDate) {
+        return toOrderedMap(visitDailyStatRepository.sumGroupBySales(startDate, endDate));
+    }
+
+    /**
+     * 按客户统计拜访数量，按数量降序
+     *
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 客户ID -> 拜访数量（保持降序）
+     */
+    public LinkedHashMap<Long, Long> getCustomerCounts(LocalDate startDate, LocalDate endDate) {
+        return toOrderedMap(visitDailyStatRepository.sumGroupByCustomer(startDate, endDate));
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void apply(StatKey key, long delta) {
+        visitDailyStatRepository.upsertCount(key.getStatDate(), key.getSalesId(), key.getCustomerId(),
+                key.getStatus(), key.getIntentLevel(), key.getVisitType(), delta);
+    }
+
+    private LinkedHashMap<Long, Long> toOrderedMap(List<Object[]> rows) {
+        LinkedHashMap<Long, Long> result = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            result.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        return result;
+    }
+
+    /**
+     * 状态 × 意向等级交叉计数，未出现的状态或意向等级计为 0
+     */
+    public static class StatusIntentCounts {
+
+        private final Map<VisitRecord.VisitStatus, Long> statusCounts = new EnumMap<>(VisitRecord.VisitStatus.class);
+        private final Map<VisitRecord.IntentLevel, Long> intentCounts = new EnumMap<>(VisitRecord.IntentLevel.class);
+        private long total;
+
+        private void add(String status, String intentLevel, long count) {
+            total += count;
+            statusCounts.merge(VisitRecord.VisitStatus.valueOf(status), count, Long::sum);
+            if (!VisitDailyStat.NONE.equals(intentLevel)) {
+                intentCounts.merge(VisitRecord.IntentLevel.valueOf(intentLevel), count, Long::sum);
+            }
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getStatusCount(VisitRecord.VisitStatus status) {
+            return statusCounts.getOrDefault(status, 0L);
+        }
+
+        public long getIntentCount(VisitRecord.IntentLevel intentLevel) {
+            return intentCounts.getOrDefault(intentLevel, 0L);
+        }
+    }
+
+    /**
+     * 汇总维度键，用于在修改前保存拜访记录的维度快照
+     */
+    @Value
+    public static class StatKey {
+        LocalDate statDate;
+        Long salesId;
+        Long customerId;
+        String status;
+        String intentLevel;
+        String visitType;
+
+        /**
+         * 从拜访记录提取汇总维度
+         */
+        public static StatKey of(VisitRecord visitRecord) {
+            return new StatKey(
+                    visitRecord.getVisitDate(),
+                    visitRecord.getSales().getId(),
+                    visitRecord.getCustomer().getId(),
+                    visitRecord.getStatus().name(),
+                    visitRecord.getIntentLevel() != null ? visitRecord.getIntentLevel().name() : VisitDailyStat.NONE,
+                    visitRecord.getVisitType() != null ? visitRecord.getVisitType().name() : VisitDailyStat.NONE);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.proshine.visitmanagement.service;
 
+import com.proshine.visitmanagement.config.CacheConfig;
 import com.proshine.visitmanagement.dto.request.CustomerRequest;
 import com.proshine.visitmanagement.dto.request.VisitRecordRequest;
+import com.proshine.visitmanagement.dto.response.CursorPageResponse;
 import com.proshine.visitmanagement.dto.response.CustomerResponse;
 import com.proshine.visitmanagement.dto.response.PageResponse;
 import com.proshine.visitmanagement.dto.response.VisitRecordResponse;
 import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.Department;
 import com.proshine.visitmanagement.entity.User;
 import com.proshine.visitmanagement.entity.VisitRecord;
 import com.proshine.visitmanagement.exception.BusinessException;
@@ -13,26 +16,32 @@ import com.proshine.visitmanagement.exception.ResourceNotFoundException;
 import com.proshine.visitmanagement.repository.CustomerRepository;
 import com.proshine.visitmanagement.repository.UserRepository;
 import com.proshine.visitmanagement.repository.VisitRecordRepository;
+import com.proshine.visitmanagement.security.CustomUserDetailsService;
+import com.proshine.visitmanagement.util.BatchUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 拜访记录服务类
@@ -49,7 +58,11 @@ public class VisitRecordService {
     private final VisitRecordRepository visitRecordRepository;
     private final CustomerRepository customerRepository;
     private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
     private final CustomerService customerService;
+    private final VisitDailyStatService visitDailyStatService;
+    private final VisitSearchService visitSearchService;
+    private final ExportService exportService;
 
     /**
      * 分页查询拜访记录
@@ -85,15 +98,12 @@ public class VisitRecordService {
                 VisitRecord.IntentLevel.valueOf(intentLevel) : null;
 
         // 使用正确的参数顺序调用Repository方法
-        Page<VisitRecord> visitPage = visitRecordRepository.findVisitRecordsWithFilters(
-                keyword, salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel, pageable);
-
-        List<VisitRecordResponse> visitResponses = visitPage.getContent().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        Page<VisitRecordResponse> visitPage = visitRecordRepository.findVisitRecordsWithFilters(
+                visitSearchService.toFullTextQuery(keyword), visitSearchService.toLikeKeyword(keyword),
+                salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel, pageable);
 
         return PageResponse.<VisitRecordResponse>builder()
-                .content(visitResponses)
+                .content(visitPage.getContent())
                 .page(visitPage.getNumber())
                 .size(visitPage.getSize())
                 .totalElements(visitPage.getTotalElements())
@@ -104,6 +114,81 @@ public class VisitRecordService {
                 .build();
     }
 
+    /**
+     * 游标分页查询拜访记录
+     * 按 (visitDate, createdAt, id) 定位，翻页越深也不会变慢；仅在 withTotal 为 true 时执行 COUNT 查询
+     *
+     * @param keyword 关键词
+     * @param salesId 销售人员ID
+     * @param customerId 客户ID
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param status 状态
+     * @param intentLevel 意向等级
+     * @param cursor 上一批返回的游标，为空时从第一条开始
+     * @param size 每批数量
+     * @param withTotal 是否返回总数
+     * @param authentication 认证信息
+     * @return 游标分页拜访记录列表
+     */
+    public CursorPageResponse<VisitRecordResponse> getVisitRecordsByCursor(String keyword, Long salesId, Long customerId,
+                                                                           LocalDate startDate, LocalDate endDate,
+                                                                           String status, String intentLevel,
+                                                                           String cursor, int size, boolean withTotal,
+                                                                           Authentication authentication) {
+        // 权限控制
+        Long currentUserId = getCurrentUserId(authentication);
+        User currentUser = getCurrentUser(authentication);
+
+        // 非管理员只能查看自己的拜访记录
+        if (currentUser.getRole() == User.UserRole.SALES && (salesId == null || !salesId.equals(currentUserId))) {
+            salesId = currentUserId;
+        }
+
+        // 转换状态和意向等级
+        VisitRecord.VisitStatus visitStatus = StringUtils.hasText(status) ?
+                VisitRecord.VisitStatus.valueOf(status) : null;
+        VisitRecord.IntentLevel visitIntentLevel = StringUtils.hasText(intentLevel) ?
+                VisitRecord.IntentLevel.valueOf(intentLevel) : null;
+
+        // 解析游标
+        LocalDate cursorDate = null;
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (StringUtils.hasText(cursor)) {
+            String[] parts = decodeCursor(cursor);
+            try {
+                cursorDate = LocalDate.parse(parts[0]);
+                cursorCreatedAt = LocalDateTime.parse(parts[1]);
+                cursorId = Long.valueOf(parts[2]);
+            } catch (RuntimeException e) {
+                throw new BusinessException("无效的分页游标");
+            }
+        }
+
+        Slice<VisitRecordResponse> visitSlice = visitRecordRepository.findVisitRecordsAfterCursor(
+                visitSearchService.toFullTextQuery(keyword), visitSearchService.toLikeKeyword(keyword),
+                salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel,
+                cursorDate, cursorCreatedAt, cursorId, PageRequest.of(0, size));
+
+        String nextCursor = null;
+        if (visitSlice.hasNext() && !visitSlice.getContent().isEmpty()) {
+            nextCursor = encodeCursor(visitSlice.getContent().get(visitSlice.getNumberOfElements() - 1));
+        }
+
+        Long totalElements = withTotal ? visitRecordRepository.countVisitRecordsWithFilters(
+                visitSearchService.toFullTextQuery(keyword), visitSearchService.toLikeKeyword(keyword),
+                salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel) : null;
+
+        return CursorPageResponse.<VisitRecordResponse>builder()
+                .content(visitSlice.getContent())
+                .size(size)
+                .hasNext(visitSlice.hasNext())
+                .nextCursor(nextCursor)
+                .totalElements(totalElements)
+                .build();
+    }
+
     /**
      * 根据ID获取拜访记录详情
      *
@@ -129,6 +214,7 @@ public class VisitRecordService {
      * @return 创建的拜访记录
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public VisitRecordResponse createVisitRecord(VisitRecordRequest request, Authentication authentication) {
         Customer customer;
         
@@ -195,6 +281,7 @@ public class VisitRecordService {
         visitRecord.setWeather(request.getWeather());
 
         VisitRecord savedRecord = visitRecordRepository.save(visitRecord);
+        visitDailyStatService.onVisitCreated(savedRecord);
         log.info("创建拜访记录成功: ID={}, 客户ID={}", savedRecord.getId(), customer.getId());
 
         return convertToResponse(savedRecord);
@@ -209,12 +296,14 @@ public class VisitRecordService {
      * @return 更新的拜访记录
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public VisitRecordResponse updateVisitRecord(Long id, VisitRecordRequest request, Authentication authentication) {
         VisitRecord visitRecord = visitRecordRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("拜访记录不存在"));
 
         // 权限检查
         checkVisitRecordPermission(visitRecord, authentication);
+        VisitDailyStatService.StatKey statKeyBefore = VisitDailyStatService.StatKey.of(visitRecord);
 
         // 验证客户是否存在
         if (request.getCustomerId() != null && !visitRecord.getCustomer().getId().equals(request.getCustomerId())) {
@@ -253,6 +342,7 @@ public class VisitRecordService {
         visitRecord.setWeather(request.getWeather());
 
         VisitRecord savedRecord = visitRecordRepository.save(visitRecord);
+        visitDailyStatService.onVisitChanged(statKeyBefore, savedRecord);
         log.info("更新拜访记录成功: ID={}", id);
 
         return convertToResponse(savedRecord);
@@ -265,6 +355,7 @@ public class VisitRecordService {
      * @param authentication 认证信息
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public void deleteVisitRecord(Long id, Authentication authentication) {
         VisitRecord visitRecord = visitRecordRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("拜访记录不存在"));
@@ -273,6 +364,7 @@ public class VisitRecordService {
         checkVisitRecordPermission(visitRecord, authentication);
 
         visitRecordRepository.delete(visitRecord);
+        visitDailyStatService.onVisitDeleted(visitRecord);
         log.info("删除拜访记录成功: ID={}", id);
     }
 
@@ -284,12 +376,17 @@ public class VisitRecordService {
      * @return 删除的记录数量
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public int batchDeleteVisitRecords(List<Long> ids, Authentication authentication) {
         if (ids == null || ids.isEmpty()) {
             throw new BusinessException("删除ID列表不能为空");
         }
 
-        List<VisitRecord> visitRecords = visitRecordRepository.findAllById(ids);
+        List<List<Long>> idChunks = BatchUtils.chunkIds(ids);
+        List<VisitRecord> visitRecords = new ArrayList<>();
+        for (List<Long> chunk : idChunks) {
+            visitRecords.addAll(visitRecordRepository.findAllById(chunk));
+        }
         if (visitRecords.isEmpty()) {
             throw new BusinessException("未找到要删除的拜访记录");
         }
@@ -299,10 +396,15 @@ public class VisitRecordService {
             checkVisitRecordPermission(visitRecord, authentication);
         }
 
-        visitRecordRepository.deleteAll(visitRecords);
-        log.info("批量删除拜访记录成功，数量: {}", visitRecords.size());
+        // 每个分块一条 UPDATE ... WHERE id IN (...)，不再逐条软删除
+        int deletedCount = 0;
+        for (List<Long> chunk : idChunks) {
+            deletedCount += visitRecordRepository.softDeleteByIdIn(chunk);
+        }
+        visitDailyStatService.onVisitsDeleted(visitRecords);
+        log.info("批量删除拜访记录成功，数量: {}", deletedCount);
 
-        return visitRecords.size();
+        return deletedCount;
     }
 
     /**
@@ -315,58 +417,89 @@ public class VisitRecordService {
      * @param endDate 结束日期
      * @param status 状态
      * @param intentLevel 意向等级
-     * @param format 导出格式
+     * @param format 导出格式（excel / csv，pdf暂按excel导出）
+     * @param gzip 是否gzip压缩（仅CSV）
      * @param response HTTP响应
      * @param authentication 认证信息
      */
     public void exportVisitRecords(String keyword, Long salesId, Long customerId, LocalDate startDate,
                                    LocalDate endDate, String status, String intentLevel, String format,
-                                   HttpServletResponse response, Authentication authentication) {
+                                   boolean gzip, HttpServletResponse response, Authentication authentication) {
         try {
-            // 权限控制
-            Long currentUserId = getCurrentUserId(authentication);
-            User currentUser = getCurrentUser(authentication);
-
-            // 非管理员只能导出自己的拜访记录
-            if (currentUser.getRole() == User.UserRole.SALES && (salesId == null || !salesId.equals(currentUserId))) {
-                salesId = currentUserId;
-            }
-
-            // 转换状态和意向等级
-            VisitRecord.VisitStatus visitStatus = StringUtils.hasText(status) ?
-                    VisitRecord.VisitStatus.valueOf(status) : null;
-            VisitRecord.IntentLevel visitIntentLevel = StringUtils.hasText(intentLevel) ?
-                    VisitRecord.IntentLevel.valueOf(intentLevel) : null;
-
-            // 查询拜访记录数据 - 使用无分页查询获取所有数据
-            Page<VisitRecord> visitPage = visitRecordRepository.findVisitRecordsWithFilters(
-                    keyword, salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel,
-                    PageRequest.of(0, Integer.MAX_VALUE));
-
-            // 转换为响应对象
-            List<VisitRecordResponse> visitRecordResponses = visitPage.getContent().stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
             // 设置响应头
-            String fileName = String.format("拜访记录_%s.xlsx",
+            String baseName = String.format("拜访记录_%s",
                     LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")));
+            exportService.setDownloadHeaders(baseName, format, gzip, response);
 
-            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-            response.setCharacterEncoding("UTF-8");
-
-            // 生成Excel文件并写入响应
-            exportVisitRecordsToExcel(visitRecordResponses, response);
+            long exportedCount = exportVisitRecords(keyword, salesId, customerId, startDate, endDate,
+                    status, intentLevel, format, gzip, response.getOutputStream(), null, authentication);
 
-            log.info("导出拜访记录成功: 记录数={}, 格式={}", visitRecordResponses.size(), format);
+            log.info("导出拜访记录成功: 记录数={}, 格式={}", exportedCount, format);
 
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("导出拜访记录失败", e);
             throw new BusinessException("导出失败：" + e.getMessage());
         }
     }
 
+    /**
+     * 导出拜访记录到输出流（供同步下载和异步导出任务使用）
+     *
+     * @param keyword 关键词
+     * @param salesId 销售人员ID
+     * @param customerId 客户ID
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param status 状态
+     * @param intentLevel 意向等级
+     * @param format 导出格式（excel / csv）
+     * @param gzip 是否gzip压缩（仅CSV）
+     * @param outputStream 输出流
+     * @param progress 导出任务进度，同步下载时为 null
+     * @param authentication 认证信息
+     * @return 导出记录数
+     */
+    public long exportVisitRecords(String keyword, Long salesId, Long customerId, LocalDate startDate,
+                                   LocalDate endDate, String status, String intentLevel, String format,
+                                   boolean gzip, OutputStream outputStream,
+                                   ExportJobService.ExportProgress progress, Authentication authentication) {
+        // 权限控制
+        Long currentUserId = getCurrentUserId(authentication);
+        User currentUser = getCurrentUser(authentication);
+
+        // 非管理员只能导出自己的拜访记录
+        if (currentUser.getRole() == User.UserRole.SALES && (salesId == null || !salesId.equals(currentUserId))) {
+            salesId = currentUserId;
+        }
+
+        // 转换状态和意向等级
+        VisitRecord.VisitStatus visitStatus = StringUtils.hasText(status) ?
+                VisitRecord.VisitStatus.valueOf(status) : null;
+        VisitRecord.IntentLevel visitIntentLevel = StringUtils.hasText(intentLevel) ?
+                VisitRecord.IntentLevel.valueOf(intentLevel) : null;
+
+        String fullTextQuery = visitSearchService.toFullTextQuery(keyword);
+        String likeKeyword = visitSearchService.toLikeKeyword(keyword);
+        if (progress != null) {
+            // 先统计总行数再打开流，任务进度才能按比例显示
+            progress.setTotalRows(visitRecordRepository.countVisitRecordsWithFilters(fullTextQuery, likeKeyword,
+                    salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel));
+        }
+
+        // 流式读取拜访记录并逐行写入，内存占用与记录数无关
+        try (Stream<VisitRecordResponse> visitRecords = visitRecordRepository.streamVisitRecordsWithFilters(
+                fullTextQuery, likeKeyword, salesId, customerId, startDate, endDate, visitStatus, visitIntentLevel)) {
+            long count = exportService.export(ExportService.withProgress(visitRecords, progress),
+                    ExportService.VISIT_RECORD_COLUMNS, "拜访记录", format, gzip, outputStream);
+            if (progress != null) {
+                progress.setProcessedRows(count);
+            }
+            return count;
+        }
+    }
+
     /**
      * 更新拜访状态
      *
@@ -375,15 +508,18 @@ public class VisitRecordService {
      * @param authentication 认证信息
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public void updateVisitStatus(Long id, String status, Authentication authentication) {
         VisitRecord visitRecord = visitRecordRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("拜访记录不存在"));
 
         // 权限检查
         checkVisitRecordPermission(visitRecord, authentication);
+        VisitDailyStatService.StatKey statKeyBefore = VisitDailyStatService.StatKey.of(visitRecord);
 
         visitRecord.setStatus(VisitRecord.VisitStatus.valueOf(status));
         visitRecordRepository.save(visitRecord);
+        visitDailyStatService.onVisitChanged(statKeyBefore, visitRecord);
 
         log.info("更新拜访状态成功: ID={}, 新状态={}", id, status);
     }
@@ -396,6 +532,7 @@ public class VisitRecordService {
      * @return 复制的拜访记录
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.DASHBOARD_CACHE, allEntries = true)
     public VisitRecordResponse copyVisitRecord(Long id, Authentication authentication) {
         VisitRecord originalRecord = visitRecordRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("拜访记录不存在"));
@@ -429,6 +566,7 @@ public class VisitRecordService {
         newRecord.setWeather(null); // 清空天气
 
         VisitRecord savedRecord = visitRecordRepository.save(newRecord);
+        visitDailyStatService.onVisitCreated(savedRecord);
         log.info("复制拜访记录成功: 原记录ID={}, 新记录ID={}", id, savedRecord.getId());
 
         return convertToResponse(savedRecord);
@@ -451,16 +589,8 @@ public class VisitRecordService {
         Long currentUserId = getCurrentUserId(authentication);
         User currentUser = getCurrentUser(authentication);
 
-        List<VisitRecord> visitRecords;
-        if (currentUser.getRole() == User.UserRole.SALES) {
-            visitRecords = visitRecordRepository.findByCustomerIdAndSalesIdOrderByVisitDateDesc(customerId, currentUserId);
-        } else {
-            visitRecords = visitRecordRepository.findByCustomerIdOrderByVisitDateDesc(customerId);
-        }
-
-        return visitRecords.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        Long salesId = currentUser.getRole() == User.UserRole.SALES ? currentUserId : null;
+        return visitRecordRepository.findResponsesByCustomerId(customerId, salesId);
     }
 
     /**
@@ -492,26 +622,21 @@ public class VisitRecordService {
             endDate = now.withDayOfMonth(now.lengthOfMonth());
         }
 
+        // 一次分组查询得到总数、各状态和各意向等级的数量
+        VisitDailyStatService.StatusIntentCounts counts =
+                visitDailyStatService.getStatusIntentCounts(salesId, startDate, endDate);
+
         // 总拜访记录数
-        long totalVisits = salesId != null ?
-                visitRecordRepository.countBySalesIdAndVisitDateBetween(salesId, startDate, endDate) :
-                visitRecordRepository.countByVisitDateBetween(startDate, endDate);
-        statistics.put("totalVisits", totalVisits);
+        statistics.put("totalVisits", counts.getTotal());
 
         // 各状态拜访记录统计
         for (VisitRecord.VisitStatus status : VisitRecord.VisitStatus.values()) {
-            long count = salesId != null ?
-                    visitRecordRepository.countBySalesIdAndStatusAndVisitDateBetween(salesId, status, startDate, endDate) :
-                    visitRecordRepository.countByStatusAndVisitDateBetween(status, startDate, endDate);
-            statistics.put(status.name().toLowerCase() + "Visits", count);
+            statistics.put(status.name().toLowerCase() + "Visits", counts.getStatusCount(status));
         }
 
         // 各意向等级拜访记录统计
         for (VisitRecord.IntentLevel intentLevel : VisitRecord.IntentLevel.values()) {
-            long count = salesId != null ?
-                    visitRecordRepository.countBySalesIdAndIntentLevelAndVisitDateBetween(salesId, intentLevel, startDate, endDate) :
-                    visitRecordRepository.countByIntentLevelAndVisitDateBetween(intentLevel, startDate, endDate);
-            statistics.put(intentLevel.name().toLowerCase() + "Intent", count);
+            statistics.put(intentLevel.name().toLowerCase() + "Intent", counts.getIntentCount(intentLevel));
         }
 
         return statistics;
@@ -523,19 +648,38 @@ public class VisitRecordService {
      * 获取当前用户ID
      */
     private Long getCurrentUserId(Authentication authentication) {
-        String username = authentication.getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
-        return user.getId();
+        return userDetailsService.getCurrentUser(authentication).getId();
     }
 
     /**
      * 获取当前用户
      */
     private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("当前用户不存在"));
+        return userDetailsService.getCurrentUser(authentication);
+    }
+
+    /**
+     * 生成游标：对 (visitDate, createdAt, id) 做 URL 安全的 Base64 编码，对客户端不透明
+     */
+    private String encodeCursor(VisitRecordResponse visitRecord) {
+        String raw = visitRecord.getVisitDate() + "|" + visitRecord.getCreatedAt() + "|" + visitRecord.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标为 [visitDate, createdAt, id] 三段
+     */
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length == 3) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("分页游标解码失败: cursor={}", cursor);
+        }
+        throw new BusinessException("无效的分页游标");
     }
 
     /**
@@ -609,69 +753,25 @@ public class VisitRecordService {
      */
     private VisitRecordResponse convertToResponse(VisitRecord visitRecord) {
         Customer customer = visitRecord.getCustomer();
+        Department department = customer.getDepartment();
         User sales = visitRecord.getSales();
 
-        return VisitRecordResponse.builder()
-                // 基础信息
-                .id(visitRecord.getId())
-
-                // 客户信息
-                .customerId(customer.getId())
-                .customerName(customer.getName())
-                .customerPosition(customer.getPosition())
-                .customerPhone(customer.getPhone())
-                .customerEmail(customer.getEmail())
-                .customerInfluenceLevel(customer.getInfluenceLevel() != null ? customer.getInfluenceLevel().name() : null)
-                .customerDecisionPower(customer.getDecisionPower() != null ? customer.getDecisionPower().name() : null)
-
-                // 院系和学校信息
-                .departmentId(customer.getDepartment() != null ? customer.getDepartment().getId() : null)
-                .departmentName(customer.getDepartment() != null ? customer.getDepartment().getName() : null)
-                .schoolId(getSchoolId(customer))
-                .schoolName(getSchoolName(customer))
-                .schoolCity(getSchoolCity(customer))
-
-                // 销售人员信息
-                .salesId(sales.getId())
-                .salesName(sales.getRealName())
-                .salesDepartment(sales.getDepartment())
-
-                // 拜访基础信息
-                .visitDate(visitRecord.getVisitDate())
-                .visitTime(visitRecord.getVisitTime())
-                .durationMinutes(visitRecord.getDurationMinutes())
-                .visitType(visitRecord.getVisitType() != null ? visitRecord.getVisitType().name() : null)
-                .visitTypeDescription(visitRecord.getVisitType() != null ? visitRecord.getVisitType().getDescription() : null)
-                .status(visitRecord.getStatus() != null ? visitRecord.getStatus().name() : null)
-                .statusDescription(visitRecord.getStatus() != null ? visitRecord.getStatus().getDescription() : null)
-                .intentLevel(visitRecord.getIntentLevel() != null ? visitRecord.getIntentLevel().name() : null)
-                .intentLevelDescription(visitRecord.getIntentLevel() != null ? visitRecord.getIntentLevel().getDescription() : null)
-
-                // 拜访详细内容 - 映射VisitRecord字段到VisitRecordResponse字段
-                .availableMatters(visitRecord.getBusinessItems()) // businessItems -> availableMatters
-                .demandAnalysis(visitRecord.getPainPoints()) // painPoints -> demandAnalysis
-                .competitorAnalysis(visitRecord.getCompetitors()) // competitors -> competitorAnalysis
-                .nextSteps(visitRecord.getNextStep()) // nextStep -> nextSteps
-                .visitSummary(visitRecord.getNotes()) // notes -> visitSummary (暂时映射)
-                .notes(visitRecord.getNotes())
-                
-                // 直接映射字段供前端使用
-                .businessItems(visitRecord.getBusinessItems())
-                .painPoints(visitRecord.getPainPoints())
-                .competitors(visitRecord.getCompetitors())
-                .budgetRange(visitRecord.getBudgetRange())
-                .decisionTimeline(visitRecord.getDecisionTimeline())
-                .nextStep(visitRecord.getNextStep())
-                .followUpDate(visitRecord.getFollowUpDate())
-                .materialsLeft(visitRecord.getMaterialsLeft())
-                .wechatAdded(visitRecord.getWechatAdded())
-                .rating(visitRecord.getRating())
-                .location(visitRecord.getLocation())
-                .weather(visitRecord.getWeather())
-                // 时间戳
-                .createdAt(visitRecord.getCreatedAt())
-                .updatedAt(visitRecord.getUpdatedAt())
-                .build();
+        return new VisitRecordResponse(visitRecord.getId(),
+                customer.getId(), customer.getName(), customer.getPosition(),
+                customer.getPhone(), customer.getEmail(),
+                customer.getInfluenceLevel(), customer.getDecisionPower(),
+                department != null ? department.getId() : null,
+                department != null ? department.getName() : null,
+                getSchoolId(customer), getSchoolName(customer), getSchoolCity(customer),
+                sales.getId(), sales.getRealName(), sales.getDepartment(),
+                visitRecord.getVisitDate(), visitRecord.getVisitTime(), visitRecord.getDurationMinutes(),
+                visitRecord.getVisitType(), visitRecord.getStatus(), visitRecord.getIntentLevel(),
+                visitRecord.getBusinessItems(), visitRecord.getPainPoints(), visitRecord.getCompetitors(),
+                visitRecord.getBudgetRange(), visitRecord.getDecisionTimeline(), visitRecord.getNextStep(),
+                visitRecord.getFollowUpDate(), visitRecord.getNotes(),
+                visitRecord.getMaterialsLeft(), visitRecord.getWechatAdded(), visitRecord.getRating(),
+                visitRecord.getLocation(), visitRecord.getWeather(),
+                visitRecord.getCreatedAt(), visitRecord.getUpdatedAt());
     }
 
     /**
@@ -732,116 +832,4 @@ public class VisitRecordService {
                 return VisitRecord.IntentLevel.NO_INTENT;
         }
     }
-
-    /**
-     * 导出拜访记录到Excel
-     *
-     * @param visitRecords 拜访记录列表
-     * @param response HTTP响应
-     */
-    private void exportVisitRecordsToExcel(List<VisitRecordResponse> visitRecords, HttpServletResponse response) {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("拜访记录");
-
-            // 创建样式
-            CellStyle headerStyle = workbook.createCellStyle();
-            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            headerStyle.setBorderTop(BorderStyle.THIN);
-            headerStyle.setBorderBottom(BorderStyle.THIN);
-            headerStyle.setBorderLeft(BorderStyle.THIN);
-            headerStyle.setBorderRight(BorderStyle.THIN);
-
-            Font headerFont = workbook.createFont();
-            headerFont.setBold(true);
-            headerStyle.setFont(headerFont);
-
-            CellStyle dataStyle = workbook.createCellStyle();
-            dataStyle.setBorderTop(BorderStyle.THIN);
-            dataStyle.setBorderBottom(BorderStyle.THIN);
-            dataStyle.setBorderLeft(BorderStyle.THIN);
-            dataStyle.setBorderRight(BorderStyle.THIN);
-
-            // 创建表头 - 使用VisitRecordResponse中实际存在的字段
-            String[] headers = {
-                    "ID", "客户姓名", "客户职位", "销售人员", "院系", "学校", "城市",
-                    "拜访日期", "拜访时间", "时长(分钟)", "拜访类型", "状态", "意向等级",
-                    "可用事项", "需求分析", "竞争对手分析", "下一步计划", "拜访总结", "备注", "创建时间"
-            };
-
-            Row headerRow = sheet.createRow(0);
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
-
-            // 填充数据
-            int rowIndex = 1;
-            for (VisitRecordResponse record : visitRecords) {
-                Row row = sheet.createRow(rowIndex++);
-                int cellIndex = 0;
-
-                // 基础信息
-                createCell(row, cellIndex++, record.getId(), dataStyle);
-                createCell(row, cellIndex++, record.getCustomerName(), dataStyle);
-                createCell(row, cellIndex++, record.getCustomerPosition(), dataStyle);
-                createCell(row, cellIndex++, record.getSalesName(), dataStyle);
-                createCell(row, cellIndex++, record.getDepartmentName(), dataStyle);
-                createCell(row, cellIndex++, record.getSchoolName(), dataStyle);
-                createCell(row, cellIndex++, record.getSchoolCity(), dataStyle);
-
-                // 拜访信息
-                createCell(row, cellIndex++, record.getVisitDate() != null ?
-                        record.getVisitDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) : "", dataStyle);
-                createCell(row, cellIndex++, record.getVisitTime() != null ? record.getVisitTime().toString() : "", dataStyle);
-                createCell(row, cellIndex++, record.getDurationMinutes(), dataStyle);
-                createCell(row, cellIndex++, record.getVisitTypeDescription(), dataStyle);
-                createCell(row, cellIndex++, record.getStatusDescription(), dataStyle);
-                createCell(row, cellIndex++, record.getIntentLevelDescription(), dataStyle);
-
-                // 拜访详情
-                createCell(row, cellIndex++, record.getAvailableMatters(), dataStyle);
-                createCell(row, cellIndex++, record.getDemandAnalysis(), dataStyle);
-                createCell(row, cellIndex++, record.getCompetitorAnalysis(), dataStyle);
-                createCell(row, cellIndex++, record.getNextSteps(), dataStyle);
-                createCell(row, cellIndex++, record.getVisitSummary(), dataStyle);
-                createCell(row, cellIndex++, record.getNotes(), dataStyle);
-                createCell(row, cellIndex++, record.getCreatedAt() != null ?
-                        record.getCreatedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) : "", dataStyle);
-            }
-
-            // 自动调整列宽
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-                // 设置最大列宽
-                if (sheet.getColumnWidth(i) > 15000) {
-                    sheet.setColumnWidth(i, 15000);
-                }
-            }
-
-            // 写入响应
-            workbook.write(response.getOutputStream());
-            response.getOutputStream().flush();
-
-        } catch (IOException e) {
-            log.error("导出拜访记录到Excel失败", e);
-            throw new BusinessException("导出失败：" + e.getMessage());
-        }
-    }
-
-    /**
-     * 创建单元格并设置值和样式
-     */
-    private void createCell(Row row, int cellIndex, Object value, CellStyle style) {
-        Cell cell = row.createCell(cellIndex);
-        if (value != null) {
-            if (value instanceof Number) {
-                cell.setCellValue(((Number) value).doubleValue());
-            } else {
-                cell.setCellValue(value.toString());
-            }
-        }
-        cell.setCellStyle(style);
-    }
 }
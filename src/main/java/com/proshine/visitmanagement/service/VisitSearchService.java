@@ -0,0 +1,111 @@
+package com.proshine.visitmanagement.service;
+
+import com.proshine.visitmanagement.repository.VisitRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * 拜访记录关键词检索服务
+ * 拜访记录保存时生成检索文本（search_text），启动时建立 ngram 全文索引并回填历史数据。
+ * 关键词检索优先使用全文索引，索引不可用或关键词短于分词长度时回退为 LIKE 匹配
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VisitSearchService {
+
+    /**
+     * 全文索引名称
+     */
+    private static final String FULL_TEXT_INDEX = "ft_visit_search";
+
+    /**
+     * 回填检索文本时每批更新的记录数
+     */
+    private static final int BACKFILL_BATCH_SIZE = 2000;
+
+    /**
+     * 可走全文索引的最短关键词长度，与 MySQL ngram_token_size 默认值一致
+     */
+    private static final int MIN_FULL_TEXT_LENGTH = 2;
+
+    private final VisitRecordRepository visitRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean fullTextAvailable = false;
+
+    /**
+     * 启动时回填检索文本并确保全文索引存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        long backfilled = 0;
+        int updated;
+        do {
+            updated = transactionTemplate.execute(status ->
+                    visitRecordRepository.backfillSearchText(BACKFILL_BATCH_SIZE));
+            backfilled += updated;
+        } while (updated >= BACKFILL_BATCH_SIZE);
+        if (backfilled > 0) {
+            log.info("回填拜访记录检索文本: {} 条", backfilled);
+        }
+
+        try {
+            if (visitRecordRepository.countIndexByName(FULL_TEXT_INDEX) == 0) {
+                log.info("建立拜访记录全文索引: {}", FULL_TEXT_INDEX);
+                transactionTemplate.executeWithoutResult(status ->
+                        visitRecordRepository.createSearchTextFullTextIndex());
+            }
+            fullTextAvailable = true;
+        } catch (Exception e) {
+            log.warn("拜访记录全文索引不可用，关键词检索将回退为 LIKE 匹配: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将用户输入的关键词转换为全文检索条件
+     *
+     * @param keyword 关键词
+     * @return BOOLEAN MODE 短语检索条件；关键词为空、过短或全文索引不可用时返回 null
+     */
+    public String toFullTextQuery(String keyword) {
+        String cleaned = clean(keyword);
+        if (!fullTextAvailable || cleaned == null
+                || cleaned.codePointCount(0, cleaned.length()) < MIN_FULL_TEXT_LENGTH) {
+            return null;
+        }
+        return "\"" + cleaned + "\"";
+    }
+
+    /**
+     * 获取回退用的 LIKE 关键词
+     *
+     * @param keyword 关键词
+     * @return 无法走全文索引时返回去除首尾空白的关键词，否则返回 null
+     */
+    public String toLikeKeyword(String keyword) {
+        if (!StringUtils.hasText(keyword) || toFullTextQuery(keyword) != null) {
+            return null;
+        }
+        return keyword.trim();
+    }
+
+    /**
+     * 去除 BOOLEAN MODE 运算符并合并空白，避免用户输入改变检索语义
+     */
+    private String clean(String keyword) {
+        if (!StringUtils.hasText(keyword)) {
+            return null;
+        }
+        String cleaned = keyword.replaceAll("[+\\-<>()~*\"@]", " ").trim().replaceAll("\\s+", " ");
+        return cleaned.isEmpty() ? null : cleaned;
+    }
+}
@@ -0,0 +1,53 @@
+package com.proshine.visitmanagement.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 批量操作工具类
+ * 把大批量ID切分为固定大小的分块，使 IN (...) 语句的参数个数可控
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+public class BatchUtils {
+
+    /**
+     * 默认分块大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private BatchUtils() {
+        // 工具类不允许实例化
+    }
+
+    /**
+     * 去重（保持原有顺序）、去空后按默认大小分块
+     *
+     * @param ids ID集合
+     * @return 分块列表
+     */
+    public static List<List<Long>> chunkIds(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinctIds.removeIf(Objects::isNull);
+        return partition(distinctIds, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 按指定大小分块，最后一块可能不足
+     *
+     * @param list 原列表
+     * @param size 分块大小
+     * @return 分块列表（原列表的视图）
+     */
+    public static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+}
@@ -2,15 +2,32 @@ package com.proshine.visitmanagement.util;
 
 import com.proshine.visitmanagement.exception.ValidationException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -53,6 +70,21 @@ public class ExcelUtils {
      */
     private static final String DATETIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
+    /**
+     * 最大列宽
+     */
+    private static final int MAX_COLUMN_WIDTH = 6000;
+
+    /**
+     * 精确自动列宽的最大数据行数，超过后按采样估算列宽
+     */
+    public static final int PRECISE_AUTO_SIZE_MAX_ROWS = 1000;
+
+    /**
+     * 估算列宽时采样的数据行数（不含表头）
+     */
+    public static final int WIDTH_SAMPLE_ROWS = 200;
+
     private ExcelUtils() {
         // 工具类不允许实例化
     }
@@ -175,6 +207,59 @@ public class ExcelUtils {
         return convertToObjects(dataList, clazz, fieldMapping);
     }
 
+    /**
+     * 流式读取xlsx文件第一个工作表
+     * 基于XSSFReader的SAX解析逐行回调，不构建整个工作簿的对象模型，内存占用与行数无关；
+     * 单元格按显示格式转为字符串，内置短日期格式统一输出为yyyy-MM-dd，空行跳过
+     *
+     * @param file xlsx文件
+     * @param rowHandler 行处理器
+     */
+    public static void readXlsxRows(MultipartFile file, RowHandler rowHandler) {
+        validateExcelFile(file);
+        if (!file.getOriginalFilename().toLowerCase().endsWith(".xlsx")) {
+            throw ValidationException.of("file", "仅支持.xlsx格式，请将文件另存为Excel工作簿后重新导入");
+        }
+
+        Path tempFile = null;
+        try {
+            // 从文件打开只需按需解压所读取的部分，从流打开会把整个压缩包读入内存
+            tempFile = Files.createTempFile("excel-import-", ".xlsx");
+            file.transferTo(tempFile);
+
+            try (OPCPackage pkg = OPCPackage.open(tempFile.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+                StylesTable styles = reader.getStylesTable();
+
+                DataFormatter formatter = new DataFormatter();
+                formatter.addFormat("m/d/yy", new SimpleDateFormat(DATE_FORMAT));
+
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    return;
+                }
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings,
+                            new RowCollector(rowHandler), formatter, false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (IOException | SAXException | ParserConfigurationException | OpenXML4JException e) {
+            log.error("流式读取Excel文件失败: fileName={}", file.getOriginalFilename(), e);
+            throw ValidationException.of("import", "Excel文件读取失败: " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("删除临时文件失败: {}", tempFile, e);
+                }
+            }
+        }
+    }
+
     /**
      * 验证Excel模板格式
      */
@@ -414,14 +499,36 @@ public class ExcelUtils {
      * 自动调整列宽
      */
     private static void autoSizeColumns(Sheet sheet, int columnCount) {
-        for (int i = 0; i < columnCount; i++) {
-            sheet.autoSizeColumn(i);
-            // 设置最大宽度限制
-            int columnWidth = sheet.getColumnWidth(i);
-            if (columnWidth > 6000) {
-                sheet.setColumnWidth(i, 6000);
+        // autoSizeColumn 需要用字体度量逐个测量单元格，只在小表格上使用
+        if (sheet.getLastRowNum() <= PRECISE_AUTO_SIZE_MAX_ROWS) {
+            for (int i = 0; i < columnCount; i++) {
+                sheet.autoSizeColumn(i);
+                // 设置最大宽度限制
+                int columnWidth = sheet.getColumnWidth(i);
+                if (columnWidth > MAX_COLUMN_WIDTH) {
+                    sheet.setColumnWidth(i, MAX_COLUMN_WIDTH);
+                }
             }
+            return;
         }
+
+        // 大表格按表头和前若干行估算列宽
+        DataFormatter formatter = new DataFormatter();
+        ColumnWidthEstimator estimator = new ColumnWidthEstimator(columnCount, WIDTH_SAMPLE_ROWS);
+        int lastSampleRow = Math.min(sheet.getLastRowNum(), WIDTH_SAMPLE_ROWS);
+        for (int rowIndex = 0; rowIndex <= lastSampleRow; rowIndex++) {
+            Row row = sheet.getRow(rowIndex);
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                Cell cell = row.getCell(i);
+                if (cell != null) {
+                    estimator.accept(i, formatter.formatCellValue(cell));
+                }
+            }
+        }
+        estimator.apply(sheet, MAX_COLUMN_WIDTH);
     }
 
     /**
@@ -721,6 +828,64 @@ public class ExcelUtils {
         return result;
     }
 
+    /**
+     * 流式读取的行处理器
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+
+        /**
+         * 处理一行数据
+         *
+         * @param rowIndex 行号（从0开始）
+         * @param cells 按列序排列的单元格值，空单元格为null
+         */
+        void handle(int rowIndex, List<String> cells);
+    }
+
+    /**
+     * 把SAX单元格事件组装成整行交给行处理器
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler rowHandler;
+        private List<String> cells;
+        private boolean blank;
+
+        RowCollector(RowHandler rowHandler) {
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (rowNum > MAX_ROWS) {
+                throw ValidationException.of("import", "Excel行数超过限制: " + MAX_ROWS);
+            }
+            cells = new ArrayList<>();
+            blank = true;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!blank) {
+                rowHandler.handle(rowNum, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < column) {
+                cells.add(null);
+            }
+            String value = formattedValue != null && !formattedValue.trim().isEmpty() ? formattedValue.trim() : null;
+            cells.add(value);
+            if (value != null) {
+                blank = false;
+            }
+        }
+    }
+
     /**
      * Excel Sheet数据包装类
      */
@@ -742,6 +907,95 @@ public class ExcelUtils {
         }
     }
 
+    /**
+     * 列宽估算器
+     * 按字符显示宽度（中日韩及全角字符计2，其余计1）记录每列的最大文本宽度，
+     * 只采样表头和前若干行，代价与总行数无关，适用于大表格和SXSSF流式写入
+     */
+    public static class ColumnWidthEstimator {
+
+        /**
+         * 列宽两侧留白（字符数）
+         */
+        private static final int PADDING = 2;
+
+        /**
+         * 最小列宽（字符数）
+         */
+        private static final int MIN_WIDTH = 8;
+
+        private final int[] maxWidths;
+        private final int sampleRows;
+        private int sampledRows;
+
+        public ColumnWidthEstimator(int columnCount, int sampleRows) {
+            this.maxWidths = new int[columnCount];
+            this.sampleRows = sampleRows;
+        }
+
+        /**
+         * 是否仍需采样
+         */
+        public boolean isSampling() {
+            return sampledRows < sampleRows;
+        }
+
+        /**
+         * 记录单元格文本宽度
+         */
+        public void accept(int column, Object value) {
+            if (value == null || column >= maxWidths.length) {
+                return;
+            }
+            maxWidths[column] = Math.max(maxWidths[column], getDisplayWidth(value.toString()));
+        }
+
+        /**
+         * 完成一行数据的采样
+         */
+        public void endRow() {
+            sampledRows++;
+        }
+
+        /**
+         * 将估算的列宽应用到工作表
+         */
+        public void apply(Sheet sheet, int maxColumnWidth) {
+            for (int i = 0; i < maxWidths.length; i++) {
+                int width = (Math.max(maxWidths[i], MIN_WIDTH) + PADDING) * 256;
+                sheet.setColumnWidth(i, Math.min(width, maxColumnWidth));
+            }
+        }
+
+        /**
+         * 计算文本显示宽度，多行文本取最长的一行
+         */
+        private static int getDisplayWidth(String text) {
+            int maxWidth = 0;
+            int lineWidth = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    maxWidth = Math.max(maxWidth, lineWidth);
+                    lineWidth = 0;
+                } else if (c != '\r') {
+                    lineWidth += isWideChar(c) ? 2 : 1;
+                }
+            }
+            return Math.max(maxWidth, lineWidth);
+        }
+
+        private static boolean isWideChar(char c) {
+            return (c >= 0x1100 && c <= 0x115F)        // 韩文字母
+                    || (c >= 0x2E80 && c <= 0xA4CF)    // 中日韩部首、符号、假名、汉字
+                    || (c >= 0xAC00 && c <= 0xD7A3)    // 韩文音节
+                    || (c >= 0xF900 && c <= 0xFAFF)    // 中日韩兼容汉字
+                    || (c >= 0xFE30 && c <= 0xFE4F)    // 中日韩兼容形式
+                    || (c >= 0xFF00 && c <= 0xFF60)    // 全角字符
+                    || (c >= 0xFFE0 && c <= 0xFFE6);   // 全角符号
+        }
+    }
+
     /**
      * 判断行是否为空
      */
@@ -1,18 +1,28 @@
 package com.proshine.visitmanagement.util;
 
 import com.proshine.visitmanagement.exception.BusinessException;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -36,6 +46,18 @@ public class FileUtils {
             ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx", ".txt", ".rtf"
     ));
 
+    // 容器（Tomcat）sendfile 支持的请求属性
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小的文件直接写出，sendfile 的额外开销不划算（与 Tomcat DefaultServlet 默认值一致）
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    // Range 无效或为多段时，按完整内容返回
+    private static final long[] FULL_CONTENT = new long[0];
+
     /**
      * 上传文件
      *
@@ -110,18 +132,23 @@ public class FileUtils {
      * @param response HTTP响应
      */
     public static void downloadFile(String filePath, HttpServletResponse response) {
+        downloadFile(filePath, (HttpServletRequest) null, response);
+    }
+
+    /**
+     * 下载文件，支持条件请求和断点续传
+     *
+     * @param filePath 文件路径
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    public static void downloadFile(String filePath, HttpServletRequest request, HttpServletResponse response) {
         Path path = Paths.get(filePath);
         if (!Files.exists(path)) {
             throw new BusinessException("文件不存在");
         }
 
-        try {
-            String fileName = path.getFileName().toString();
-            downloadFile(filePath, fileName, response);
-        } catch (Exception e) {
-            log.error("文件下载失败", e);
-            throw new BusinessException("文件下载失败");
-        }
+        downloadFile(filePath, path.getFileName().toString(), request, response);
     }
 
     /**
@@ -132,38 +159,244 @@ public class FileUtils {
      * @param response HTTP响应
      */
     public static void downloadFile(String filePath, String fileName, HttpServletResponse response) {
+        downloadFile(filePath, fileName, null, response);
+    }
+
+    /**
+     * 下载文件（自定义文件名），支持条件请求和断点续传
+     * <p>
+     * 根据 If-None-Match / If-Modified-Since 返回304；根据 Range / If-Range 返回206单段内容，
+     * 多段Range按完整内容返回。容器支持 sendfile 时（Tomcat NIO）由容器直接把文件发送到套接字，
+     * 否则通过 FileChannel.transferTo 写出。
+     *
+     * @param filePath 文件路径
+     * @param fileName 下载文件名
+     * @param request HTTP请求，为 null 时不处理条件请求和Range
+     * @param response HTTP响应
+     */
+    public static void downloadFile(String filePath, String fileName, HttpServletRequest request,
+                                    HttpServletResponse response) {
+        downloadFile(filePath, fileName, null, request, response);
+    }
+
+    /**
+     * 下载文件（自定义文件名和内容类型），支持条件请求和断点续传
+     * 内容寻址存储的文件没有扩展名，内容类型取自文件引用记录
+     *
+     * @param filePath 文件路径
+     * @param fileName 下载文件名
+     * @param contentType 内容类型，为空时按 application/octet-stream 下载
+     * @param request HTTP请求，为 null 时不处理条件请求和Range
+     * @param response HTTP响应
+     */
+    public static void downloadFile(String filePath, String fileName, String contentType,
+                                    HttpServletRequest request, HttpServletResponse response) {
+        writeFile(filePath, fileName, contentType, "attachment", request, response);
+    }
+
+    /**
+     * 在浏览器中直接展示文件（Content-Disposition: inline），其余与下载相同
+     *
+     * @param filePath 文件路径
+     * @param fileName 文件名
+     * @param contentType 内容类型，为空时按 application/octet-stream 返回
+     * @param request HTTP请求，为 null 时不处理条件请求和Range
+     * @param response HTTP响应
+     */
+    public static void serveFile(String filePath, String fileName, String contentType,
+                                 HttpServletRequest request, HttpServletResponse response) {
+        writeFile(filePath, fileName, contentType, "inline", request, response);
+    }
+
+    /**
+     * 写出文件内容，支持条件请求和断点续传
+     *
+     * @param disposition attachment 或 inline
+     */
+    private static void writeFile(String filePath, String fileName, String contentType, String disposition,
+                                  HttpServletRequest request, HttpServletResponse response) {
         Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
+        if (!Files.isRegularFile(path)) {
             throw new BusinessException("文件不存在");
         }
 
         try {
+            long fileSize = Files.size(path);
+            // HTTP日期只精确到秒
+            long lastModified = Files.getLastModifiedTime(path).toMillis() / 1000 * 1000;
+            String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(fileSize) + "\"";
+
+            response.setHeader(HttpHeaders.ETAG, eTag);
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            if (request != null && isNotModified(request, eTag, lastModified)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            long start = 0;
+            long end = fileSize - 1;
+            String range = request != null ? request.getHeader(HttpHeaders.RANGE) : null;
+            if (range != null && isRangeApplicable(request, eTag, lastModified)) {
+                long[] bounds = parseRange(range, fileSize);
+                if (bounds == null) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds != FULL_CONTENT) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+                }
+            }
+            long length = end - start + 1;
+
             // 设置响应头
-            response.setContentType("application/octet-stream");
+            response.setContentType(StringUtils.hasText(contentType) ? contentType : "application/octet-stream");
             response.setHeader("Content-Disposition",
-                    "attachment; filename=" + URLEncoder.encode(fileName, "UTF-8"));
-            response.setContentLengthLong(Files.size(path));
+                    disposition + "; filename=" + URLEncoder.encode(fileName, "UTF-8"));
+            response.setContentLengthLong(length);
 
-            // 写入文件内容
-            try (InputStream inputStream = Files.newInputStream(path);
-                 OutputStream outputStream = response.getOutputStream()) {
+            if (length <= 0) {
+                return;
+            }
 
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
+            if (request != null && length >= SENDFILE_THRESHOLD
+                    && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+                // 交给容器在请求处理结束后零拷贝发送
+                request.setAttribute(SENDFILE_FILENAME_ATTR, path.toRealPath().toString());
+                request.setAttribute(SENDFILE_START_ATTR, start);
+                request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            } else {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                    long position = start;
+                    long remaining = length;
+                    while (remaining > 0) {
+                        long transferred = channel.transferTo(position, remaining, target);
+                        if (transferred <= 0) {
+                            break;
+                        }
+                        position += transferred;
+                        remaining -= transferred;
+                    }
+                    response.flushBuffer();
                 }
-                outputStream.flush();
             }
 
-            log.info("文件下载成功: {}", filePath);
+            log.info("文件下载成功: {}, 范围: {}-{}/{}", filePath, start, end, fileSize);
 
         } catch (IOException e) {
+            if (response.isCommitted()) {
+                // 响应已开始发送，多为客户端中断（弱网下常见），客户端可凭Range续传
+                log.warn("文件下载中断: {}, 原因: {}", filePath, e.getMessage());
+                return;
+            }
             log.error("文件下载失败", e);
             throw new BusinessException("文件下载失败");
         }
     }
 
+    /**
+     * 判断是否可以返回304：If-None-Match 优先，其次 If-Modified-Since
+     */
+    private static boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, eTag);
+        }
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * 判断 Range 是否生效：没有 If-Range，或 If-Range 与当前文件的 ETag（强比较）或修改时间一致
+     */
+    private static boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        return getDateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    /**
+     * If-None-Match 使用弱比较，忽略 W/ 前缀
+     */
+    private static boolean matchesETag(String header, String eTag) {
+        if ("*".equals(header.trim())) {
+            return true;
+        }
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析单段 Range 请求头
+     *
+     * @return {起始, 结束}（均含）；格式错误或多段时返回 {@link #FULL_CONTENT}；范围无法满足时返回 null
+     */
+    private static long[] parseRange(String range, long fileSize) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return FULL_CONTENT;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return FULL_CONTENT;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-N：最后N个字节
+                if (last.isEmpty()) {
+                    return FULL_CONTENT;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || fileSize == 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, fileSize - suffix), fileSize - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? fileSize - 1 : Math.min(Long.parseLong(last), fileSize - 1);
+            if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                return FULL_CONTENT;
+            }
+            if (start >= fileSize) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return FULL_CONTENT;
+        }
+    }
+
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
     /**
      * 删除文件
      *
@@ -625,32 +858,105 @@ public class FileUtils {
     }
 
     /**
-     * 获取文件的MD5哈希值
+     * 获取文件的MD5哈希值（流式读取，不把整个文件读入内存）
      *
      * @param file 文件
      * @return MD5哈希值
      */
     public static String getFileMD5(MultipartFile file) {
-        try {
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-            byte[] hash = md.digest(file.getBytes());
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+        try (InputStream inputStream = file.getInputStream()) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                md.update(buffer, 0, bytesRead);
             }
-
-            return hexString.toString();
+            return toHex(md.digest());
         } catch (Exception e) {
             log.error("计算文件MD5失败", e);
             throw new BusinessException("计算文件哈希值失败");
         }
     }
 
+    /**
+     * 把上传文件写入临时目录，写入的同时计算SHA-256和MD5，只读取一遍上传内容
+     *
+     * @param file 上传文件
+     * @param tempDir 临时目录
+     * @return 临时文件及其摘要，调用方负责移动或删除临时文件
+     */
+    public static DigestedUpload saveToTempWithDigest(MultipartFile file, String tempDir) {
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException("文件不能为空");
+        }
+
+        Path tempPath = null;
+        try {
+            Path directory = Paths.get(tempDir);
+            Files.createDirectories(directory);
+            tempPath = Files.createTempFile(directory, "upload-", ".tmp");
+
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            long size;
+            try (InputStream inputStream = new DigestInputStream(
+                    new DigestInputStream(file.getInputStream(), sha256), md5)) {
+                size = Files.copy(inputStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return new DigestedUpload(tempPath, size, toHex(sha256.digest()), toHex(md5.digest()));
+
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("保存上传文件失败", e);
+            if (tempPath != null) {
+                deleteFile(tempPath.toString());
+            }
+            throw new BusinessException("文件上传失败");
+        }
+    }
+
+    /**
+     * 字节数组转十六进制字符串
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    /**
+     * 已写入临时文件并计算好摘要的上传
+     */
+    @Value
+    public static class DigestedUpload {
+
+        /**
+         * 临时文件路径
+         */
+        Path tempPath;
+
+        /**
+         * 文件大小（字节）
+         */
+        long size;
+
+        /**
+         * SHA-256（十六进制）
+         */
+        String sha256;
+
+        /**
+         * MD5（十六进制）
+         */
+        String md5;
+    }
+
     /**
      * 检查文件是否存在
      *
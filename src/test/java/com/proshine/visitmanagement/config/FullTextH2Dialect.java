@@ -0,0 +1,22 @@
+package com.proshine.visitmanagement.config;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * 测试用 H2 方言
+ * H2 没有 MySQL 全文索引，match_against 按子串匹配渲染为 {@code LOCATE(?2, ?1)}，
+ * 使 VisitRecordRepository 中引用该函数的 JPQL 在 H2 上可以执行
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+public class FullTextH2Dialect extends H2Dialect {
+
+    public FullTextH2Dialect() {
+        super();
+        registerFunction("match_against",
+                new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "LOCATE(?2, ?1)"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.proshine.visitmanagement.repository;
+
+import com.proshine.visitmanagement.dto.response.VisitRecordResponse;
+import com.proshine.visitmanagement.entity.Customer;
+import com.proshine.visitmanagement.entity.User;
+import com.proshine.visitmanagement.entity.VisitRecord;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 拜访记录列表、导出和按客户查询的SQL条数测试
+ * 三条路径都通过投影一次查出所需列，执行的语句数不应随返回行数增长（没有 N+1 懒加载）
+ *
+ * @author System
+ * @since 2024-01-01
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:visit_management;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=com.proshine.visitmanagement.config.FullTextH2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class VisitRecordRepositoryQueryCountTest {
+
+    private static final int SMALL = 1;
+    private static final int LARGE = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private VisitRecordRepository visitRecordRepository;
+
+    private Statistics statistics;
+    private Customer smallCustomer;
+    private Customer largeCustomer;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        User sales = new User();
+        sales.setUsername("sales");
+        sales.setPassword("password");
+        sales.setRealName("销售");
+        sales.setRole(User.UserRole.SALES);
+        entityManager.persist(sales);
+
+        smallCustomer = persistCustomer("张老师", sales, SMALL);
+        largeCustomer = persistCustomer("李老师", sales, LARGE);
+    }
+
+    /**
+     * 列表（VisitRecordService.getVisitRecords）：每页1条和50条执行的语句数相同
+     */
+    @Test
+    void listQueryCountDoesNotDependOnPageSize() {
+        long small = countStatements(() -> assertThat(findPage(SMALL).getContent()).hasSize(SMALL));
+        long large = countStatements(() -> assertThat(findPage(LARGE).getContent()).hasSize(LARGE));
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    /**
+     * 导出（VisitRecordService.exportVisitRecords）：导出1条和50条执行的语句数相同
+     */
+    @Test
+    void exportQueryCountDoesNotDependOnRowCount() {
+        long small = countStatements(() -> assertThat(streamByCustomer(smallCustomer)).hasSize(SMALL));
+        long large = countStatements(() -> assertThat(streamByCustomer(largeCustomer)).hasSize(LARGE));
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    /**
+     * 按客户查询（VisitRecordService.getVisitRecordsByCustomer）：返回1条和50条执行的语句数相同
+     */
+    @Test
+    void customerQueryCountDoesNotDependOnRowCount() {
+        long small = countStatements(() -> assertThat(visitRecordRepository
+                .findResponsesByCustomerId(smallCustomer.getId(), null)).hasSize(SMALL));
+        long large = countStatements(() -> assertThat(visitRecordRepository
+                .findResponsesByCustomerId(largeCustomer.getId(), null)).hasSize(LARGE));
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private Customer persistCustomer(String name, User sales, int visitCount) {
+        Customer customer = new Customer();
+        customer.setName(name);
+        customer.setCreatedBy(sales);
+        entityManager.persist(customer);
+
+        for (int i = 0; i < visitCount; i++) {
+            VisitRecord visitRecord = new VisitRecord();
+            visitRecord.setCustomer(customer);
+            visitRecord.setSales(sales);
+            visitRecord.setVisitDate(LocalDate.of(2024, 1, 1).plusDays(i));
+            visitRecord.setStatus(VisitRecord.VisitStatus.COMPLETED);
+            visitRecord.setIntentLevel(VisitRecord.IntentLevel.MEDIUM);
+            visitRecord.setNotes("拜访记录" + i);
+            entityManager.persist(visitRecord);
+        }
+        return customer;
+    }
+
+    private Page<VisitRecordResponse> findPage(int pageSize) {
+        return visitRecordRepository.findVisitRecordsWithFilters(null, null, null, largeCustomer.getId(),
+                null, null, null, null, PageRequest.of(0, pageSize));
+    }
+
+    private List<VisitRecordResponse> streamByCustomer(Customer customer) {
+        try (Stream<VisitRecordResponse> rows = visitRecordRepository.streamVisitRecordsWithFilters(
+                null, null, null, customer.getId(), null, null, null, null)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 清空持久化上下文后执行，返回期间预编译的SQL语句数
+     */
+    private long countStatements(Runnable action) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+}